@@ -0,0 +1,41 @@
+package com.ravi.booking.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.ravi.booking.config.TopologyProperties;
+import com.ravi.booking.model.Section;
+
+/**
+ * Shared setup for the benchmarks.
+ */
+final class Fixtures {
+
+  private Fixtures() {
+  }
+
+  /**
+   * A single train with {@code coachesPerSection} coaches of {@code seats} seats in each
+   * section.
+   */
+  static TopologyProperties topology(int coachesPerSection, int seats) {
+    List<TopologyProperties.CoachProperties> coaches = new ArrayList<>();
+    for (Section section : Section.values()) {
+      for (int i = 1; i <= coachesPerSection; i++) {
+        TopologyProperties.CoachProperties coach = new TopologyProperties.CoachProperties();
+        coach.setName(section.name() + i);
+        coach.setSection(section);
+        coach.setSeats(seats);
+        coaches.add(coach);
+      }
+    }
+    TopologyProperties.TrainProperties train = new TopologyProperties.TrainProperties();
+    train.setId("T1");
+    train.setStations(List.of("London", "France"));
+    train.setCoaches(coaches);
+    TopologyProperties properties = new TopologyProperties();
+    properties.setDefaultTrain("T1");
+    properties.setTrains(List.of(train));
+    return properties;
+  }
+}
@@ -0,0 +1,79 @@
+package com.ravi.booking.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.ravi.model.Journey;
+import org.ravi.model.PurchaseTicketRequest;
+import org.ravi.model.User;
+
+import com.ravi.booking.repository.SeatInventoryRepository;
+import com.ravi.booking.repository.TicketRepository;
+import com.ravi.booking.repository.UserRepository;
+import com.ravi.booking.service.TicketService;
+import com.ravi.booking.strategy.UniformRandomStrategy;
+
+/**
+ * End-to-end {@link TicketService#purchaseTicket} through the real repositories. Each
+ * operation buys a ticket and cancels it, so the train never sells out however long the
+ * run; the score covers both calls.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PurchaseTicketBenchmark {
+
+  private static final int USERS = 10_000;
+
+  private TicketService ticketService;
+  private PurchaseTicketRequest[] requests;
+
+  @Setup
+  public void setUp() {
+    SeatInventoryRepository inventoryRepository = new SeatInventoryRepository(Fixtures.topology(20, 100));
+    ticketService = new TicketService(new UserRepository(), new TicketRepository(inventoryRepository),
+        new UniformRandomStrategy(), inventoryRepository);
+    requests = new PurchaseTicketRequest[USERS];
+    for (int i = 0; i < USERS; i++) {
+      requests[i] = PurchaseTicketRequest.newBuilder()
+          .setUser(User.newBuilder().setFirstName("User").setLastName("N" + i).setEmail("user" + i + "@example.com"))
+          .setJourney(Journey.newBuilder().setFrom("London").setTo("France"))
+          .build();
+    }
+  }
+
+  @State(Scope.Thread)
+  public static class Cursor {
+    int next;
+  }
+
+  private void purchaseAndCancel(Cursor cursor) {
+    PurchaseTicketRequest request = requests[cursor.next++ % USERS];
+    ticketService.removeUserBooking(ticketService.purchaseTicket(request));
+  }
+
+  @Benchmark
+  @Threads(1)
+  public void purchaseSingleThreaded(Cursor cursor) {
+    purchaseAndCancel(cursor);
+  }
+
+  @Benchmark
+  @Threads(8)
+  public void purchaseMultiThreaded(Cursor cursor) {
+    purchaseAndCancel(cursor);
+  }
+}
@@ -0,0 +1,71 @@
+package com.ravi.booking.benchmark;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.ravi.booking.model.Section;
+import com.ravi.booking.repository.SeatInventory;
+import com.ravi.booking.strategy.FirstFitStrategy;
+import com.ravi.booking.strategy.RandomStrategy;
+import com.ravi.booking.strategy.SeatSelectionStrategy;
+import com.ravi.booking.strategy.UniformRandomStrategy;
+
+/**
+ * Cost of picking one seat in a coach that is already filled to {@code fill}. Every
+ * selected seat is released again, so the fill ratio stays constant during a run.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SeatStrategyBenchmark {
+
+  @Param({"rejection-sampling", "random", "first-fit"})
+  public String strategy;
+
+  @Param({"0.0", "0.5", "0.9", "0.99"})
+  public double fill;
+
+  @Param({"1000"})
+  public int seats;
+
+  private SeatSelectionStrategy selectionStrategy;
+  private SeatInventory inventory;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    selectionStrategy = switch (strategy) {
+      case "rejection-sampling" -> new RandomStrategy();
+      case "random" -> new UniformRandomStrategy();
+      case "first-fit" -> new FirstFitStrategy();
+      default -> throw new IllegalArgumentException(strategy);
+    };
+    inventory = new SeatInventory(seats);
+    int taken = (int) (seats * fill);
+    while (inventory.getAllocatedCount() < taken) {
+      inventory.claim(ThreadLocalRandom.current().nextInt(seats) + 1);
+    }
+  }
+
+  @Benchmark
+  public int selectSeat() {
+    int seat = selectionStrategy.selectSeat(Section.A, inventory);
+    inventory.release(seat);
+    return seat;
+  }
+}
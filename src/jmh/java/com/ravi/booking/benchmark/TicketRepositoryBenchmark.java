@@ -0,0 +1,67 @@
+package com.ravi.booking.benchmark;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.ravi.booking.model.Section;
+import com.ravi.booking.model.TicketEntity;
+import com.ravi.booking.model.UserEntity;
+import com.ravi.booking.repository.SeatInventoryRepository;
+import com.ravi.booking.repository.TicketRepository;
+
+/**
+ * Section listing over a repository holding {@code tickets} tickets, half of them in the
+ * listed section.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class TicketRepositoryBenchmark {
+
+  @Param({"10000", "1000000"})
+  public int tickets;
+
+  private TicketRepository ticketRepository;
+
+  @Setup
+  public void setUp() {
+    ticketRepository = new TicketRepository(new SeatInventoryRepository(Fixtures.topology(1, 50)));
+    LocalDate today = LocalDate.now();
+    for (int i = 0; i < tickets; i++) {
+      UserEntity user = new UserEntity("User", "N" + i, "user" + i + "@example.com");
+      Section section = i % 2 == 0 ? Section.A : Section.B;
+      TicketEntity ticket = new TicketEntity(user, 50.0, section, i % 50 + 1, "France", "London");
+      ticket.setTrainId("T1");
+      ticket.setServiceDate(today);
+      ticket.setCoach(section.name() + 1);
+      ticketRepository.save(ticket);
+    }
+  }
+
+  @Benchmark
+  public List<TicketEntity> findBySection() {
+    return ticketRepository.findBySection(Section.A);
+  }
+
+  @Benchmark
+  public void forEachInSection(Blackhole blackhole) {
+    ticketRepository.forEachInSection(Section.A, blackhole::consume);
+  }
+}
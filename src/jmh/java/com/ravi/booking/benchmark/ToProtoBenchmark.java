@@ -0,0 +1,55 @@
+package com.ravi.booking.benchmark;
+
+import java.time.LocalDate;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.ravi.model.Ticket;
+
+import com.ravi.booking.Util.Util;
+import com.ravi.booking.model.Section;
+import com.ravi.booking.model.TicketEntity;
+import com.ravi.booking.model.UserEntity;
+
+/**
+ * Conversion of a fully populated ticket to its protobuf message, with and without
+ * serializing it.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ToProtoBenchmark {
+
+  private TicketEntity ticket;
+
+  @Setup
+  public void setUp() {
+    UserEntity user = new UserEntity("Doe", "John", "john.doe@example.com");
+    ticket = new TicketEntity(user, 50.0, Section.A, 17, "France", "London");
+    ticket.setTrainId("T1");
+    ticket.setServiceDate(LocalDate.now());
+    ticket.setCoach("A1");
+  }
+
+  @Benchmark
+  public Ticket toProto() {
+    return Util.toProto(ticket);
+  }
+
+  @Benchmark
+  public byte[] toProtoBytes() {
+    return Util.toProto(ticket).toByteArray();
+  }
+}
@@ -1,39 +1,110 @@
 package com.ravi.booking.Client;
 
+import io.grpc.Deadline;
 import io.grpc.ManagedChannel;
 import io.grpc.ManagedChannelBuilder;
+import io.grpc.Status;
 import io.grpc.StatusRuntimeException;
+import io.grpc.stub.StreamObserver;
 import org.ravi.model.*;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
 
+/**
+ * Client for the booking service.
+ *
+ * The blocking methods log failures and rethrow the call's {@link StatusRuntimeException},
+ * which suits scripts such as {@link #main}. The {@code ...Async} methods are meant for callers with many requests in
+ * flight: they return a {@link CompletableFuture} that fails with the call's
+ * {@link StatusRuntimeException}, spread calls round-robin over a pool of channels so that
+ * one HTTP/2 connection does not cap throughput, and bound each call by a deadline.
+ * A call that fails with {@code UNAVAILABLE} is retried on the next channel, with backoff,
+ * while its deadline and the client's retry budget allow. Only reads are retried, and
+ * purchases and seat changes that carry an idempotency key; the server may have applied
+ * any other write before the connection failed.
+ */
 public class GrpcTicketClient {
 
   private static final Logger logger = LoggerFactory.getLogger(GrpcTicketClient.class);
 
+  private static final Duration DEFAULT_DEADLINE = Duration.ofSeconds(5);
+  private static final int MAX_ATTEMPTS = 3;
+  private static final long INITIAL_BACKOFF_NANOS = TimeUnit.MILLISECONDS.toNanos(50);
+
   private final TrainBookingServiceGrpc.TrainBookingServiceBlockingStub blockingStub;
-  private final ManagedChannel channel;
+  private final TrainBookingServiceGrpc.TrainBookingServiceStub asyncStub;
+  private final List<ManagedChannel> channels;
+  private final List<TrainBookingServiceGrpc.TrainBookingServiceStub> pooledStubs = new ArrayList<>();
+  private final AtomicInteger nextStub = new AtomicInteger();
+  private final Duration deadline;
+  private final RetryBudget retryBudget = new RetryBudget(10, 0.1);
+  private final ScheduledExecutorService retryScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+    Thread thread = new Thread(runnable, "grpc-client-retry");
+    thread.setDaemon(true);
+    return thread;
+  });
 
   public GrpcTicketClient(String host, int port) {
-    this(ManagedChannelBuilder.forAddress(host, port)
-        .usePlaintext()
-        .build());
+    this(host, port, 1, DEFAULT_DEADLINE);
+  }
+
+  /**
+   * Creates a client with {@code channelCount} connections to the server, bounding each
+   * async call by {@code deadline} including its retries.
+   */
+  public GrpcTicketClient(String host, int port, int channelCount, Duration deadline) {
+    this(openChannels(host, port, channelCount), deadline);
   }
 
   GrpcTicketClient(ManagedChannel channel) {
-    this.channel = channel;
-    blockingStub = TrainBookingServiceGrpc.newBlockingStub(channel);
+    this(List.of(channel), DEFAULT_DEADLINE);
+  }
+
+  GrpcTicketClient(List<ManagedChannel> channels, Duration deadline) {
+    if (channels.isEmpty()) {
+      throw new IllegalArgumentException("At least one channel is required");
+    }
+    this.channels = List.copyOf(channels);
+    this.deadline = deadline;
+    blockingStub = TrainBookingServiceGrpc.newBlockingStub(channels.get(0));
+    asyncStub = TrainBookingServiceGrpc.newStub(channels.get(0));
+    for (ManagedChannel channel : channels) {
+      pooledStubs.add(TrainBookingServiceGrpc.newStub(channel));
+    }
+  }
+
+  private static List<ManagedChannel> openChannels(String host, int port, int channelCount) {
+    List<ManagedChannel> channels = new ArrayList<>();
+    for (int i = 0; i < channelCount; i++) {
+      channels.add(ManagedChannelBuilder.forAddress(host, port)
+          .usePlaintext()
+          .build());
+    }
+    return channels;
   }
 
   public void shutdown() throws InterruptedException {
+    retryScheduler.shutdownNow();
     try {
-      if (channel != null) {
-        channel.shutdown().awaitTermination(5, TimeUnit.SECONDS);
-        logger.info("Channel shutdown completed.");
+      for (ManagedChannel channel : channels) {
+        channel.shutdown();
       }
+      for (ManagedChannel channel : channels) {
+        channel.awaitTermination(5, TimeUnit.SECONDS);
+      }
+      logger.info("Channel shutdown completed.");
     } catch (InterruptedException e) {
       logger.error("Channel shutdown interrupted", e);
       throw e;
@@ -46,9 +117,9 @@ public class GrpcTicketClient {
       logger.info("Ticket purchased with ID: {}", response.getTicketId());
       return response.getTicketId();
     } catch (StatusRuntimeException e) {
-      logger.error("RPC failed: {}", e.getStatus(), e);
+      logger.error("RPC failed: {}", e.getStatus().getCode());
+      throw e;
     }
-    return null;
   }
 
   public void getReceipt(GetReceiptRequest request) {
@@ -56,7 +127,8 @@ public class GrpcTicketClient {
       GetReceiptResponse response = blockingStub.getReceipt(request);
       logger.info("Receipt retrieved for ticket ID: {}", response.getTicket().getId());
     } catch (StatusRuntimeException e) {
-      logger.error("RPC failed: {}", e.getStatus(), e);
+      logger.error("RPC failed: {}", e.getStatus().getCode());
+      throw e;
     }
   }
 
@@ -65,7 +137,8 @@ public class GrpcTicketClient {
       RemoveUserResponse response = blockingStub.removeUser(request);
       logger.info("User removed for ticket ID: {}", request.getTicketId());
     } catch (StatusRuntimeException e) {
-      logger.error("RPC failed: {}", e.getStatus(), e);
+      logger.error("RPC failed: {}", e.getStatus().getCode());
+      throw e;
     }
   }
 
@@ -74,7 +147,8 @@ public class GrpcTicketClient {
       ModifySeatResponse response = blockingStub.modifySeat(request);
       logger.info("Seat modified for ticket ID: {}", request.getTicketId());
     } catch (StatusRuntimeException e) {
-      logger.error("RPC failed: {}", e.getStatus(), e);
+      logger.error("RPC failed: {}", e.getStatus().getCode());
+      throw e;
     }
   }
 
@@ -83,8 +157,128 @@ public class GrpcTicketClient {
       GetUsersBySectionResponseList response = blockingStub.getUsersBySection(request);
       logger.info("Users retrieved for section: {}", request.getSection());
     } catch (StatusRuntimeException e) {
-      logger.error("RPC failed: {}", e.getStatus(), e);
+      logger.error("RPC failed: {}", e.getStatus().getCode());
+      throw e;
+    }
+  }
+
+  public CompletableFuture<PurchaseTicketResponse> purchaseTicketAsync(PurchaseTicketRequest request) {
+    return call((stub, observer) -> stub.purchaseTicket(request, observer),
+        !request.getIdempotencyKey().isEmpty());
+  }
+
+  public CompletableFuture<GetReceiptResponse> getReceiptAsync(GetReceiptRequest request) {
+    return call((stub, observer) -> stub.getReceipt(request, observer), true);
+  }
+
+  public CompletableFuture<RemoveUserResponse> removeUserAsync(RemoveUserRequest request) {
+    return call((stub, observer) -> stub.removeUser(request, observer), false);
+  }
+
+  public CompletableFuture<ModifySeatResponse> modifySeatAsync(ModifySeatRequest request) {
+    return call((stub, observer) -> stub.modifySeat(request, observer),
+        !request.getIdempotencyKey().isEmpty());
+  }
+
+  public CompletableFuture<GetUsersBySectionResponseList> getUsersBySectionAsync(GetUsersBySectionRequest request) {
+    return call((stub, observer) -> stub.getUsersBySection(request, observer), true);
+  }
+
+  public CompletableFuture<GetUsersBySectionPageResponse> getUsersBySectionPageAsync(GetUsersBySectionPageRequest request) {
+    return call((stub, observer) -> stub.getUsersBySectionPage(request, observer), true);
+  }
+
+  private <T> CompletableFuture<T> call(BiConsumer<TrainBookingServiceGrpc.TrainBookingServiceStub, StreamObserver<T>> rpc,
+      boolean retryable) {
+    CompletableFuture<T> result = new CompletableFuture<>();
+    attempt(rpc, retryable, Deadline.after(deadline.toNanos(), TimeUnit.NANOSECONDS), 1, result);
+    return result;
+  }
+
+  private <T> void attempt(BiConsumer<TrainBookingServiceGrpc.TrainBookingServiceStub, StreamObserver<T>> rpc,
+      boolean retryable, Deadline callDeadline, int attempt, CompletableFuture<T> result) {
+    TrainBookingServiceGrpc.TrainBookingServiceStub stub =
+        pooledStubs.get(Math.floorMod(nextStub.getAndIncrement(), pooledStubs.size())).withDeadline(callDeadline);
+    rpc.accept(stub, new StreamObserver<>() {
+      private T response;
+
+      @Override
+      public void onNext(T value) {
+        response = value;
+      }
+
+      @Override
+      public void onError(Throwable t) {
+        long backoff = backoffNanos(attempt);
+        if (retryable
+            && Status.fromThrowable(t).getCode() == Status.Code.UNAVAILABLE
+            && attempt < MAX_ATTEMPTS
+            && callDeadline.timeRemaining(TimeUnit.NANOSECONDS) > backoff
+            && !retryScheduler.isShutdown()
+            && retryBudget.tryAcquire()) {
+          logger.debug("Retrying call after UNAVAILABLE (attempt {})", attempt + 1);
+          retryScheduler.schedule(() -> attempt(rpc, retryable, callDeadline, attempt + 1, result), backoff, TimeUnit.NANOSECONDS);
+        } else {
+          result.completeExceptionally(t);
+        }
+      }
+
+      @Override
+      public void onCompleted() {
+        retryBudget.onSuccess();
+        result.complete(response);
+      }
+    });
+  }
+
+  private static long backoffNanos(int attempt) {
+    long base = INITIAL_BACKOFF_NANOS << (attempt - 1);
+    // +/-20% jitter so that clients cut off together do not retry in lockstep
+    return (long) (base * ThreadLocalRandom.current().nextDouble(0.8, 1.2));
+  }
+
+  /**
+   * Token bucket that limits retries to a fraction of traffic. Every retry spends a token and
+   * every successful call returns {@code tokenRatio} of one; retries stop while the bucket is
+   * at half capacity or below, so an outage cannot multiply the load on the server.
+   */
+  static final class RetryBudget {
+    private static final int SCALE = 1000;
+
+    private final int maxTokens;
+    private final int tokenRatio;
+    private final AtomicInteger tokens;
+
+    RetryBudget(int maxTokens, double tokenRatio) {
+      this.maxTokens = maxTokens * SCALE;
+      this.tokenRatio = (int) (tokenRatio * SCALE);
+      this.tokens = new AtomicInteger(this.maxTokens);
     }
+
+    boolean tryAcquire() {
+      while (true) {
+        int current = tokens.get();
+        if (current - SCALE <= maxTokens / 2) {
+          return false;
+        }
+        if (tokens.compareAndSet(current, current - SCALE)) {
+          return true;
+        }
+      }
+    }
+
+    void onSuccess() {
+      tokens.updateAndGet(current -> Math.min(maxTokens, current + tokenRatio));
+    }
+  }
+
+  /**
+   * Opens a booking channel on this client's connection. Commands written to the returned
+   * observer are pipelined on one stream; results arrive on {@code results} as the server
+   * completes them, matched by correlation id.
+   */
+  public StreamObserver<BookingCommand> openBookingChannel(StreamObserver<BookingResult> results) {
+    return asyncStub.bookingChannel(results);
   }
 
   public static void main(String[] args) {
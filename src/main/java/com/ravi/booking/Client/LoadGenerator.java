@@ -0,0 +1,320 @@
+package com.ravi.booking.Client;
+
+import io.grpc.ManagedChannel;
+import io.grpc.ManagedChannelBuilder;
+import io.grpc.Status;
+import io.grpc.inprocess.InProcessChannelBuilder;
+import io.grpc.stub.StreamObserver;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+import org.ravi.model.*;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import com.ravi.booking.BookingApplication;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+/**
+ * Load generator for the booking service.
+ *
+ * <pre>
+ *   java -cp booking.jar -Dloader.main=com.ravi.booking.Client.LoadGenerator \
+ *       org.springframework.boot.loader.launch.PropertiesLauncher \
+ *       --target=localhost:6565 --mode=open --rate=5000 --duration=60 --warmup=10 \
+ *       --mix=purchase:40,receipt:40,modify:10,cancel:5,manifest:5 --channels=8
+ * </pre>
+ *
+ * In open-loop mode requests are started on a fixed schedule of {@code rate} per second,
+ * whether or not earlier ones have finished, and latency is measured from the time a
+ * request was scheduled to start. A stalled server therefore shows up as latency for every
+ * request it held back instead of as fewer samples (coordinated omission). Closed-loop mode
+ * keeps {@code concurrency} requests in flight and measures from the actual send; use it to
+ * find peak throughput, not to quote latency. {@code --target=in-process} starts the
+ * application inside this JVM and talks to it over an in-process channel.
+ */
+public class LoadGenerator {
+
+  private static final Logger logger = LoggerFactory.getLogger(LoadGenerator.class);
+
+  private static final String IN_PROCESS_NAME = "load-generator";
+
+  enum Operation { PURCHASE, RECEIPT, MODIFY, CANCEL, MANIFEST }
+
+  static final class Options {
+    String target = "localhost:6565";
+    String mode = "open";
+    int rate = 1000;
+    int concurrency = 64;
+    int channels = 4;
+    int durationSeconds = 30;
+    int warmupSeconds = 5;
+    int maxOutstanding = 10_000;
+    long deadlineMillis = 5_000;
+    Map<Operation, Integer> mix = parseMix("purchase:40,receipt:40,modify:10,cancel:5,manifest:5");
+
+    static Options parse(String[] args) {
+      Options options = new Options();
+      for (String arg : args) {
+        int eq = arg.indexOf('=');
+        if (!arg.startsWith("--") || eq < 0) {
+          throw new IllegalArgumentException("Expected --name=value but got " + arg);
+        }
+        String value = arg.substring(eq + 1);
+        switch (arg.substring(2, eq)) {
+          case "target" -> options.target = value;
+          case "mode" -> options.mode = value;
+          case "rate" -> options.rate = Integer.parseInt(value);
+          case "concurrency" -> options.concurrency = Integer.parseInt(value);
+          case "channels" -> options.channels = Integer.parseInt(value);
+          case "duration" -> options.durationSeconds = Integer.parseInt(value);
+          case "warmup" -> options.warmupSeconds = Integer.parseInt(value);
+          case "max-outstanding" -> options.maxOutstanding = Integer.parseInt(value);
+          case "deadline-ms" -> options.deadlineMillis = Long.parseLong(value);
+          case "mix" -> options.mix = parseMix(value);
+          default -> throw new IllegalArgumentException("Unknown option " + arg);
+        }
+      }
+      if (!options.mode.equals("open") && !options.mode.equals("closed")) {
+        throw new IllegalArgumentException("--mode must be open or closed");
+      }
+      return options;
+    }
+
+    static Map<Operation, Integer> parseMix(String mix) {
+      Map<Operation, Integer> weights = new EnumMap<>(Operation.class);
+      for (String part : mix.split(",")) {
+        String[] entry = part.split(":");
+        weights.put(Operation.valueOf(entry[0].trim().toUpperCase()), Integer.parseInt(entry[1].trim()));
+      }
+      return weights;
+    }
+  }
+
+  private final Options options;
+  private final List<ManagedChannel> channels = new ArrayList<>();
+  private final List<TrainBookingServiceGrpc.TrainBookingServiceStub> stubs = new ArrayList<>();
+  private final Operation[] schedule;
+  private final Map<Operation, Recorder> recorders = new EnumMap<>(Operation.class);
+  private final Map<Operation, LongAdder> completed = new EnumMap<>(Operation.class);
+  private final Map<Status.Code, LongAdder> errors = new ConcurrentHashMap<>();
+  private final ConcurrentLinkedQueue<String> tickets = new ConcurrentLinkedQueue<>();
+  private final AtomicInteger nextStub = new AtomicInteger();
+  private final AtomicInteger nextUser = new AtomicInteger();
+
+  LoadGenerator(Options options, List<ManagedChannel> channels) {
+    this.options = options;
+    this.channels.addAll(channels);
+    for (ManagedChannel channel : channels) {
+      stubs.add(TrainBookingServiceGrpc.newStub(channel));
+    }
+    List<Operation> weighted = new ArrayList<>();
+    options.mix.forEach((operation, weight) -> {
+      for (int i = 0; i < weight; i++) {
+        weighted.add(operation);
+      }
+    });
+    if (weighted.isEmpty()) {
+      throw new IllegalArgumentException("--mix must give at least one operation a weight");
+    }
+    schedule = weighted.toArray(new Operation[0]);
+    for (Operation operation : Operation.values()) {
+      recorders.put(operation, new Recorder(TimeUnit.MINUTES.toNanos(1), 3));
+      completed.put(operation, new LongAdder());
+    }
+  }
+
+  /**
+   * Runs the warmup and the measured phase and returns the measured histograms.
+   */
+  Map<Operation, Histogram> run() throws InterruptedException {
+    logger.info("Warming up for {}s", options.warmupSeconds);
+    drive(TimeUnit.SECONDS.toNanos(options.warmupSeconds));
+    reset();
+
+    logger.info("Measuring for {}s in {}-loop mode", options.durationSeconds, options.mode);
+    drive(TimeUnit.SECONDS.toNanos(options.durationSeconds));
+    Map<Operation, Histogram> histograms = new EnumMap<>(Operation.class);
+    recorders.forEach((operation, recorder) -> histograms.put(operation, recorder.getIntervalHistogram()));
+    return histograms;
+  }
+
+  private void reset() {
+    recorders.values().forEach(Recorder::reset);
+    completed.values().forEach(LongAdder::reset);
+    errors.clear();
+  }
+
+  private void drive(long durationNanos) throws InterruptedException {
+    if (options.mode.equals("open")) {
+      driveOpenLoop(durationNanos);
+    } else {
+      driveClosedLoop(durationNanos);
+    }
+  }
+
+  private void driveOpenLoop(long durationNanos) throws InterruptedException {
+    Semaphore outstanding = new Semaphore(options.maxOutstanding);
+    long interval = TimeUnit.SECONDS.toNanos(1) / options.rate;
+    long start = System.nanoTime();
+    for (long i = 0; ; i++) {
+      long intendedStart = start + i * interval;
+      if (intendedStart - start >= durationNanos) {
+        break;
+      }
+      long wait;
+      while ((wait = intendedStart - System.nanoTime()) > 0) {
+        LockSupport.parkNanos(wait);
+      }
+      // Waiting here only delays the send; the latency still counts from intendedStart
+      outstanding.acquire();
+      issue(nextOperation(), intendedStart, outstanding::release);
+    }
+    outstanding.acquire(options.maxOutstanding);
+  }
+
+  private void driveClosedLoop(long durationNanos) throws InterruptedException {
+    long end = System.nanoTime() + durationNanos;
+    CountDownLatch finished = new CountDownLatch(options.concurrency);
+    for (int i = 0; i < options.concurrency; i++) {
+      Runnable[] next = new Runnable[1];
+      next[0] = () -> {
+        if (System.nanoTime() - end >= 0) {
+          finished.countDown();
+        } else {
+          issue(nextOperation(), System.nanoTime(), next[0]);
+        }
+      };
+      next[0].run();
+    }
+    finished.await();
+  }
+
+  private Operation nextOperation() {
+    return schedule[ThreadLocalRandom.current().nextInt(schedule.length)];
+  }
+
+  private void issue(Operation operation, long intendedStart, Runnable done) {
+    TrainBookingServiceGrpc.TrainBookingServiceStub stub = stubs.get(Math.floorMod(nextStub.getAndIncrement(), stubs.size()))
+        .withDeadlineAfter(options.deadlineMillis, TimeUnit.MILLISECONDS);
+    String ticketId = operation == Operation.PURCHASE || operation == Operation.MANIFEST
+        ? null
+        : (operation == Operation.CANCEL ? tickets.poll() : tickets.peek());
+    if (ticketId == null && operation != Operation.MANIFEST) {
+      // Nothing to act on yet; book a ticket instead
+      operation = Operation.PURCHASE;
+    }
+    switch (operation) {
+      case PURCHASE -> {
+        int user = nextUser.getAndIncrement();
+        stub.purchaseTicket(PurchaseTicketRequest.newBuilder()
+                .setUser(User.newBuilder().setFirstName("Load").setLastName("User" + user).setEmail("load" + user + "@example.com"))
+                .setJourney(Journey.newBuilder().setFrom("Goa").setTo("Hyd"))
+                .build(),
+            observer(Operation.PURCHASE, intendedStart, done, response -> tickets.add(response.getTicketId())));
+      }
+      case RECEIPT -> stub.getReceipt(GetReceiptRequest.newBuilder().setTicketId(ticketId).build(),
+          observer(operation, intendedStart, done, response -> { }));
+      case MODIFY -> stub.modifySeat(ModifySeatRequest.newBuilder().setTicketId(ticketId).build(),
+          observer(operation, intendedStart, done, response -> { }));
+      case CANCEL -> stub.removeUser(RemoveUserRequest.newBuilder().setTicketId(ticketId).build(),
+          observer(operation, intendedStart, done, response -> { }));
+      case MANIFEST -> stub.getUsersBySectionPage(GetUsersBySectionPageRequest.newBuilder()
+              .setSection(ThreadLocalRandom.current().nextBoolean() ? Section.S_A : Section.S_B)
+              .setPageSize(100)
+              .build(),
+          observer(operation, intendedStart, done, response -> { }));
+    }
+  }
+
+  private <T> StreamObserver<T> observer(Operation operation, long intendedStart, Runnable done, Consumer<T> onResponse) {
+    return new StreamObserver<>() {
+      @Override
+      public void onNext(T response) {
+        onResponse.accept(response);
+      }
+
+      @Override
+      public void onError(Throwable t) {
+        errors.computeIfAbsent(Status.fromThrowable(t).getCode(), code -> new LongAdder()).increment();
+        done.run();
+      }
+
+      @Override
+      public void onCompleted() {
+        recorders.get(operation).recordValue(Math.max(0, System.nanoTime() - intendedStart));
+        completed.get(operation).increment();
+        done.run();
+      }
+    };
+  }
+
+  void report(Map<Operation, Histogram> histograms) {
+    double seconds = options.durationSeconds;
+    Histogram total = new Histogram(3);
+    System.out.printf("%-10s %10s %10s %10s %10s %10s %10s%n", "operation", "count", "ops/s", "p50 us", "p99 us", "p999 us", "max us");
+    for (Operation operation : Operation.values()) {
+      Histogram histogram = histograms.get(operation);
+      if (histogram.getTotalCount() == 0) {
+        continue;
+      }
+      total.add(histogram);
+      printRow(operation.name().toLowerCase(), histogram, seconds);
+    }
+    printRow("all", total, seconds);
+    Map<Status.Code, Long> failures = new HashMap<>();
+    errors.forEach((code, count) -> failures.put(code, count.sum()));
+    System.out.printf("errors: %s%n", failures.isEmpty() ? "none" : failures);
+  }
+
+  private static void printRow(String name, Histogram histogram, double seconds) {
+    System.out.printf("%-10s %10d %10.0f %10.0f %10.0f %10.0f %10.0f%n", name, histogram.getTotalCount(),
+        histogram.getTotalCount() / seconds,
+        histogram.getValueAtPercentile(50) / 1000.0,
+        histogram.getValueAtPercentile(99) / 1000.0,
+        histogram.getValueAtPercentile(99.9) / 1000.0,
+        histogram.getMaxValue() / 1000.0);
+  }
+
+  public static void main(String[] args) throws InterruptedException {
+    Options options = Options.parse(args);
+    ConfigurableApplicationContext application = null;
+    List<ManagedChannel> channels = new ArrayList<>();
+    try {
+      if (options.target.equals("in-process")) {
+        application = SpringApplication.run(BookingApplication.class,
+            "--grpc.server.port=-1", "--grpc.server.in-process-name=" + IN_PROCESS_NAME);
+      }
+      for (int i = 0; i < options.channels; i++) {
+        channels.add(options.target.equals("in-process")
+            ? InProcessChannelBuilder.forName(IN_PROCESS_NAME).build()
+            : ManagedChannelBuilder.forTarget(options.target).usePlaintext().build());
+      }
+      LoadGenerator generator = new LoadGenerator(options, channels);
+      generator.report(generator.run());
+    } finally {
+      for (ManagedChannel channel : channels) {
+        channel.shutdown().awaitTermination(5, TimeUnit.SECONDS);
+      }
+      if (application != null) {
+        application.close();
+      }
+    }
+  }
+}
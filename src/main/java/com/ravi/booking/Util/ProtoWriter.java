@@ -0,0 +1,237 @@
+package com.ravi.booking.Util;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.List;
+
+import org.ravi.model.GetReceiptResponse;
+import org.ravi.model.GetUsersBySectionPageResponse;
+import org.ravi.model.GetUsersBySectionResponse;
+import org.ravi.model.GetUsersBySectionResponseList;
+import org.ravi.model.Ticket;
+import org.ravi.model.User;
+
+import com.google.protobuf.ByteString;
+import com.google.protobuf.CodedOutputStream;
+import com.google.protobuf.WireFormat;
+import com.ravi.booking.model.Section;
+import com.ravi.booking.model.TicketEntity;
+import com.ravi.booking.model.UserEntity;
+
+/**
+ * Encodes receipts and manifests straight from the entities with a {@link CodedOutputStream},
+ * producing the same bytes as building the generated messages and serializing them.
+ *
+ * Sizes are computed up front so that every response is written into one array of exactly
+ * the right length. Each user is encoded once per response, for sizing and writing alike.
+ */
+public final class ProtoWriter {
+
+  private ProtoWriter() {
+  }
+
+  /**
+   * Encodes a {@link GetReceiptResponse} for the ticket.
+   */
+  public static byte[] receipt(TicketEntity ticket) {
+    String serviceDate = serviceDate(ticket.getServiceDate());
+    User user = ticket.getUser() == null ? null : Util.toProto(ticket.getUser());
+    int ticketSize = ticketSize(ticket, user, serviceDate);
+    byte[] bytes = new byte[lengthDelimitedSize(GetReceiptResponse.TICKET_FIELD_NUMBER, ticketSize)];
+    CodedOutputStream out = CodedOutputStream.newInstance(bytes);
+    try {
+      out.writeTag(GetReceiptResponse.TICKET_FIELD_NUMBER, WireFormat.WIRETYPE_LENGTH_DELIMITED);
+      out.writeUInt32NoTag(ticketSize);
+      writeTicket(out, ticket, user, serviceDate);
+      out.checkNoSpaceLeft();
+    } catch (IOException e) {
+      throw new IllegalStateException("Receipt did not fit its computed size", e);
+    }
+    return bytes;
+  }
+
+  /**
+   * Encodes a manifest of the given tickets. Without a page token this is a
+   * {@link GetUsersBySectionResponseList}; with one it is a
+   * {@link GetUsersBySectionPageResponse}, which keeps its rows in the same field.
+   */
+  public static byte[] manifest(List<TicketEntity> tickets, String nextPageToken) {
+    Manifest manifest = new Manifest(tickets.size());
+    for (TicketEntity ticket : tickets) {
+      manifest.add(ticket.getUser(), ticket.getSeatNo(), ticket.getCoach());
+    }
+    return manifest.toByteArray(nextPageToken);
+  }
+
+  /**
+   * Rows of a manifest, collected one at a time so that they can be read from a store
+   * without building tickets, then encoded like {@link #manifest}. Can be cleared and
+   * reused for the next chunk of a stream.
+   */
+  public static final class Manifest {
+    private UserEntity[] users;
+    private ByteString[] names;
+    private int[] seats;
+    private String[] coaches;
+    private int[] rowSizes;
+    private int rows;
+
+    public Manifest(int expectedRows) {
+      int capacity = Math.max(expectedRows, 1);
+      users = new UserEntity[capacity];
+      names = new ByteString[capacity];
+      seats = new int[capacity];
+      coaches = new String[capacity];
+      rowSizes = new int[capacity];
+    }
+
+    public void add(UserEntity user, int seatNo, String coach) {
+      if (rows == users.length) {
+        int capacity = rows * 2;
+        users = Arrays.copyOf(users, capacity);
+        names = Arrays.copyOf(names, capacity);
+        seats = Arrays.copyOf(seats, capacity);
+        coaches = Arrays.copyOf(coaches, capacity);
+        rowSizes = Arrays.copyOf(rowSizes, capacity);
+      }
+      users[rows] = user;
+      seats[rows] = seatNo;
+      coaches[rows] = coach;
+      rows++;
+    }
+
+    public int size() {
+      return rows;
+    }
+
+    public void clear() {
+      Arrays.fill(users, 0, rows, null);
+      Arrays.fill(names, 0, rows, null);
+      Arrays.fill(coaches, 0, rows, null);
+      rows = 0;
+    }
+
+    public byte[] toByteArray(String nextPageToken) {
+      int size = 0;
+      for (int i = 0; i < rows; i++) {
+        names[i] = displayName(users[i]);
+        rowSizes[i] = manifestRowSize(names[i], seats[i], coaches[i]);
+        size += lengthDelimitedSize(GetUsersBySectionResponseList.RESPONSE_FIELD_NUMBER, rowSizes[i]);
+      }
+      size += stringSize(GetUsersBySectionPageResponse.NEXT_PAGE_TOKEN_FIELD_NUMBER, nextPageToken);
+
+      byte[] bytes = new byte[size];
+      CodedOutputStream out = CodedOutputStream.newInstance(bytes);
+      try {
+        for (int i = 0; i < rows; i++) {
+          out.writeTag(GetUsersBySectionResponseList.RESPONSE_FIELD_NUMBER, WireFormat.WIRETYPE_LENGTH_DELIMITED);
+          out.writeUInt32NoTag(rowSizes[i]);
+          writeManifestRow(out, names[i], seats[i], coaches[i]);
+        }
+        writeString(out, GetUsersBySectionPageResponse.NEXT_PAGE_TOKEN_FIELD_NUMBER, nextPageToken);
+        out.checkNoSpaceLeft();
+      } catch (IOException e) {
+        throw new IllegalStateException("Manifest did not fit its computed size", e);
+      }
+      return bytes;
+    }
+  }
+
+  private static int ticketSize(TicketEntity ticket, User user, String serviceDate) {
+    int size = stringSize(Ticket.ID_FIELD_NUMBER, ticket.getId())
+        + stringSize(Ticket.FROM_FIELD_NUMBER, ticket.getSource())
+        + stringSize(Ticket.TO_FIELD_NUMBER, ticket.getDestination());
+    if (user != null) {
+      size += CodedOutputStream.computeMessageSize(Ticket.USER_FIELD_NUMBER, user);
+    }
+    if (Double.doubleToRawLongBits(ticket.getPrice()) != 0) {
+      size += CodedOutputStream.computeDoubleSize(Ticket.PRICE_FIELD_NUMBER, ticket.getPrice());
+    }
+    if (section(ticket) != 0) {
+      size += CodedOutputStream.computeEnumSize(Ticket.SECTION_FIELD_NUMBER, section(ticket));
+    }
+    if (ticket.getSeatNo() != 0) {
+      size += CodedOutputStream.computeInt32Size(Ticket.SEAT_FIELD_NUMBER, ticket.getSeatNo());
+    }
+    return size
+        + stringSize(Ticket.TRAIN_ID_FIELD_NUMBER, ticket.getTrainId())
+        + stringSize(Ticket.SERVICE_DATE_FIELD_NUMBER, serviceDate)
+        + stringSize(Ticket.COACH_FIELD_NUMBER, ticket.getCoach());
+  }
+
+  private static void writeTicket(CodedOutputStream out, TicketEntity ticket, User user, String serviceDate)
+      throws IOException {
+    writeString(out, Ticket.ID_FIELD_NUMBER, ticket.getId());
+    writeString(out, Ticket.FROM_FIELD_NUMBER, ticket.getSource());
+    writeString(out, Ticket.TO_FIELD_NUMBER, ticket.getDestination());
+    if (user != null) {
+      out.writeMessage(Ticket.USER_FIELD_NUMBER, user);
+    }
+    if (Double.doubleToRawLongBits(ticket.getPrice()) != 0) {
+      out.writeDouble(Ticket.PRICE_FIELD_NUMBER, ticket.getPrice());
+    }
+    if (section(ticket) != 0) {
+      out.writeEnum(Ticket.SECTION_FIELD_NUMBER, section(ticket));
+    }
+    if (ticket.getSeatNo() != 0) {
+      out.writeInt32(Ticket.SEAT_FIELD_NUMBER, ticket.getSeatNo());
+    }
+    writeString(out, Ticket.TRAIN_ID_FIELD_NUMBER, ticket.getTrainId());
+    writeString(out, Ticket.SERVICE_DATE_FIELD_NUMBER, serviceDate);
+    writeString(out, Ticket.COACH_FIELD_NUMBER, ticket.getCoach());
+  }
+
+  // The user's name as shown in manifests, UTF-8 encoded; empty without a user
+  private static ByteString displayName(UserEntity user) {
+    return user == null ? ByteString.EMPTY : ByteString.copyFromUtf8(user.getFirstName() + " " + user.getLastName());
+  }
+
+  private static int manifestRowSize(ByteString name, int seatNo, String coach) {
+    int size = 0;
+    if (!name.isEmpty()) {
+      size += CodedOutputStream.computeBytesSize(GetUsersBySectionResponse.USERNAME_FIELD_NUMBER, name);
+    }
+    if (seatNo != 0) {
+      size += CodedOutputStream.computeInt32Size(GetUsersBySectionResponse.SEATNO_FIELD_NUMBER, seatNo);
+    }
+    return size + stringSize(GetUsersBySectionResponse.COACH_FIELD_NUMBER, coach);
+  }
+
+  private static void writeManifestRow(CodedOutputStream out, ByteString name, int seatNo, String coach)
+      throws IOException {
+    if (!name.isEmpty()) {
+      out.writeBytes(GetUsersBySectionResponse.USERNAME_FIELD_NUMBER, name);
+    }
+    if (seatNo != 0) {
+      out.writeInt32(GetUsersBySectionResponse.SEATNO_FIELD_NUMBER, seatNo);
+    }
+    writeString(out, GetUsersBySectionResponse.COACH_FIELD_NUMBER, coach);
+  }
+
+  // Same mapping as Util.toProto: anything but section A is S_B
+  private static int section(TicketEntity ticket) {
+    return ticket.getSection() == Section.A
+        ? org.ravi.model.Section.S_A_VALUE
+        : org.ravi.model.Section.S_B_VALUE;
+  }
+
+  private static String serviceDate(LocalDate date) {
+    return date == null ? null : date.toString();
+  }
+
+  // proto3 leaves empty strings off the wire
+  private static int stringSize(int field, String value) {
+    return value == null || value.isEmpty() ? 0 : CodedOutputStream.computeStringSize(field, value);
+  }
+
+  private static void writeString(CodedOutputStream out, int field, String value) throws IOException {
+    if (value != null && !value.isEmpty()) {
+      out.writeString(field, value);
+    }
+  }
+
+  private static int lengthDelimitedSize(int field, int length) {
+    return CodedOutputStream.computeTagSize(field) + CodedOutputStream.computeUInt32SizeNoTag(length) + length;
+  }
+}
@@ -7,7 +7,57 @@ import org.ravi.model.User;
 import com.ravi.booking.model.TicketEntity;
 import com.ravi.booking.model.UserEntity;
 
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.UUID;
+
 public class Util {
+
+  // UUID.randomUUID() draws from NativePRNG, which reads /dev/urandom while holding a
+  // monitor and so pins the carrier of a virtual thread. DRBG only does arithmetic under
+  // its lock once seeded. Threads are spread over several generators so that concurrent
+  // ids rarely wait on the same lock; one per thread would be seeded again for every
+  // virtual thread.
+  private static final SecureRandom[] ID_RANDOMS = newIdRandoms();
+
+  private static SecureRandom[] newIdRandoms() {
+    // A power of two of at least four per core
+    int count = Integer.highestOneBit(Runtime.getRuntime().availableProcessors() * 4 - 1) << 1;
+    SecureRandom[] randoms = new SecureRandom[count];
+    for (int i = 0; i < randoms.length; i++) {
+      randoms[i] = newIdRandom();
+      // Seed now rather than on a request thread
+      randoms[i].nextBytes(new byte[1]);
+    }
+    return randoms;
+  }
+
+  private static SecureRandom newIdRandom() {
+    try {
+      return SecureRandom.getInstance("DRBG");
+    } catch (NoSuchAlgorithmException e) {
+      return new SecureRandom();
+    }
+  }
+
+  /**
+   * Returns a random (version 4) UUID string for entity ids.
+   */
+  public static String newId() {
+    byte[] bytes = new byte[16];
+    // Thread ids are handed out in sequence, so consecutive threads use different generators
+    ID_RANDOMS[(int) Thread.currentThread().threadId() & (ID_RANDOMS.length - 1)].nextBytes(bytes);
+    bytes[6] = (byte) ((bytes[6] & 0x0f) | 0x40);
+    bytes[8] = (byte) ((bytes[8] & 0x3f) | 0x80);
+    long msb = 0;
+    long lsb = 0;
+    for (int i = 0; i < 8; i++) {
+      msb = (msb << 8) | (bytes[i] & 0xff);
+      lsb = (lsb << 8) | (bytes[i + 8] & 0xff);
+    }
+    return new UUID(msb, lsb).toString();
+  }
+
   public static Ticket toProto(TicketEntity entity) {
     if (entity == null) {
       return null;
@@ -17,18 +67,19 @@ public class Util {
     ticketBuilder.setPrice(entity.getPrice());
     ticketBuilder.setSeat(entity.getSeatNo());
     if (entity.getUser() != null) {
-      UserEntity userEntity = entity.getUser();
-      User.Builder userBuilder = User.newBuilder();
-
-      userBuilder.setId(userEntity.getId())
-          .setFirstName(userEntity.getFirstName())
-          .setLastName(userEntity.getLastName())
-          .setEmail(userEntity.getEmail());
-
-      ticketBuilder.setUser(userBuilder.build());
+      ticketBuilder.setUser(toProto(entity.getUser()));
     }
     ticketBuilder.setFrom(entity.getSource());
     ticketBuilder.setTo(entity.getDestination());
+    if (entity.getTrainId() != null) {
+      ticketBuilder.setTrainId(entity.getTrainId());
+    }
+    if (entity.getServiceDate() != null) {
+      ticketBuilder.setServiceDate(entity.getServiceDate().toString());
+    }
+    if (entity.getCoach() != null) {
+      ticketBuilder.setCoach(entity.getCoach());
+    }
     if(entity.getSection()== com.ravi.booking.model.Section.A)
       ticketBuilder.setSection(Section.S_A);
     else
@@ -37,6 +88,30 @@ public class Util {
     return ticketBuilder.build();
   }
 
+  /**
+   * Returns the user as a proto. Missing fields are left empty.
+   */
+  public static User toProto(UserEntity entity) {
+    return User.newBuilder()
+        .setId(orEmpty(entity.getId()))
+        .setFirstName(orEmpty(entity.getFirstName()))
+        .setLastName(orEmpty(entity.getLastName()))
+        .setEmail(orEmpty(entity.getEmail()))
+        .build();
+  }
+
+  private static String orEmpty(String value) {
+    return value == null ? "" : value;
+  }
+
+  public static com.ravi.booking.model.Section toModel(Section section) {
+    return section == Section.S_A ? com.ravi.booking.model.Section.A : com.ravi.booking.model.Section.B;
+  }
+
+  public static Section toProto(com.ravi.booking.model.Section section) {
+    return section == com.ravi.booking.model.Section.A ? Section.S_A : Section.S_B;
+  }
+
   public static TicketEntity toEntity(Ticket ticket) {
     if (ticket == null) {
       return null;
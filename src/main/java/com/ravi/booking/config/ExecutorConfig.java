@@ -0,0 +1,81 @@
+package com.ravi.booking.config;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import com.ravi.booking.interceptor.AdaptiveConcurrencyLimitInterceptor;
+import com.ravi.booking.interceptor.ConcurrencyLimitInterceptor;
+
+import net.devh.boot.grpc.server.interceptor.GrpcGlobalServerInterceptor;
+import net.devh.boot.grpc.server.serverfactory.GrpcServerConfigurer;
+
+/**
+ * Executors for gRPC calls and for booking work that runs off the call thread.
+ *
+ * With {@code booking.grpc.executor=virtual} every gRPC call and every booking command runs
+ * on its own virtual thread. Otherwise the gRPC server keeps its default cached pool and
+ * booking commands use a fixed platform thread pool. In both modes the number of calls in
+ * flight is capped by {@code booking.grpc.max-concurrent-calls}.
+ *
+ * With {@code booking.grpc.adaptive-limit.enabled=true} each unary method also gets a limit
+ * that adapts to its latency, set up with {@code booking.grpc.adaptive-limit.*}. The global
+ * cap bounds what the server can hold at all; the per-method limits sit below it and shed a
+ * method whose latency is rising before it uses up the shared capacity. A per-method limit
+ * never exceeds the global cap, so enabling it cannot raise the number of calls in flight.
+ */
+@Configuration
+public class ExecutorConfig {
+
+  @Bean(name = "bookingExecutor", destroyMethod = "shutdown")
+  public ExecutorService bookingExecutor(
+      @Value("${booking.grpc.executor:default}") String mode,
+      @Value("${booking.executor.threads:#{T(java.lang.Runtime).getRuntime().availableProcessors() * 2}}") int threads) {
+    if ("virtual".equals(mode)) {
+      return Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("booking-", 0).factory());
+    }
+    AtomicInteger counter = new AtomicInteger();
+    ThreadFactory threadFactory = runnable -> {
+      Thread thread = new Thread(runnable, "booking-" + counter.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    };
+    return Executors.newFixedThreadPool(threads, threadFactory);
+  }
+
+  @Bean(name = "grpcExecutor", destroyMethod = "shutdown")
+  @ConditionalOnProperty(name = "booking.grpc.executor", havingValue = "virtual")
+  public ExecutorService grpcExecutor() {
+    return Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("grpc-", 0).factory());
+  }
+
+  @Bean
+  @ConditionalOnProperty(name = "booking.grpc.executor", havingValue = "virtual")
+  public GrpcServerConfigurer virtualThreadServerConfigurer(@Qualifier("grpcExecutor") ExecutorService grpcExecutor) {
+    return serverBuilder -> serverBuilder.executor(grpcExecutor);
+  }
+
+  @GrpcGlobalServerInterceptor
+  public ConcurrencyLimitInterceptor concurrencyLimitInterceptor(
+      @Value("${booking.grpc.max-concurrent-calls:50000}") int maxConcurrentCalls) {
+    return new ConcurrencyLimitInterceptor(maxConcurrentCalls);
+  }
+
+  @GrpcGlobalServerInterceptor
+  @ConditionalOnProperty(name = "booking.grpc.adaptive-limit.enabled", havingValue = "true")
+  public AdaptiveConcurrencyLimitInterceptor adaptiveConcurrencyLimitInterceptor(
+      @Value("${booking.grpc.max-concurrent-calls:50000}") int maxConcurrentCalls,
+      @Value("${booking.grpc.adaptive-limit.initial:1000}") int initialLimit,
+      @Value("${booking.grpc.adaptive-limit.min:4}") int minLimit,
+      @Value("${booking.grpc.adaptive-limit.max:${booking.grpc.max-concurrent-calls:50000}}") int maxLimit) {
+    int max = Math.min(maxLimit, maxConcurrentCalls);
+    return new AdaptiveConcurrencyLimitInterceptor(Math.min(initialLimit, max), Math.min(minLimit, max), max);
+  }
+}
@@ -0,0 +1,83 @@
+package com.ravi.booking.config;
+
+import java.time.LocalDate;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+
+import com.ravi.booking.interceptor.MetricsInterceptor;
+import com.ravi.booking.interceptor.RequestLogInterceptor;
+import com.ravi.booking.model.Coach;
+import com.ravi.booking.model.Section;
+import com.ravi.booking.model.TrainTopology;
+import com.ravi.booking.repository.SeatInventoryRepository;
+import com.ravi.booking.repository.TicketRepository;
+import com.ravi.booking.repository.TrainInventory;
+import com.ravi.booking.repository.UserRepository;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import net.devh.boot.grpc.server.interceptor.GrpcGlobalServerInterceptor;
+
+/**
+ * Call metrics for the gRPC server and gauges over the repositories, exported through the
+ * actuator's Prometheus endpoint, and the sampled request log.
+ */
+@Configuration
+public class MetricsConfig {
+
+  // Outermost, so that calls turned away by the concurrency limit are counted too
+  @GrpcGlobalServerInterceptor
+  @Order(Ordered.HIGHEST_PRECEDENCE)
+  public MetricsInterceptor metricsInterceptor(MeterRegistry registry) {
+    return new MetricsInterceptor(registry);
+  }
+
+  @GrpcGlobalServerInterceptor
+  public RequestLogInterceptor requestLogInterceptor(RequestLogProperties properties) {
+    return new RequestLogInterceptor(properties);
+  }
+
+  /**
+   * Free seats per train and section on today's run, and the number of tickets and users.
+   * Reading the gauges never creates a run; until today's exists every seat counts as free.
+   */
+  @Bean
+  public MeterBinder bookingGauges(SeatInventoryRepository inventoryRepository,
+      TicketRepository ticketRepository, UserRepository userRepository) {
+    return registry -> {
+      for (TrainTopology topology : inventoryRepository.getTopologies().values()) {
+        String trainId = topology.getTrainId();
+        for (Section section : Section.values()) {
+          Gauge.builder("booking.seats.free", () -> {
+                TrainInventory run = inventoryRepository.findInventory(trainId, LocalDate.now());
+                return run == null ? seats(topology, section) : run.getFreeSeats(section);
+              })
+              .description("Seats free on today's run")
+              .tag("train", trainId)
+              .tag("section", section.name())
+              .register(registry);
+        }
+      }
+      Gauge.builder("booking.tickets", ticketRepository::count)
+          .description("Tickets currently booked")
+          .register(registry);
+      Gauge.builder("booking.users", userRepository::count)
+          .description("Known users")
+          .register(registry);
+    };
+  }
+
+  private static int seats(TrainTopology topology, Section section) {
+    int seats = 0;
+    for (Coach coach : topology.getCoaches()) {
+      if (coach.getSection() == section) {
+        seats += coach.getSeats();
+      }
+    }
+    return seats;
+  }
+}
@@ -0,0 +1,41 @@
+package com.ravi.booking.config;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * Sampling of the request log, loaded from {@code booking.request-log.*}.
+ */
+@Component
+@ConfigurationProperties(prefix = "booking.request-log")
+public class RequestLogProperties {
+
+  private double sampleRate = 0.01;
+  private Map<String, Double> methodSampleRates = new HashMap<>();
+
+  /**
+   * Fraction of successful calls to log, between 0 and 1. Failed calls are always logged.
+   */
+  public double getSampleRate() {
+    return sampleRate;
+  }
+
+  public void setSampleRate(double sampleRate) {
+    this.sampleRate = sampleRate;
+  }
+
+  /**
+   * Sample rates that override {@link #getSampleRate()}, keyed by method name such as
+   * {@code PurchaseTicket}.
+   */
+  public Map<String, Double> getMethodSampleRates() {
+    return methodSampleRates;
+  }
+
+  public void setMethodSampleRates(Map<String, Double> methodSampleRates) {
+    this.methodSampleRates = methodSampleRates;
+  }
+}
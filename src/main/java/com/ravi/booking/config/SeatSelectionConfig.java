@@ -0,0 +1,31 @@
+package com.ravi.booking.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import com.ravi.booking.strategy.FirstFitStrategy;
+import com.ravi.booking.strategy.RandomStrategy;
+import com.ravi.booking.strategy.SeatPositionStrategy;
+import com.ravi.booking.strategy.SeatSelectionStrategy;
+import com.ravi.booking.strategy.UniformRandomStrategy;
+
+/**
+ * Chooses the seat selection strategy from {@code booking.seat-strategy}.
+ */
+@Configuration
+public class SeatSelectionConfig {
+
+  @Bean
+  public SeatSelectionStrategy seatSelectionStrategy(
+      @Value("${booking.seat-strategy:random}") String strategy) {
+    return switch (strategy) {
+      case "random" -> new UniformRandomStrategy();
+      case "first-fit" -> new FirstFitStrategy();
+      case "window" -> new SeatPositionStrategy(SeatPositionStrategy.Position.WINDOW);
+      case "aisle" -> new SeatPositionStrategy(SeatPositionStrategy.Position.AISLE);
+      case "rejection-sampling" -> new RandomStrategy();
+      default -> throw new IllegalArgumentException("Unknown booking.seat-strategy: " + strategy);
+    };
+  }
+}
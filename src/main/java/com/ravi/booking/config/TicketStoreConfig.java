@@ -0,0 +1,32 @@
+package com.ravi.booking.config;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import com.ravi.booking.repository.HeapTicketStore;
+import com.ravi.booking.repository.MappedTicketStore;
+import com.ravi.booking.repository.TicketStore;
+import com.ravi.booking.repository.UserRepository;
+
+/**
+ * Chooses where tickets are kept from {@code booking.ticket-store.type}.
+ */
+@Configuration
+public class TicketStoreConfig {
+
+  @Bean
+  public TicketStore ticketStore(
+      @Value("${booking.ticket-store.type:heap}") String type,
+      @Value("${booking.ticket-store.file:data/tickets.dat}") String file,
+      UserRepository userRepository) throws IOException {
+    return switch (type) {
+      case "heap" -> new HeapTicketStore();
+      case "mapped" -> new MappedTicketStore(Paths.get(file), userRepository);
+      default -> throw new IllegalArgumentException("Unknown booking.ticket-store.type: " + type);
+    };
+  }
+}
@@ -0,0 +1,96 @@
+package com.ravi.booking.config;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import com.ravi.booking.model.Section;
+
+/**
+ * Train layouts loaded from {@code booking.topology.*}.
+ */
+@Component
+@ConfigurationProperties(prefix = "booking.topology")
+public class TopologyProperties {
+
+  private String defaultTrain;
+  private List<TrainProperties> trains = new ArrayList<>();
+
+  public String getDefaultTrain() {
+    return defaultTrain;
+  }
+
+  public void setDefaultTrain(String defaultTrain) {
+    this.defaultTrain = defaultTrain;
+  }
+
+  public List<TrainProperties> getTrains() {
+    return trains;
+  }
+
+  public void setTrains(List<TrainProperties> trains) {
+    this.trains = trains;
+  }
+
+  public static class TrainProperties {
+    private String id;
+    private List<String> stations = new ArrayList<>();
+    private List<CoachProperties> coaches = new ArrayList<>();
+
+    public String getId() {
+      return id;
+    }
+
+    public void setId(String id) {
+      this.id = id;
+    }
+
+    public List<String> getStations() {
+      return stations;
+    }
+
+    public void setStations(List<String> stations) {
+      this.stations = stations;
+    }
+
+    public List<CoachProperties> getCoaches() {
+      return coaches;
+    }
+
+    public void setCoaches(List<CoachProperties> coaches) {
+      this.coaches = coaches;
+    }
+  }
+
+  public static class CoachProperties {
+    private String name;
+    private Section section;
+    private int seats;
+
+    public String getName() {
+      return name;
+    }
+
+    public void setName(String name) {
+      this.name = name;
+    }
+
+    public Section getSection() {
+      return section;
+    }
+
+    public void setSection(Section section) {
+      this.section = section;
+    }
+
+    public int getSeats() {
+      return seats;
+    }
+
+    public void setSeats(int seats) {
+      this.seats = seats;
+    }
+  }
+}
@@ -0,0 +1,7 @@
+package com.ravi.booking.exception;
+
+public class AdmissionRejectedException extends RuntimeException {
+  public AdmissionRejectedException(String message) {
+    super(message);
+  }
+}
@@ -0,0 +1,7 @@
+package com.ravi.booking.exception;
+
+public class HoldNotFoundException extends RuntimeException {
+  public HoldNotFoundException(String message) {
+    super(message);
+  }
+}
@@ -0,0 +1,7 @@
+package com.ravi.booking.exception;
+
+public class TrainNotFoundException extends RuntimeException {
+  public TrainNotFoundException(String message) {
+    super(message);
+  }
+}
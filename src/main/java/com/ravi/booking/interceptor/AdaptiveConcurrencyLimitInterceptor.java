@@ -0,0 +1,95 @@
+package com.ravi.booking.interceptor;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import io.grpc.ForwardingServerCall;
+import io.grpc.ForwardingServerCallListener;
+import io.grpc.Metadata;
+import io.grpc.MethodDescriptor;
+import io.grpc.ServerCall;
+import io.grpc.ServerCallHandler;
+import io.grpc.ServerInterceptor;
+import io.grpc.Status;
+
+/**
+ * Gives every unary method its own {@link GradientLimit}, so a slow method that is backing
+ * up is throttled on its own latency and cheap reads keep their capacity. A call over its
+ * method's limit is closed straight away with {@code RESOURCE_EXHAUSTED} and a
+ * {@code grpc-retry-pushback-ms} trailer telling the client when to try again, which gRPC
+ * clients with a retry policy honour. Streaming calls are long-lived and are not limited
+ * here.
+ */
+public class AdaptiveConcurrencyLimitInterceptor implements ServerInterceptor {
+
+  static final Metadata.Key<String> RETRY_PUSHBACK =
+      Metadata.Key.of("grpc-retry-pushback-ms", Metadata.ASCII_STRING_MARSHALLER);
+
+  private final int initialLimit;
+  private final int minLimit;
+  private final int maxLimit;
+  private final Map<String, GradientLimit> limits = new ConcurrentHashMap<>();
+
+  public AdaptiveConcurrencyLimitInterceptor(int initialLimit, int minLimit, int maxLimit) {
+    this.initialLimit = initialLimit;
+    this.minLimit = minLimit;
+    this.maxLimit = maxLimit;
+  }
+
+  public int getLimit(String fullMethodName) {
+    GradientLimit limit = limits.get(fullMethodName);
+    return limit == null ? initialLimit : limit.getLimit();
+  }
+
+  @Override
+  public <ReqT, RespT> ServerCall.Listener<ReqT> interceptCall(ServerCall<ReqT, RespT> call,
+      Metadata headers, ServerCallHandler<ReqT, RespT> next) {
+    MethodDescriptor<ReqT, RespT> method = call.getMethodDescriptor();
+    if (method.getType() != MethodDescriptor.MethodType.UNARY) {
+      return next.startCall(call, headers);
+    }
+    GradientLimit limit = limits.computeIfAbsent(method.getFullMethodName(),
+        name -> new GradientLimit(initialLimit, minLimit, maxLimit));
+    int inFlightAtStart = limit.tryAcquire();
+    if (inFlightAtStart == 0) {
+      Metadata trailers = new Metadata();
+      trailers.put(RETRY_PUSHBACK, Long.toString(limit.retryAfterMillis()));
+      call.close(Status.RESOURCE_EXHAUSTED.withDescription(
+          "Concurrency limit of " + limit.getLimit() + " reached for " + method.getBareMethodName()), trailers);
+      return new ServerCall.Listener<>() {
+      };
+    }
+    long start = System.nanoTime();
+    AtomicBoolean released = new AtomicBoolean();
+    ServerCall<ReqT, RespT> limitedCall = new ForwardingServerCall.SimpleForwardingServerCall<>(call) {
+      @Override
+      public void close(Status status, Metadata trailers) {
+        if (released.compareAndSet(false, true)) {
+          limit.onSample(System.nanoTime() - start, inFlightAtStart);
+          limit.release();
+        }
+        super.close(status, trailers);
+      }
+    };
+    ServerCall.Listener<ReqT> listener;
+    try {
+      listener = next.startCall(limitedCall, headers);
+    } catch (RuntimeException e) {
+      if (released.compareAndSet(false, true)) {
+        limit.release();
+      }
+      throw e;
+    }
+    return new ForwardingServerCallListener.SimpleForwardingServerCallListener<>(listener) {
+      @Override
+      public void onCancel() {
+        // A cancelled call says nothing about how long the work takes
+        if (released.compareAndSet(false, true)) {
+          limit.release();
+        }
+        super.onCancel();
+      }
+    };
+  }
+}
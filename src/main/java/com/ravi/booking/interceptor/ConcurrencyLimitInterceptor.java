@@ -0,0 +1,69 @@
+package com.ravi.booking.interceptor;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import io.grpc.ForwardingServerCall;
+import io.grpc.ForwardingServerCallListener;
+import io.grpc.Metadata;
+import io.grpc.ServerCall;
+import io.grpc.ServerCallHandler;
+import io.grpc.ServerInterceptor;
+import io.grpc.Status;
+
+/**
+ * Caps the number of calls the server works on at once. Calls over the limit are closed
+ * straight away with {@code RESOURCE_EXHAUSTED} instead of being queued, which matters once
+ * every call gets its own virtual thread and nothing else bounds the work in flight.
+ */
+public class ConcurrencyLimitInterceptor implements ServerInterceptor {
+
+  private final int limit;
+  private final AtomicInteger inFlight = new AtomicInteger();
+
+  public ConcurrencyLimitInterceptor(int limit) {
+    this.limit = limit;
+  }
+
+  public int getInFlight() {
+    return inFlight.get();
+  }
+
+  @Override
+  public <ReqT, RespT> ServerCall.Listener<ReqT> interceptCall(ServerCall<ReqT, RespT> call,
+      Metadata headers, ServerCallHandler<ReqT, RespT> next) {
+    if (inFlight.incrementAndGet() > limit) {
+      inFlight.decrementAndGet();
+      call.close(Status.RESOURCE_EXHAUSTED.withDescription("Too many concurrent calls"), new Metadata());
+      return new ServerCall.Listener<>() {
+      };
+    }
+    AtomicBoolean released = new AtomicBoolean();
+    Runnable release = () -> {
+      if (released.compareAndSet(false, true)) {
+        inFlight.decrementAndGet();
+      }
+    };
+    ServerCall<ReqT, RespT> limitedCall = new ForwardingServerCall.SimpleForwardingServerCall<>(call) {
+      @Override
+      public void close(Status status, Metadata trailers) {
+        release.run();
+        super.close(status, trailers);
+      }
+    };
+    ServerCall.Listener<ReqT> listener;
+    try {
+      listener = next.startCall(limitedCall, headers);
+    } catch (RuntimeException e) {
+      release.run();
+      throw e;
+    }
+    return new ForwardingServerCallListener.SimpleForwardingServerCallListener<>(listener) {
+      @Override
+      public void onCancel() {
+        release.run();
+        super.onCancel();
+      }
+    };
+  }
+}
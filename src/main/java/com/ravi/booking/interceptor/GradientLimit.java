@@ -0,0 +1,100 @@
+package com.ravi.booking.interceptor;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Concurrency limit that adapts to measured latency, in the style of the gradient algorithm
+ * from Netflix's concurrency-limits.
+ *
+ * Two moving averages of call latency are kept: a short one over roughly the last ten calls
+ * and a long one over the last few hundred, which stands for the latency of the service when
+ * it is not queueing. Their ratio is the gradient. While the short-term latency stays within
+ * {@code TOLERANCE} times the long-term one the gradient is 1 and the limit grows by about
+ * its square root per update; once calls slow down beyond that the gradient drops below 1
+ * and the limit shrinks in proportion. The limit only grows while the calls in flight are
+ * actually pressing against it, so an idle method does not drift up to its maximum.
+ */
+final class GradientLimit {
+
+  private static final double TOLERANCE = 1.5;
+  private static final double SMOOTHING = 0.2;
+  private static final double SHORT_WINDOW = 10;
+  private static final double LONG_WINDOW = 600;
+
+  private final int minLimit;
+  private final int maxLimit;
+  private final AtomicInteger inFlight = new AtomicInteger();
+  private volatile int limit;
+  private double estimate;
+  private double shortRtt;
+  private double longRtt;
+
+  GradientLimit(int initialLimit, int minLimit, int maxLimit) {
+    this.minLimit = minLimit;
+    this.maxLimit = maxLimit;
+    this.limit = initialLimit;
+    this.estimate = initialLimit;
+  }
+
+  int getLimit() {
+    return limit;
+  }
+
+  int getInFlight() {
+    return inFlight.get();
+  }
+
+  /**
+   * Takes a slot if fewer calls than the limit are in flight.
+   *
+   * @return the number of calls in flight including this one, or 0 if over the limit
+   */
+  int tryAcquire() {
+    while (true) {
+      int current = inFlight.get();
+      if (current >= limit) {
+        return 0;
+      }
+      if (inFlight.compareAndSet(current, current + 1)) {
+        return current + 1;
+      }
+    }
+  }
+
+  void release() {
+    inFlight.decrementAndGet();
+  }
+
+  /**
+   * Feeds the latency of a completed call that started with {@code inFlightAtStart} calls in
+   * flight.
+   */
+  synchronized void onSample(long rttNanos, int inFlightAtStart) {
+    if (longRtt == 0) {
+      shortRtt = longRtt = rttNanos;
+      return;
+    }
+    shortRtt += (rttNanos - shortRtt) / SHORT_WINDOW;
+    longRtt += (rttNanos - longRtt) / LONG_WINDOW;
+    // After a long stretch of high latency the long average lags behind; let it catch up
+    // quickly once latency falls, or the limit would stay pinned at its maximum
+    if (longRtt / shortRtt > 2) {
+      longRtt *= 0.95;
+    }
+    if (inFlightAtStart < estimate / 2) {
+      return;
+    }
+    double gradient = Math.max(0.5, Math.min(1.0, TOLERANCE * longRtt / shortRtt));
+    double target = estimate * gradient + Math.sqrt(estimate);
+    estimate = Math.max(minLimit, Math.min(maxLimit, estimate * (1 - SMOOTHING) + target * SMOOTHING));
+    limit = (int) estimate;
+  }
+
+  /**
+   * Returns how long a rejected caller should wait before retrying: the current short-term
+   * latency, by when some of the calls in flight should have finished.
+   */
+  synchronized long retryAfterMillis() {
+    return Math.max(1, Math.round(shortRtt / 1_000_000));
+  }
+}
@@ -0,0 +1,92 @@
+package com.ravi.booking.interceptor;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import io.grpc.ForwardingServerCall;
+import io.grpc.ForwardingServerCallListener;
+import io.grpc.Metadata;
+import io.grpc.ServerCall;
+import io.grpc.ServerCallHandler;
+import io.grpc.ServerInterceptor;
+import io.grpc.Status;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * Records the latency of every call as a histogram and counts responses, both tagged with
+ * the full method name and the status code. A call is measured from the moment it reaches
+ * the interceptor until it is closed or cancelled by the client.
+ */
+public class MetricsInterceptor implements ServerInterceptor {
+
+  static final String LATENCY = "booking.grpc.server.latency";
+  static final String RESPONSES = "booking.grpc.server.responses";
+
+  private final MeterRegistry registry;
+  private final Map<String, Meters> meters = new ConcurrentHashMap<>();
+
+  public MetricsInterceptor(MeterRegistry registry) {
+    this.registry = registry;
+  }
+
+  @Override
+  public <ReqT, RespT> ServerCall.Listener<ReqT> interceptCall(ServerCall<ReqT, RespT> call,
+      Metadata headers, ServerCallHandler<ReqT, RespT> next) {
+    long start = System.nanoTime();
+    String method = call.getMethodDescriptor().getFullMethodName();
+    AtomicBoolean recorded = new AtomicBoolean();
+    ServerCall<ReqT, RespT> measuredCall = new ForwardingServerCall.SimpleForwardingServerCall<>(call) {
+      @Override
+      public void close(Status status, Metadata trailers) {
+        record(method, status.getCode(), start, recorded);
+        super.close(status, trailers);
+      }
+    };
+    ServerCall.Listener<ReqT> listener;
+    try {
+      listener = next.startCall(measuredCall, headers);
+    } catch (RuntimeException e) {
+      record(method, Status.Code.UNKNOWN, start, recorded);
+      throw e;
+    }
+    return new ForwardingServerCallListener.SimpleForwardingServerCallListener<>(listener) {
+      @Override
+      public void onCancel() {
+        record(method, Status.Code.CANCELLED, start, recorded);
+        super.onCancel();
+      }
+    };
+  }
+
+  private void record(String method, Status.Code code, long start, AtomicBoolean recorded) {
+    if (!recorded.compareAndSet(false, true)) {
+      return;
+    }
+    Meters forCall = meters.computeIfAbsent(method + '/' + code, key -> new Meters(method, code));
+    forCall.latency.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+    forCall.responses.increment();
+  }
+
+  private final class Meters {
+    private final Timer latency;
+    private final Counter responses;
+
+    private Meters(String method, Status.Code code) {
+      latency = Timer.builder(LATENCY)
+          .description("Time from receiving a call to closing it")
+          .tag("method", method)
+          .tag("status", code.name())
+          .publishPercentileHistogram()
+          .register(registry);
+      responses = Counter.builder(RESPONSES)
+          .description("Calls closed, by status code")
+          .tag("method", method)
+          .tag("status", code.name())
+          .register(registry);
+    }
+  }
+}
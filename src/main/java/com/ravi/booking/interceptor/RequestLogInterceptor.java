@@ -0,0 +1,82 @@
+package com.ravi.booking.interceptor;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.slf4j.spi.LoggingEventBuilder;
+
+import io.grpc.ForwardingServerCall;
+import io.grpc.ForwardingServerCallListener;
+import io.grpc.Metadata;
+import io.grpc.ServerCall;
+import io.grpc.ServerCallHandler;
+import io.grpc.ServerInterceptor;
+import io.grpc.Status;
+
+import com.ravi.booking.config.RequestLogProperties;
+
+/**
+ * Writes one structured line per call to the {@code booking.requests} logger: the method,
+ * the status code and the duration as key-value pairs, never the request itself, so no
+ * user data ends up in the log. Failed calls are always logged; successful ones only when
+ * sampled, which is decided once per call so the cost of an unsampled call is a random
+ * number and a map lookup.
+ */
+public class RequestLogInterceptor implements ServerInterceptor {
+
+  private static final Logger requests = LoggerFactory.getLogger("booking.requests");
+
+  private final RequestLogProperties properties;
+  private final Map<String, Double> sampleRates = new ConcurrentHashMap<>();
+
+  public RequestLogInterceptor(RequestLogProperties properties) {
+    this.properties = properties;
+  }
+
+  @Override
+  public <ReqT, RespT> ServerCall.Listener<ReqT> interceptCall(ServerCall<ReqT, RespT> call,
+      Metadata headers, ServerCallHandler<ReqT, RespT> next) {
+    String method = call.getMethodDescriptor().getFullMethodName();
+    boolean sampled = ThreadLocalRandom.current().nextDouble() < sampleRate(call);
+    long start = System.nanoTime();
+    AtomicBoolean logged = new AtomicBoolean();
+    ServerCall<ReqT, RespT> loggedCall = new ForwardingServerCall.SimpleForwardingServerCall<>(call) {
+      @Override
+      public void close(Status status, Metadata trailers) {
+        log(method, status, start, sampled, logged);
+        super.close(status, trailers);
+      }
+    };
+    ServerCall.Listener<ReqT> listener = next.startCall(loggedCall, headers);
+    return new ForwardingServerCallListener.SimpleForwardingServerCallListener<>(listener) {
+      @Override
+      public void onCancel() {
+        log(method, Status.CANCELLED, start, sampled, logged);
+        super.onCancel();
+      }
+    };
+  }
+
+  private double sampleRate(ServerCall<?, ?> call) {
+    return sampleRates.computeIfAbsent(call.getMethodDescriptor().getFullMethodName(), method ->
+        properties.getMethodSampleRates().getOrDefault(
+            call.getMethodDescriptor().getBareMethodName(), properties.getSampleRate()));
+  }
+
+  private static void log(String method, Status status, long start, boolean sampled, AtomicBoolean logged) {
+    boolean failed = !status.isOk();
+    if ((!failed && !(sampled && requests.isInfoEnabled())) || !logged.compareAndSet(false, true)) {
+      return;
+    }
+    LoggingEventBuilder event = (failed ? requests.atWarn() : requests.atInfo())
+        .addKeyValue("method", method)
+        .addKeyValue("status", status.getCode())
+        .addKeyValue("duration_us", (System.nanoTime() - start) / 1000);
+    // Only the code: descriptions can carry request data such as emails
+    event.log("rpc");
+  }
+}
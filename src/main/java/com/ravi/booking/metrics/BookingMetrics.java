@@ -0,0 +1,55 @@
+package com.ravi.booking.metrics;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * Timers for the stages of a booking, published as {@code booking.stage.duration} with a
+ * {@code stage} tag. A slowdown in seat selection shows up here well before sections run
+ * out of seats.
+ */
+@Component
+public class BookingMetrics {
+
+  public enum Stage {
+    USER_RESOLUTION("user_resolution"),
+    SEAT_SELECTION("seat_selection"),
+    SAVE("save");
+
+    private final String tag;
+
+    Stage(String tag) {
+      this.tag = tag;
+    }
+  }
+
+  private final Map<Stage, Timer> timers = new EnumMap<>(Stage.class);
+
+  public BookingMetrics(MeterRegistry registry) {
+    for (Stage stage : Stage.values()) {
+      timers.put(stage, Timer.builder("booking.stage.duration")
+          .description("Time spent in each stage of a booking")
+          .tag("stage", stage.tag)
+          .publishPercentileHistogram()
+          .register(registry));
+    }
+  }
+
+  /**
+   * Metrics that are recorded but not exported, for services created outside Spring.
+   */
+  public static BookingMetrics unregistered() {
+    return new BookingMetrics(new SimpleMeterRegistry());
+  }
+
+  public <T> T time(Stage stage, Supplier<T> work) {
+    return timers.get(stage).record(work);
+  }
+}
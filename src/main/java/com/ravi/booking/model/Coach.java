@@ -0,0 +1,34 @@
+package com.ravi.booking.model;
+
+public class Coach {
+  private final String name;
+  private final Section section;
+  private final int seats;
+
+  public Coach(String name, Section section, int seats) {
+    this.name = name;
+    this.section = section;
+    this.seats = seats;
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  public Section getSection() {
+    return section;
+  }
+
+  public int getSeats() {
+    return seats;
+  }
+
+  @Override
+  public String toString() {
+    return "Coach{" +
+        "name='" + name + '\'' +
+        ", section=" + section +
+        ", seats=" + seats +
+        '}';
+  }
+}
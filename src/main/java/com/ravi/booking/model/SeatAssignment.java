@@ -5,10 +5,16 @@ import java.util.Objects;
 public class SeatAssignment {
   private final int seatNumber;
   private final Section section;
+  private final String coach;
 
   public SeatAssignment(int seatNumber, Section section) {
+    this(seatNumber, section, null);
+  }
+
+  public SeatAssignment(int seatNumber, Section section, String coach) {
     this.seatNumber = seatNumber;
     this.section = section;
+    this.coach = coach;
   }
 
   public int getSeatNumber() {
@@ -19,17 +25,22 @@ public class SeatAssignment {
     return section;
   }
 
+  public String getCoach() {
+    return coach;
+  }
+
   @Override
   public boolean equals(Object o) {
     if (this == o) return true;
     if (o == null || getClass() != o.getClass()) return false;
     SeatAssignment that = (SeatAssignment) o;
-    return seatNumber == that.seatNumber && section == that.section;
+    return seatNumber == that.seatNumber && section == that.section
+        && Objects.equals(coach, that.coach);
   }
 
   @Override
   public int hashCode() {
-    return Objects.hash(seatNumber, section);
+    return Objects.hash(seatNumber, section, coach);
   }
 
   @Override
@@ -37,6 +48,7 @@ public class SeatAssignment {
     return "SeatAssignment{" +
         "seatNumber=" + seatNumber +
         ", section=" + section +
+        ", coach='" + coach + '\'' +
         '}';
   }
 }
@@ -1,6 +1,8 @@
 package com.ravi.booking.model;
 
-import java.util.UUID;
+import com.ravi.booking.Util.Util;
+
+import java.time.LocalDate;
 
 public class TicketEntity {
   private String id;
@@ -10,6 +12,9 @@ public class TicketEntity {
   private int seatNo;
   private String source;
   private String destination;
+  private String trainId;
+  private LocalDate serviceDate;
+  private String coach;
 
   public TicketEntity(UserEntity user, double price, Section section, int seatNo, String source,
       String destination) {
@@ -19,7 +24,7 @@ public class TicketEntity {
     this.seatNo = seatNo;
     this.source = source;
     this.destination = destination;
-    this.id = UUID.randomUUID().toString();
+    this.id = Util.newId();
   }
 
   public String getId() {
@@ -33,6 +38,22 @@ public class TicketEntity {
   public TicketEntity() {
   }
 
+  /**
+   * Copies every field of another ticket, including its id.
+   */
+  public TicketEntity(TicketEntity other) {
+    this.id = other.id;
+    this.user = other.user;
+    this.price = other.price;
+    this.section = other.section;
+    this.seatNo = other.seatNo;
+    this.source = other.source;
+    this.destination = other.destination;
+    this.trainId = other.trainId;
+    this.serviceDate = other.serviceDate;
+    this.coach = other.coach;
+  }
+
   public UserEntity getUser() {
     return user;
   }
@@ -81,4 +102,28 @@ public class TicketEntity {
   public void setDestination(String from) {
     this.destination = from;
   }
+
+  public String getTrainId() {
+    return trainId;
+  }
+
+  public void setTrainId(String trainId) {
+    this.trainId = trainId;
+  }
+
+  public LocalDate getServiceDate() {
+    return serviceDate;
+  }
+
+  public void setServiceDate(LocalDate serviceDate) {
+    this.serviceDate = serviceDate;
+  }
+
+  public String getCoach() {
+    return coach;
+  }
+
+  public void setCoach(String coach) {
+    this.coach = coach;
+  }
 }
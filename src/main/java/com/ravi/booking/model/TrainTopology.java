@@ -0,0 +1,83 @@
+package com.ravi.booking.model;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Static layout of a train: its coaches in running order and the stations on its route.
+ * The same topology is shared by every service date the train runs on.
+ *
+ * Leg i of the route runs from station i to station i + 1. Journeys are expressed as leg
+ * masks so that a seat can be sold again on legs that do not overlap. A train without
+ * configured stations has a single leg and every journey covers the whole route.
+ */
+public class TrainTopology {
+
+  public static final int MAX_LEGS = Long.SIZE;
+
+  private final String trainId;
+  private final List<Coach> coaches;
+  private final List<String> stations;
+  private final Map<String, Integer> stationIndex = new HashMap<>();
+  private final int legCount;
+  private final long routeMask;
+
+  public TrainTopology(String trainId, List<Coach> coaches) {
+    this(trainId, coaches, List.of());
+  }
+
+  public TrainTopology(String trainId, List<Coach> coaches, List<String> stations) {
+    this.trainId = trainId;
+    this.coaches = List.copyOf(coaches);
+    this.stations = List.copyOf(stations);
+    for (int i = 0; i < this.stations.size(); i++) {
+      stationIndex.put(this.stations.get(i), i);
+    }
+    this.legCount = Math.max(1, this.stations.size() - 1);
+    if (legCount > MAX_LEGS) {
+      throw new IllegalArgumentException("Train " + trainId + " has more than " + MAX_LEGS + " legs");
+    }
+    this.routeMask = legCount == MAX_LEGS ? -1L : (1L << legCount) - 1;
+  }
+
+  public String getTrainId() {
+    return trainId;
+  }
+
+  public List<Coach> getCoaches() {
+    return coaches;
+  }
+
+  public List<String> getStations() {
+    return stations;
+  }
+
+  public int getLegCount() {
+    return legCount;
+  }
+
+  public long getRouteMask() {
+    return routeMask;
+  }
+
+  /**
+   * Returns the legs travelled between two stations, in either order. Journeys that name a
+   * station not on the route are treated as covering the whole route.
+   */
+  public long legMask(String from, String to) {
+    Integer fromIndex = from == null ? null : stationIndex.get(from);
+    Integer toIndex = to == null ? null : stationIndex.get(to);
+    if (fromIndex == null || toIndex == null || fromIndex.equals(toIndex)) {
+      return routeMask;
+    }
+    int first = Math.min(fromIndex, toIndex);
+    int legs = Math.abs(toIndex - fromIndex);
+    long mask = legs == MAX_LEGS ? -1L : (1L << legs) - 1;
+    return mask << first;
+  }
+
+  public int getTotalSeats() {
+    return coaches.stream().mapToInt(Coach::getSeats).sum();
+  }
+}
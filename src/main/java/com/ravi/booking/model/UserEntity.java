@@ -1,8 +1,9 @@
 package com.ravi.booking.model;
 
+import com.ravi.booking.Util.Util;
+
 import java.util.ArrayList;
 import java.util.List;
-import java.util.UUID;
 
 public class UserEntity {
 
@@ -27,7 +28,7 @@ public class UserEntity {
     this.lastName = lastName;
     this.firstName = firstName;
     this.email = email;
-    this.id = UUID.randomUUID().toString();
+    this.id = Util.newId();
   }
 
   public String getLastName() {
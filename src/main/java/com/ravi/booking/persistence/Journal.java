@@ -0,0 +1,40 @@
+package com.ravi.booking.persistence;
+
+import java.util.concurrent.CompletableFuture;
+
+import com.ravi.booking.model.TicketEntity;
+import com.ravi.booking.model.UserEntity;
+
+/**
+ * Receives every repository mutation so it can be made durable.
+ *
+ * Repositories call these methods while the mutated key is locked and wait for the returned
+ * future, which completes once the record is durable, before applying the change. Records
+ * for the same key therefore reach the journal in order, and a change whose record failed
+ * is never applied.
+ */
+public interface Journal {
+
+  Journal NOOP = new Journal() {
+    @Override
+    public CompletableFuture<Void> userSaved(UserEntity user) {
+      return CompletableFuture.completedFuture(null);
+    }
+
+    @Override
+    public CompletableFuture<Void> ticketSaved(TicketEntity ticket) {
+      return CompletableFuture.completedFuture(null);
+    }
+
+    @Override
+    public CompletableFuture<Void> ticketDeleted(String ticketId) {
+      return CompletableFuture.completedFuture(null);
+    }
+  };
+
+  CompletableFuture<Void> userSaved(UserEntity user);
+
+  CompletableFuture<Void> ticketSaved(TicketEntity ticket);
+
+  CompletableFuture<Void> ticketDeleted(String ticketId);
+}
@@ -0,0 +1,280 @@
+package com.ravi.booking.persistence;
+
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import com.ravi.booking.model.SeatAssignment;
+import com.ravi.booking.model.TicketEntity;
+import com.ravi.booking.model.UserEntity;
+import com.ravi.booking.repository.SeatInventoryRepository;
+import com.ravi.booking.repository.TicketRepository;
+import com.ravi.booking.repository.TrainInventory;
+import com.ravi.booking.repository.UserRepository;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Makes the user and ticket repositories durable with a write-ahead log and periodic
+ * snapshots, enabled with {@code booking.persistence.enabled=true}.
+ *
+ * Files live in {@code booking.persistence.dir} and carry a generation number. Taking a
+ * snapshot rotates the log to a new generation while the repositories pause their writes, so
+ * every record in the older logs has been applied by then, and then dumps the repositories
+ * while bookings continue. The snapshot may therefore already contain some changes that are
+ * also in the new log. Replaying a save or a delete twice leaves the same state, so recovery
+ * loads the newest complete snapshot and replays every log of the same or a later
+ * generation. Seats are not logged. Replay does not keep them consistent either, since a
+ * durable ticket store has already claimed the seats of its tickets, so once every record is
+ * applied the inventory is rebuilt from the recovered tickets.
+ */
+@Component
+@ConditionalOnProperty(name = "booking.persistence.enabled", havingValue = "true")
+public class PersistenceManager implements Journal {
+
+  private static final Logger logger = LoggerFactory.getLogger(PersistenceManager.class);
+
+  private static final Pattern SNAPSHOT = Pattern.compile("snapshot-(\\d+)\\.bin");
+  private static final Pattern LOG = Pattern.compile("wal-(\\d+)\\.log");
+
+  private final UserRepository userRepository;
+  private final TicketRepository ticketRepository;
+  private final SeatInventoryRepository inventoryRepository;
+  private final Path directory;
+  private final boolean sync;
+  private final Duration snapshotInterval;
+  private final ReentrantLock snapshotLock = new ReentrantLock();
+  private ScheduledExecutorService scheduler;
+  private WriteAheadLog log;
+  private long generation;
+
+  public PersistenceManager(UserRepository userRepository, TicketRepository ticketRepository,
+      SeatInventoryRepository inventoryRepository,
+      @Value("${booking.persistence.dir:data}") String directory,
+      @Value("${booking.persistence.sync:true}") boolean sync,
+      @Value("${booking.persistence.snapshot-interval:PT5M}") Duration snapshotInterval) {
+    this.userRepository = userRepository;
+    this.ticketRepository = ticketRepository;
+    this.inventoryRepository = inventoryRepository;
+    this.directory = Paths.get(directory);
+    this.sync = sync;
+    this.snapshotInterval = snapshotInterval;
+  }
+
+  @PostConstruct
+  public void start() throws IOException {
+    Files.createDirectories(directory);
+    long snapshotGeneration = latest(SNAPSHOT);
+    if (snapshotGeneration >= 0) {
+      replay(file(SNAPSHOT, snapshotGeneration));
+    }
+    long lastGeneration = snapshotGeneration;
+    for (long logGeneration : generations(LOG)) {
+      if (logGeneration >= snapshotGeneration) {
+        replay(file(LOG, logGeneration));
+        lastGeneration = Math.max(lastGeneration, logGeneration);
+      }
+    }
+    reclaimSeats();
+
+    generation = lastGeneration + 1;
+    log = new WriteAheadLog(file(LOG, generation), sync);
+    userRepository.setJournal(this);
+    ticketRepository.setJournal(this);
+    logger.info("Recovered bookings from {}, logging to generation {}", directory.toAbsolutePath(), generation);
+
+    scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+      Thread thread = new Thread(runnable, "snapshot");
+      thread.setDaemon(true);
+      return thread;
+    });
+    long period = snapshotInterval.toMillis();
+    scheduler.scheduleWithFixedDelay(() -> {
+      try {
+        snapshot();
+      } catch (IOException | RuntimeException e) {
+        logger.error("Snapshot failed", e);
+      }
+    }, period, period, TimeUnit.MILLISECONDS);
+  }
+
+  @PreDestroy
+  public void stop() throws IOException {
+    if (scheduler != null) {
+      scheduler.shutdownNow();
+    }
+    userRepository.setJournal(Journal.NOOP);
+    ticketRepository.setJournal(Journal.NOOP);
+    if (log != null) {
+      log.close();
+    }
+  }
+
+  @Override
+  public CompletableFuture<Void> userSaved(UserEntity user) {
+    return log.append(RecordCodec.user(user));
+  }
+
+  @Override
+  public CompletableFuture<Void> ticketSaved(TicketEntity ticket) {
+    return log.append(RecordCodec.ticket(ticket));
+  }
+
+  @Override
+  public CompletableFuture<Void> ticketDeleted(String ticketId) {
+    return log.append(RecordCodec.ticketDeleted(ticketId));
+  }
+
+  /**
+   * Writes a snapshot of both repositories and removes the files it supersedes.
+   */
+  public void snapshot() throws IOException {
+    snapshotLock.lock();
+    try {
+      long next = generation + 1;
+      // A write journaled to the old log but not yet applied would be in neither the
+      // snapshot nor a log that is kept, so rotate only while no write is in flight
+      userRepository.whileWritesPaused(() ->
+          ticketRepository.whileWritesPaused(() -> log.rotate(file(LOG, next)).join()));
+      generation = next;
+
+      Path target = file(SNAPSHOT, next);
+      Path temporary = directory.resolve(target.getFileName() + ".tmp");
+      try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+          StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+        OutputStream out = new BufferedOutputStream(Channels.newOutputStream(channel), 1 << 16);
+        try {
+          // Users first, so that replaying a ticket can always link its user
+          userRepository.forEachUser(user -> write(out, RecordCodec.user(user)));
+          ticketRepository.forEachTicket(ticket -> write(out, RecordCodec.ticket(ticket)));
+        } catch (UncheckedIOException e) {
+          throw e.getCause();
+        }
+        out.flush();
+        channel.force(true);
+      }
+      Files.move(temporary, target, StandardCopyOption.ATOMIC_MOVE);
+
+      for (Pattern pattern : List.of(SNAPSHOT, LOG)) {
+        for (long old : generations(pattern)) {
+          if (old < next) {
+            Files.deleteIfExists(file(pattern, old));
+          }
+        }
+      }
+      logger.info("Wrote snapshot generation {}", next);
+    } finally {
+      snapshotLock.unlock();
+    }
+  }
+
+  private static void write(OutputStream out, RecordCodec.Record record) {
+    try {
+      RecordCodec.writeFrame(out, record);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  private void replay(Path path) throws IOException {
+    int records = 0;
+    try (InputStream stream = Files.newInputStream(path)) {
+      DataInputStream in = RecordCodec.open(stream);
+      RecordCodec.Record record;
+      while ((record = RecordCodec.readFrame(in)) != null) {
+        apply(record);
+        records++;
+      }
+    }
+    logger.info("Replayed {} records from {}", records, path.getFileName());
+  }
+
+  private void apply(RecordCodec.Record record) throws IOException {
+    switch (record.type) {
+      case RecordCodec.USER_SAVED -> userRepository.save(RecordCodec.readUser(record.payload));
+      case RecordCodec.TICKET_SAVED -> {
+        String[] userId = new String[1];
+        TicketEntity ticket = RecordCodec.readTicket(record.payload, userId);
+        UserEntity user = userId[0] == null ? null : userRepository.findById(userId[0]);
+        ticket.setUser(user);
+        ticketRepository.save(ticket);
+        if (user != null) {
+          user.setTicketEntities(ticket);
+        }
+      }
+      case RecordCodec.TICKET_DELETED -> ticketRepository.delete(RecordCodec.readTicketId(record.payload));
+      default -> logger.warn("Skipping unknown record type {}", record.type);
+    }
+  }
+
+  /**
+   * Claims the seats of the recovered tickets in a fresh inventory, discarding whatever the
+   * ticket store and the replay did to the old one.
+   */
+  private void reclaimSeats() {
+    inventoryRepository.clear();
+    ticketRepository.forEachTicket(ticket -> {
+      TrainInventory inventory = inventoryRepository.getInventory(ticket.getTrainId(), ticket.getServiceDate());
+      if (inventory == null) {
+        logger.warn("Ticket {} refers to unknown train {}", ticket.getId(), ticket.getTrainId());
+        return;
+      }
+      SeatAssignment seat = new SeatAssignment(ticket.getSeatNo(), ticket.getSection(), ticket.getCoach());
+      if (!inventory.claim(seat, inventory.getTopology().legMask(ticket.getSource(), ticket.getDestination()))) {
+        logger.warn("Seat {} of ticket {} could not be claimed again", ticket.getSeatNo(), ticket.getId());
+      }
+    });
+  }
+
+  private Path file(Pattern pattern, long generation) {
+    String name = pattern == SNAPSHOT ? "snapshot-" + generation + ".bin" : "wal-" + generation + ".log";
+    return directory.resolve(name);
+  }
+
+  private long latest(Pattern pattern) throws IOException {
+    List<Long> all = generations(pattern);
+    return all.isEmpty() ? -1 : all.get(all.size() - 1);
+  }
+
+  private List<Long> generations(Pattern pattern) throws IOException {
+    List<Long> result = new ArrayList<>();
+    try (Stream<Path> files = Files.list(directory)) {
+      files.forEach(path -> {
+        Matcher matcher = pattern.matcher(path.getFileName().toString());
+        if (matcher.matches()) {
+          result.add(Long.parseLong(matcher.group(1)));
+        }
+      });
+    }
+    result.sort(null);
+    return result;
+  }
+}
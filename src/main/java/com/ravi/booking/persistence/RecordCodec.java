@@ -0,0 +1,187 @@
+package com.ravi.booking.persistence;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.time.LocalDate;
+import java.util.zip.CRC32C;
+
+import com.ravi.booking.model.Section;
+import com.ravi.booking.model.TicketEntity;
+import com.ravi.booking.model.UserEntity;
+
+/**
+ * Binary encoding shared by the write-ahead log and snapshots.
+ *
+ * A record is framed as {@code [int length][int crc32c][byte type][payload]}, where length
+ * counts the payload only and the checksum covers type and payload. Readers stop at the
+ * first short or corrupt record, which is how a torn write at the end of a log is dropped.
+ */
+final class RecordCodec {
+
+  static final byte USER_SAVED = 1;
+  static final byte TICKET_SAVED = 2;
+  static final byte TICKET_DELETED = 3;
+
+  static final int HEADER_BYTES = Integer.BYTES * 2 + 1;
+  private static final int MAX_PAYLOAD = 1 << 20;
+
+  private RecordCodec() {
+  }
+
+  static final class Record {
+    final byte type;
+    final byte[] payload;
+
+    Record(byte type, byte[] payload) {
+      this.type = type;
+      this.payload = payload;
+    }
+  }
+
+  static Record user(UserEntity user) {
+    return encode(USER_SAVED, out -> {
+      writeString(out, user.getId());
+      writeString(out, user.getFirstName());
+      writeString(out, user.getLastName());
+      writeString(out, user.getEmail());
+    });
+  }
+
+  static Record ticket(TicketEntity ticket) {
+    return encode(TICKET_SAVED, out -> {
+      writeString(out, ticket.getId());
+      writeString(out, ticket.getUser() == null ? null : ticket.getUser().getId());
+      out.writeDouble(ticket.getPrice());
+      out.writeByte(ticket.getSection() == null ? -1 : ticket.getSection().ordinal());
+      out.writeInt(ticket.getSeatNo());
+      writeString(out, ticket.getSource());
+      writeString(out, ticket.getDestination());
+      writeString(out, ticket.getTrainId());
+      out.writeLong(ticket.getServiceDate() == null ? Long.MIN_VALUE : ticket.getServiceDate().toEpochDay());
+      writeString(out, ticket.getCoach());
+    });
+  }
+
+  static Record ticketDeleted(String ticketId) {
+    return encode(TICKET_DELETED, out -> writeString(out, ticketId));
+  }
+
+  static UserEntity readUser(byte[] payload) throws IOException {
+    DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+    UserEntity user = new UserEntity();
+    user.setId(readString(in));
+    user.setFirstName(readString(in));
+    user.setLastName(readString(in));
+    user.setEmail(readString(in));
+    return user;
+  }
+
+  /**
+   * Decodes a ticket; the user is left unset and its id returned through {@code userId}.
+   */
+  static TicketEntity readTicket(byte[] payload, String[] userId) throws IOException {
+    DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+    TicketEntity ticket = new TicketEntity();
+    ticket.setId(readString(in));
+    userId[0] = readString(in);
+    ticket.setPrice(in.readDouble());
+    byte section = in.readByte();
+    ticket.setSection(section < 0 ? null : Section.values()[section]);
+    ticket.setSeatNo(in.readInt());
+    ticket.setSource(readString(in));
+    ticket.setDestination(readString(in));
+    ticket.setTrainId(readString(in));
+    long epochDay = in.readLong();
+    ticket.setServiceDate(epochDay == Long.MIN_VALUE ? null : LocalDate.ofEpochDay(epochDay));
+    ticket.setCoach(readString(in));
+    return ticket;
+  }
+
+  static String readTicketId(byte[] payload) throws IOException {
+    return readString(new DataInputStream(new ByteArrayInputStream(payload)));
+  }
+
+  static int frameSize(Record record) {
+    return HEADER_BYTES + record.payload.length;
+  }
+
+  static void writeFrame(ByteBuffer buffer, Record record) {
+    buffer.putInt(record.payload.length);
+    buffer.putInt(checksum(record.type, record.payload));
+    buffer.put(record.type);
+    buffer.put(record.payload);
+  }
+
+  static void writeFrame(OutputStream out, Record record) throws IOException {
+    ByteBuffer buffer = ByteBuffer.allocate(frameSize(record));
+    writeFrame(buffer, record);
+    out.write(buffer.array());
+  }
+
+  /**
+   * Reads the next record, or returns null at end of input or at the first torn or corrupt
+   * record.
+   */
+  static Record readFrame(DataInputStream in) throws IOException {
+    try {
+      int length = in.readInt();
+      int crc = in.readInt();
+      byte type = in.readByte();
+      if (length < 0 || length > MAX_PAYLOAD) {
+        return null;
+      }
+      byte[] payload = new byte[length];
+      in.readFully(payload);
+      if (checksum(type, payload) != crc) {
+        return null;
+      }
+      return new Record(type, payload);
+    } catch (EOFException e) {
+      return null;
+    }
+  }
+
+  static DataInputStream open(InputStream in) {
+    return new DataInputStream(new BufferedInputStream(in, 1 << 16));
+  }
+
+  private static int checksum(byte type, byte[] payload) {
+    CRC32C crc = new CRC32C();
+    crc.update(type);
+    crc.update(payload);
+    return (int) crc.getValue();
+  }
+
+  private interface Writer {
+    void write(DataOutputStream out) throws IOException;
+  }
+
+  private static Record encode(byte type, Writer writer) {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream(128);
+    try (DataOutputStream out = new DataOutputStream(bytes)) {
+      writer.write(out);
+    } catch (IOException e) {
+      throw new IllegalStateException("Failed to encode record", e);
+    }
+    return new Record(type, bytes.toByteArray());
+  }
+
+  private static void writeString(DataOutputStream out, String value) throws IOException {
+    out.writeBoolean(value != null);
+    if (value != null) {
+      out.writeUTF(value);
+    }
+  }
+
+  private static String readString(DataInputStream in) throws IOException {
+    return in.readBoolean() ? in.readUTF() : null;
+  }
+}
@@ -0,0 +1,252 @@
+package com.ravi.booking.persistence;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Append-only log with group commit.
+ *
+ * Appenders only enqueue; a single writer thread drains everything queued since its last
+ * write, writes it with one call and forces it to disk once, then completes the futures of
+ * the whole batch. Under load many appends share one fsync, so the durable write costs
+ * roughly one fsync of latency however many threads are appending.
+ *
+ * A batch that fails to write is cut off again: the file is truncated back to the end of the
+ * last batch that made it, so replay never stops at a torn frame in front of records that
+ * were acknowledged later. If even that fails, the log refuses every further append.
+ */
+class WriteAheadLog implements Closeable {
+
+  private static final Logger logger = LoggerFactory.getLogger(WriteAheadLog.class);
+
+  private static final int MAX_BATCH = 4096;
+
+  private final LinkedBlockingQueue<Entry> queue = new LinkedBlockingQueue<>();
+  // Appenders hold the read lock while enqueueing, so nothing is added once close() has run
+  private final ReentrantReadWriteLock closeLock = new ReentrantReadWriteLock();
+  private final boolean sync;
+  private final Thread writer;
+  private FileChannel channel;
+  // End of the last batch known to be in the file; only touched by the writer
+  private long committed;
+  private ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 20);
+  private volatile boolean closed;
+  private volatile IOException failure;
+
+  private static final class Entry {
+    final RecordCodec.Record record;
+    final Path rotateTo;
+    final CompletableFuture<Void> done = new CompletableFuture<>();
+
+    Entry(RecordCodec.Record record, Path rotateTo) {
+      this.record = record;
+      this.rotateTo = rotateTo;
+    }
+  }
+
+  WriteAheadLog(Path file, boolean sync) throws IOException {
+    this.sync = sync;
+    this.channel = openChannel(file);
+    this.committed = channel.size();
+    this.writer = new Thread(this::run, "wal-writer");
+    writer.setDaemon(true);
+    writer.start();
+  }
+
+  CompletableFuture<Void> append(RecordCodec.Record record) {
+    return enqueue(new Entry(record, null));
+  }
+
+  /**
+   * Switches to a new log file. Every record appended before this call is in the old file,
+   * every record appended after it goes to the new one. If the new file cannot be opened the
+   * returned future fails and the log carries on in the old file.
+   */
+  CompletableFuture<Void> rotate(Path file) {
+    return enqueue(new Entry(null, file));
+  }
+
+  private CompletableFuture<Void> enqueue(Entry entry) {
+    closeLock.readLock().lock();
+    try {
+      if (closed) {
+        entry.done.completeExceptionally(new IOException("Write-ahead log is closed"));
+      } else if (failure != null) {
+        entry.done.completeExceptionally(failure);
+      } else {
+        queue.add(entry);
+      }
+    } finally {
+      closeLock.readLock().unlock();
+    }
+    return entry.done;
+  }
+
+  private void run() {
+    List<Entry> batch = new ArrayList<>(MAX_BATCH);
+    while (!closed || !queue.isEmpty()) {
+      try {
+        Entry first = queue.poll(100, TimeUnit.MILLISECONDS);
+        if (first == null) {
+          continue;
+        }
+        batch.add(first);
+        queue.drainTo(batch, MAX_BATCH - 1);
+        writeBatch(batch);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return;
+      } finally {
+        batch.clear();
+      }
+    }
+  }
+
+  private void writeBatch(List<Entry> batch) {
+    int start = 0;
+    for (int i = 0; i < batch.size(); i++) {
+      Entry entry = batch.get(i);
+      if (entry.rotateTo == null) {
+        continue;
+      }
+      commit(batch, start, i);
+      start = i + 1;
+      if (failure != null) {
+        entry.done.completeExceptionally(failure);
+        continue;
+      }
+      try {
+        // Open the new file before letting go of the old one, so a failed rotation leaves a
+        // usable log behind
+        FileChannel next = openChannel(entry.rotateTo);
+        FileChannel previous = channel;
+        channel = next;
+        committed = next.size();
+        previous.close();
+        entry.done.complete(null);
+      } catch (IOException e) {
+        logger.error("Write-ahead log rotation to {} failed", entry.rotateTo, e);
+        entry.done.completeExceptionally(e);
+      }
+    }
+    commit(batch, start, batch.size());
+  }
+
+  /**
+   * Writes the records of {@code batch[from, to)} and forces them to disk, then completes
+   * their futures. On failure the futures fail and the file is cut back to its last good
+   * length.
+   */
+  private void commit(List<Entry> batch, int from, int to) {
+    if (from == to) {
+      return;
+    }
+    IOException error = failure;
+    if (error == null) {
+      try {
+        for (int i = from; i < to; i++) {
+          RecordCodec.Record record = batch.get(i).record;
+          int size = RecordCodec.frameSize(record);
+          if (buffer.remaining() < size) {
+            if (buffer.position() > 0) {
+              write();
+            }
+            if (buffer.capacity() < size) {
+              buffer = ByteBuffer.allocateDirect(Integer.highestOneBit(size) << 1);
+            }
+          }
+          RecordCodec.writeFrame(buffer, record);
+        }
+        write();
+        if (sync) {
+          channel.force(false);
+        }
+        committed = channel.size();
+        for (int i = from; i < to; i++) {
+          batch.get(i).done.complete(null);
+        }
+        return;
+      } catch (IOException e) {
+        logger.error("Write-ahead log write failed", e);
+        error = e;
+        truncate();
+      }
+    }
+    for (int i = from; i < to; i++) {
+      batch.get(i).done.completeExceptionally(error);
+    }
+  }
+
+  private void truncate() {
+    buffer.clear();
+    try {
+      channel.truncate(committed);
+      if (sync) {
+        channel.force(true);
+      }
+    } catch (IOException e) {
+      logger.error("Write-ahead log could not be truncated to {} bytes; refusing further appends", committed, e);
+      failure = e;
+    }
+  }
+
+  private void write() throws IOException {
+    buffer.flip();
+    while (buffer.hasRemaining()) {
+      channel.write(buffer);
+    }
+    buffer.clear();
+  }
+
+  private static FileChannel openChannel(Path file) throws IOException {
+    return FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+  }
+
+  /**
+   * Stops accepting appends, waits for the writer to finish what was queued before, and
+   * closes the file. Appends the writer did not get to fail.
+   */
+  @Override
+  public void close() throws IOException {
+    closeLock.writeLock().lock();
+    try {
+      closed = true;
+    } finally {
+      closeLock.writeLock().unlock();
+    }
+    try {
+      writer.join(TimeUnit.SECONDS.toMillis(5));
+      if (writer.isAlive()) {
+        writer.interrupt();
+        writer.join();
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    if (writer.isAlive()) {
+      // Interrupted ourselves; the writer still owns the channel
+      return;
+    }
+    IOException closedError = new IOException("Write-ahead log is closed");
+    for (Entry entry = queue.poll(); entry != null; entry = queue.poll()) {
+      entry.done.completeExceptionally(closedError);
+    }
+    if (channel.isOpen()) {
+      channel.force(true);
+      channel.close();
+    }
+  }
+}
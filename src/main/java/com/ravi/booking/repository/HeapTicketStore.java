@@ -0,0 +1,40 @@
+package com.ravi.booking.repository;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+import com.ravi.booking.model.TicketEntity;
+
+/**
+ * Keeps ticket objects on the heap. This is the default store.
+ */
+public class HeapTicketStore implements TicketStore {
+
+  private final Map<String, TicketEntity> map = new ConcurrentHashMap<>();
+
+  @Override
+  public void put(TicketEntity ticket) {
+    map.put(ticket.getId(), ticket);
+  }
+
+  @Override
+  public TicketEntity get(String ticketId) {
+    return map.get(ticketId);
+  }
+
+  @Override
+  public TicketEntity remove(String ticketId) {
+    return map.remove(ticketId);
+  }
+
+  @Override
+  public void forEach(Consumer<TicketEntity> action) {
+    map.values().forEach(action);
+  }
+
+  @Override
+  public int size() {
+    return map.size();
+  }
+}
@@ -0,0 +1,672 @@
+package com.ravi.booking.repository;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Consumer;
+
+import com.ravi.booking.model.Section;
+import com.ravi.booking.model.TicketEntity;
+import com.ravi.booking.model.UserEntity;
+
+/**
+ * Ticket store that keeps every ticket as a fixed-width record in a memory-mapped file.
+ *
+ * A record is 64 bytes: the ticket id and the user id as the two halves of their UUIDs, the
+ * price in cents, the service date as an epoch day, and the seat, section, coach, stations
+ * and train as small codes. Strings shared by many tickets (stations, coaches, trains) are
+ * stored once, in an append-only side file next to the data file. Ids map to records
+ * through an open-addressing table of primitive arrays, so a stored ticket does not keep
+ * any objects of its own on the heap.
+ *
+ * Users are resolved through the {@link UserRepository} rather than kept here. So that the
+ * file still names them after a restart without the write-ahead log, a second side file
+ * records each user the first time one of their tickets is stored and hands them to the
+ * repository when the store is reopened. Later changes to a user only survive through the
+ * write-ahead log.
+ *
+ * Records are written straight into the mapping and reach the file through the page cache,
+ * so reopening the file after a restart finds every ticket without deserializing it. Writes
+ * are not forced to disk; enable the write-ahead log as well to survive power loss.
+ *
+ * Reads go through a {@link TicketView} flyweight over the mapped record. {@link #get}
+ * builds a {@link TicketEntity} from it, which the caller owns; {@link #visitSeat} reads
+ * only what a manifest row needs and builds nothing.
+ */
+public class MappedTicketStore implements TicketStore, Closeable {
+
+  static final int RECORD_BYTES = 64;
+  private static final int SEGMENT_SHIFT = 16;
+  private static final int SEGMENT_RECORDS = 1 << SEGMENT_SHIFT;
+  private static final long SEGMENT_BYTES = (long) SEGMENT_RECORDS * RECORD_BYTES;
+  private static final int MAGIC = 0x544b5432;
+
+  // Record layout; slot 0 holds the file header instead of a ticket. A user id of all
+  // zeroes means no user.
+  private static final int ID_HIGH = 0;
+  private static final int ID_LOW = 8;
+  private static final int USER_HIGH = 16;
+  private static final int USER_LOW = 24;
+  private static final int PRICE_CENTS = 32;
+  private static final int SERVICE_DATE = 40;
+  private static final int SEAT = 48;
+  private static final int COACH = 52;
+  private static final int SOURCE = 54;
+  private static final int DESTINATION = 56;
+  private static final int TRAIN = 58;
+  private static final int STATE = 60;
+  private static final int SECTION = 61;
+
+  private static final byte LIVE = 1;
+  private static final int NO_SYMBOL = 0xFFFF;
+  private static final long NO_DATE = Long.MIN_VALUE;
+
+  private final FileChannel channel;
+  private final SymbolTable symbols;
+  private final UserLog userLog;
+  private final UserRepository users;
+  private final StampedLock lock = new StampedLock();
+  private final IdIndex index = new IdIndex();
+  private MappedByteBuffer[] segments = new MappedByteBuffer[0];
+  private int[] freeSlots = new int[64];
+  private int freeCount;
+  private int nextSlot = 1;
+  private int size;
+
+  public MappedTicketStore(Path file, UserRepository users) throws IOException {
+    this.users = users;
+    Path directory = file.toAbsolutePath().getParent();
+    if (directory != null) {
+      Files.createDirectories(directory);
+    }
+    channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    symbols = new SymbolTable(file.resolveSibling(file.getFileName() + ".symbols"));
+    userLog = new UserLog(file.resolveSibling(file.getFileName() + ".users"), users);
+
+    long length = channel.size();
+    long segmentCount = Math.max(1, (length + SEGMENT_BYTES - 1) / SEGMENT_BYTES);
+    for (long segment = 0; segment < segmentCount; segment++) {
+      mapSegment();
+    }
+    MappedByteBuffer header = segments[0];
+    if (length == 0) {
+      header.putInt(0, MAGIC);
+      header.putInt(Integer.BYTES, RECORD_BYTES);
+    } else if (header.getInt(0) != MAGIC || header.getInt(Integer.BYTES) != RECORD_BYTES) {
+      throw new IOException("Not a ticket store: " + file);
+    }
+    load();
+  }
+
+  private void load() {
+    int capacity = segments.length * SEGMENT_RECORDS;
+    int highest = 0;
+    for (int slot = 1; slot < capacity; slot++) {
+      ByteBuffer buffer = segment(slot);
+      int at = offset(slot);
+      if (buffer.get(at + STATE) == LIVE) {
+        index.put(buffer.getLong(at + ID_HIGH), buffer.getLong(at + ID_LOW), slot);
+        size++;
+        highest = slot;
+      }
+    }
+    for (int slot = highest - 1; slot >= 1; slot--) {
+      if (segment(slot).get(offset(slot) + STATE) != LIVE) {
+        pushFree(slot);
+      }
+    }
+    nextSlot = highest + 1;
+  }
+
+  @Override
+  public void put(TicketEntity ticket) {
+    UUID id = UUID.fromString(ticket.getId());
+    UserEntity user = ticket.getUser();
+    UUID userId = user == null ? null : UUID.fromString(user.getId());
+    long stamp = lock.writeLock();
+    try {
+      if (userId != null) {
+        userLog.record(user, userId.getMostSignificantBits(), userId.getLeastSignificantBits());
+      }
+      int slot = index.get(id.getMostSignificantBits(), id.getLeastSignificantBits());
+      if (slot == 0) {
+        slot = allocateSlot();
+        index.put(id.getMostSignificantBits(), id.getLeastSignificantBits(), slot);
+        size++;
+      }
+      ByteBuffer buffer = segment(slot);
+      int at = offset(slot);
+      buffer.putLong(at + ID_HIGH, id.getMostSignificantBits());
+      buffer.putLong(at + ID_LOW, id.getLeastSignificantBits());
+      buffer.putLong(at + USER_HIGH, userId == null ? 0 : userId.getMostSignificantBits());
+      buffer.putLong(at + USER_LOW, userId == null ? 0 : userId.getLeastSignificantBits());
+      buffer.putLong(at + PRICE_CENTS, Math.round(ticket.getPrice() * 100));
+      buffer.putLong(at + SERVICE_DATE, ticket.getServiceDate() == null ? NO_DATE : ticket.getServiceDate().toEpochDay());
+      buffer.putInt(at + SEAT, ticket.getSeatNo());
+      buffer.put(at + SECTION, (byte) (ticket.getSection() == null ? -1 : ticket.getSection().ordinal()));
+      buffer.putShort(at + COACH, symbols.code(ticket.getCoach()));
+      buffer.putShort(at + SOURCE, symbols.code(ticket.getSource()));
+      buffer.putShort(at + DESTINATION, symbols.code(ticket.getDestination()));
+      buffer.putShort(at + TRAIN, symbols.code(ticket.getTrainId()));
+      buffer.put(at + STATE, LIVE);
+    } finally {
+      lock.unlockWrite(stamp);
+    }
+  }
+
+  @Override
+  public TicketEntity get(String ticketId) {
+    UUID id = parse(ticketId);
+    if (id == null) {
+      return null;
+    }
+    long stamp = lock.readLock();
+    try {
+      int slot = index.get(id.getMostSignificantBits(), id.getLeastSignificantBits());
+      return slot == 0 ? null : new TicketView().moveTo(slot).toEntity();
+    } finally {
+      lock.unlockRead(stamp);
+    }
+  }
+
+  @Override
+  public boolean visitSeat(String ticketId, SeatVisitor visitor) {
+    UUID id = parse(ticketId);
+    if (id == null) {
+      return false;
+    }
+    UserEntity user;
+    int seatNo;
+    String coach;
+    long stamp = lock.readLock();
+    try {
+      int slot = index.get(id.getMostSignificantBits(), id.getLeastSignificantBits());
+      if (slot == 0) {
+        return false;
+      }
+      TicketView view = new TicketView().moveTo(slot);
+      user = view.getUser();
+      seatNo = view.getSeatNo();
+      coach = view.getCoach();
+    } finally {
+      lock.unlockRead(stamp);
+    }
+    visitor.visit(user, seatNo, coach);
+    return true;
+  }
+
+  @Override
+  public TicketEntity remove(String ticketId) {
+    UUID id = parse(ticketId);
+    if (id == null) {
+      return null;
+    }
+    long stamp = lock.writeLock();
+    try {
+      int slot = index.remove(id.getMostSignificantBits(), id.getLeastSignificantBits());
+      if (slot == 0) {
+        return null;
+      }
+      TicketEntity ticket = new TicketView().moveTo(slot).toEntity();
+      segment(slot).put(offset(slot) + STATE, (byte) 0);
+      pushFree(slot);
+      size--;
+      return ticket;
+    } finally {
+      lock.unlockWrite(stamp);
+    }
+  }
+
+  @Override
+  public void forEach(Consumer<TicketEntity> action) {
+    TicketView view = new TicketView();
+    for (int slot = 1; ; slot++) {
+      TicketEntity ticket;
+      long stamp = lock.readLock();
+      try {
+        if (slot >= nextSlot) {
+          return;
+        }
+        ticket = view.moveTo(slot) == null ? null : view.toEntity();
+      } finally {
+        lock.unlockRead(stamp);
+      }
+      if (ticket != null) {
+        action.accept(ticket);
+      }
+    }
+  }
+
+  /**
+   * Visits every stored ticket through one reused flyweight, without building entities. The
+   * view is only valid inside the callback, which must not write to this store.
+   */
+  public void forEachView(Consumer<TicketView> action) {
+    TicketView view = new TicketView();
+    for (int slot = 1; ; slot++) {
+      long stamp = lock.readLock();
+      try {
+        if (slot >= nextSlot) {
+          return;
+        }
+        if (view.moveTo(slot) != null) {
+          action.accept(view);
+        }
+      } finally {
+        lock.unlockRead(stamp);
+      }
+    }
+  }
+
+  @Override
+  public int size() {
+    long stamp = lock.readLock();
+    try {
+      return size;
+    } finally {
+      lock.unlockRead(stamp);
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    long stamp = lock.writeLock();
+    try {
+      for (MappedByteBuffer segment : segments) {
+        segment.force();
+      }
+      symbols.close();
+      userLog.close();
+      channel.close();
+    } finally {
+      lock.unlockWrite(stamp);
+    }
+  }
+
+  /**
+   * Read-only view of one mapped record. Getters decode the record in place; only the id
+   * and the service date allocate.
+   */
+  public final class TicketView {
+    private ByteBuffer buffer;
+    private int at;
+
+    private TicketView moveTo(int slot) {
+      buffer = segment(slot);
+      at = offset(slot);
+      return buffer.get(at + STATE) == LIVE ? this : null;
+    }
+
+    public String getTicketId() {
+      return new UUID(buffer.getLong(at + ID_HIGH), buffer.getLong(at + ID_LOW)).toString();
+    }
+
+    public UserEntity getUser() {
+      long high = buffer.getLong(at + USER_HIGH);
+      long low = buffer.getLong(at + USER_LOW);
+      return high == 0 && low == 0 ? null : users.findById(high, low);
+    }
+
+    public long getPriceCents() {
+      return buffer.getLong(at + PRICE_CENTS);
+    }
+
+    public Section getSection() {
+      byte section = buffer.get(at + SECTION);
+      return section < 0 ? null : Section.values()[section];
+    }
+
+    public int getSeatNo() {
+      return buffer.getInt(at + SEAT);
+    }
+
+    public String getCoach() {
+      return symbols.value(buffer.getShort(at + COACH));
+    }
+
+    public String getSource() {
+      return symbols.value(buffer.getShort(at + SOURCE));
+    }
+
+    public String getDestination() {
+      return symbols.value(buffer.getShort(at + DESTINATION));
+    }
+
+    public String getTrainId() {
+      return symbols.value(buffer.getShort(at + TRAIN));
+    }
+
+    public LocalDate getServiceDate() {
+      long epochDay = buffer.getLong(at + SERVICE_DATE);
+      return epochDay == NO_DATE ? null : LocalDate.ofEpochDay(epochDay);
+    }
+
+    public TicketEntity toEntity() {
+      TicketEntity ticket = new TicketEntity();
+      ticket.setId(getTicketId());
+      ticket.setUser(getUser());
+      ticket.setPrice(getPriceCents() / 100.0);
+      ticket.setSection(getSection());
+      ticket.setSeatNo(getSeatNo());
+      ticket.setCoach(getCoach());
+      ticket.setSource(getSource());
+      ticket.setDestination(getDestination());
+      ticket.setTrainId(getTrainId());
+      ticket.setServiceDate(getServiceDate());
+      return ticket;
+    }
+  }
+
+  private static UUID parse(String ticketId) {
+    try {
+      return ticketId == null ? null : UUID.fromString(ticketId);
+    } catch (IllegalArgumentException e) {
+      return null;
+    }
+  }
+
+  private ByteBuffer segment(int slot) {
+    return segments[slot >>> SEGMENT_SHIFT];
+  }
+
+  private static int offset(int slot) {
+    return (slot & (SEGMENT_RECORDS - 1)) * RECORD_BYTES;
+  }
+
+  private int allocateSlot() {
+    if (freeCount > 0) {
+      return freeSlots[--freeCount];
+    }
+    int slot = nextSlot++;
+    if (slot >>> SEGMENT_SHIFT == segments.length) {
+      try {
+        mapSegment();
+      } catch (IOException e) {
+        nextSlot--;
+        throw new UncheckedIOException("Failed to grow ticket store", e);
+      }
+    }
+    return slot;
+  }
+
+  private void pushFree(int slot) {
+    if (freeCount == freeSlots.length) {
+      freeSlots = Arrays.copyOf(freeSlots, freeCount * 2);
+    }
+    freeSlots[freeCount++] = slot;
+  }
+
+  private void mapSegment() throws IOException {
+    MappedByteBuffer segment = channel.map(FileChannel.MapMode.READ_WRITE, segments.length * SEGMENT_BYTES, SEGMENT_BYTES);
+    MappedByteBuffer[] grown = Arrays.copyOf(segments, segments.length + 1);
+    grown[segments.length] = segment;
+    segments = grown;
+  }
+
+  /**
+   * Open-addressing map from a 128-bit id to a record slot, with linear probing and
+   * backward-shift deletion. Slot 0 marks an empty bucket.
+   */
+  private static final class IdIndex {
+    private long[] high = new long[1024];
+    private long[] low = new long[1024];
+    private int[] slots = new int[1024];
+    private int count;
+
+    int get(long idHigh, long idLow) {
+      int mask = slots.length - 1;
+      for (int bucket = hash(idHigh, idLow) & mask; ; bucket = (bucket + 1) & mask) {
+        if (slots[bucket] == 0) {
+          return 0;
+        }
+        if (high[bucket] == idHigh && low[bucket] == idLow) {
+          return slots[bucket];
+        }
+      }
+    }
+
+    void put(long idHigh, long idLow, int slot) {
+      if ((count + 1) * 2 > slots.length) {
+        resize();
+      }
+      int mask = slots.length - 1;
+      int bucket = hash(idHigh, idLow) & mask;
+      while (slots[bucket] != 0 && (high[bucket] != idHigh || low[bucket] != idLow)) {
+        bucket = (bucket + 1) & mask;
+      }
+      if (slots[bucket] == 0) {
+        count++;
+      }
+      high[bucket] = idHigh;
+      low[bucket] = idLow;
+      slots[bucket] = slot;
+    }
+
+    int remove(long idHigh, long idLow) {
+      int mask = slots.length - 1;
+      int bucket = hash(idHigh, idLow) & mask;
+      while (slots[bucket] != 0 && (high[bucket] != idHigh || low[bucket] != idLow)) {
+        bucket = (bucket + 1) & mask;
+      }
+      int slot = slots[bucket];
+      if (slot == 0) {
+        return 0;
+      }
+      // Shift later entries of the probe run back so lookups never stop at a hole
+      int hole = bucket;
+      for (int next = (hole + 1) & mask; slots[next] != 0; next = (next + 1) & mask) {
+        int home = hash(high[next], low[next]) & mask;
+        if (((next - home) & mask) >= ((next - hole) & mask)) {
+          high[hole] = high[next];
+          low[hole] = low[next];
+          slots[hole] = slots[next];
+          hole = next;
+        }
+      }
+      slots[hole] = 0;
+      count--;
+      return slot;
+    }
+
+    private void resize() {
+      long[] oldHigh = high;
+      long[] oldLow = low;
+      int[] oldSlots = slots;
+      high = new long[oldSlots.length * 2];
+      low = new long[oldSlots.length * 2];
+      slots = new int[oldSlots.length * 2];
+      count = 0;
+      for (int bucket = 0; bucket < oldSlots.length; bucket++) {
+        if (oldSlots[bucket] != 0) {
+          put(oldHigh[bucket], oldLow[bucket], oldSlots[bucket]);
+        }
+      }
+    }
+
+    private static int hash(long idHigh, long idLow) {
+      long h = (idHigh ^ Long.rotateLeft(idLow, 32)) * 0x9E3779B97F4A7C15L;
+      return (int) (h ^ (h >>> 32));
+    }
+  }
+
+  /**
+   * Append-only table persisted in a side file; entries are never removed, so a code stays
+   * valid for the life of the file. A torn entry at the end of the file is cut off on load.
+   */
+  private abstract static class SideTable<T> implements Closeable {
+    private final FileChannel channel;
+    private DataOutputStream out;
+
+    SideTable(Path file) throws IOException {
+      this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    }
+
+    void load() throws IOException {
+      ByteBuffer contents = ByteBuffer.allocate(Math.toIntExact(channel.size()));
+      while (contents.hasRemaining() && channel.read(contents, contents.position()) >= 0) {
+        // read the whole table
+      }
+      byte[] bytes = contents.array();
+      ByteArrayInputStream remaining = new ByteArrayInputStream(bytes);
+      DataInputStream in = new DataInputStream(remaining);
+      int valid = 0;
+      try {
+        while (remaining.available() > 0) {
+          loaded(read(in));
+          valid = bytes.length - remaining.available();
+        }
+      } catch (EOFException e) {
+        // torn append; everything before it is intact
+      }
+      channel.truncate(valid);
+      channel.position(valid);
+      out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel)));
+    }
+
+    abstract T read(DataInputStream in) throws IOException;
+
+    abstract void write(DataOutputStream out, T value) throws IOException;
+
+    abstract void loaded(T value);
+
+    void append(T value) {
+      try {
+        write(out, value);
+        out.flush();
+      } catch (IOException e) {
+        throw new UncheckedIOException("Failed to extend ticket store table", e);
+      }
+    }
+
+    @Override
+    public void close() throws IOException {
+      channel.force(true);
+      channel.close();
+    }
+
+    static void writeString(DataOutputStream out, String value) throws IOException {
+      out.writeBoolean(value != null);
+      if (value != null) {
+        out.writeUTF(value);
+      }
+    }
+
+    static String readString(DataInputStream in) throws IOException {
+      return in.readBoolean() ? in.readUTF() : null;
+    }
+  }
+
+  private static final class SymbolTable extends SideTable<String> {
+    private final List<String> values = new ArrayList<>();
+    private final Map<String, Short> codes = new HashMap<>();
+
+    SymbolTable(Path file) throws IOException {
+      super(file);
+      load();
+    }
+
+    short code(String value) {
+      if (value == null) {
+        return (short) NO_SYMBOL;
+      }
+      Short code = codes.get(value);
+      if (code == null) {
+        if (values.size() == NO_SYMBOL) {
+          throw new IllegalStateException("Ticket store symbol table is full");
+        }
+        append(value);
+        loaded(value);
+        code = codes.get(value);
+      }
+      return code;
+    }
+
+    String value(short code) {
+      int index = Short.toUnsignedInt(code);
+      return index == NO_SYMBOL ? null : values.get(index);
+    }
+
+    @Override
+    String read(DataInputStream in) throws IOException {
+      return in.readUTF();
+    }
+
+    @Override
+    void write(DataOutputStream out, String value) throws IOException {
+      out.writeUTF(value);
+    }
+
+    @Override
+    void loaded(String value) {
+      codes.put(value, (short) values.size());
+      values.add(value);
+    }
+  }
+
+  /**
+   * Users of stored tickets, appended the first time a ticket of theirs is stored. Loading
+   * hands them to the repository; the log itself only remembers which ids it has written.
+   */
+  private static final class UserLog extends SideTable<UserEntity> {
+    private final UserRepository repository;
+    private final IdIndex written = new IdIndex();
+
+    UserLog(Path file, UserRepository repository) throws IOException {
+      super(file);
+      this.repository = repository;
+      load();
+    }
+
+    void record(UserEntity user, long idHigh, long idLow) {
+      if (written.get(idHigh, idLow) == 0) {
+        append(user);
+        loaded(user);
+      }
+    }
+
+    @Override
+    UserEntity read(DataInputStream in) throws IOException {
+      UserEntity user = new UserEntity();
+      user.setId(readString(in));
+      user.setFirstName(readString(in));
+      user.setLastName(readString(in));
+      user.setEmail(readString(in));
+      return user;
+    }
+
+    @Override
+    void write(DataOutputStream out, UserEntity user) throws IOException {
+      writeString(out, user.getId());
+      writeString(out, user.getFirstName());
+      writeString(out, user.getLastName());
+      writeString(out, user.getEmail());
+    }
+
+    @Override
+    void loaded(UserEntity user) {
+      UUID id = UUID.fromString(user.getId());
+      written.put(id.getMostSignificantBits(), id.getLeastSignificantBits(), 1);
+      repository.restore(user);
+    }
+  }
+}
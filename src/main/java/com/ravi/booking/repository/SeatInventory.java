@@ -0,0 +1,361 @@
+package com.ravi.booking.repository;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free seat inventory for a single coach.
+ *
+ * Seats are numbered from 1 to capacity. Each seat owns one word of leg occupancy, where bit
+ * i means leg i of the route (station i to station i + 1) is sold. Claims and releases are
+ * CAS operations on that word, so many threads can book at once without locks and a leg is
+ * never sold twice; testing a seat against a journey is a single AND of the two leg masks.
+ * A seat booked for the whole route simply has every leg bit set.
+ *
+ * A second bitmap, one bit per seat, marks seats that have any leg sold. Strategies scan it
+ * a word at a time to find completely free seats. It is derived from the leg words: the
+ * thread that moves a seat between empty and non-empty updates the bit and re-checks the
+ * leg word afterwards, so the bitmap settles on the right value under races. Bits past the
+ * last seat are pre-set so scans never see them.
+ *
+ * A third bitmap, kept the same way, marks seats that are partly sold: some legs but not
+ * all. Only those can take another partial journey, so the search for a shared seat scans
+ * it instead of every used seat and skips a coach outright when its count is zero. It only
+ * changes when a seat moves between empty, partly sold and fully sold, so whole-route
+ * bookings do not touch it.
+ */
+public class SeatInventory {
+
+  private static final int WORD_BITS = Long.SIZE;
+
+  private final int capacity;
+  private final long routeMask;
+  private final AtomicLongArray legs;
+  private final AtomicLongArray words;
+  private final AtomicLongArray partial;
+  private final AtomicInteger freeCount;
+  private final AtomicInteger partialCount = new AtomicInteger();
+
+  public SeatInventory(int capacity) {
+    this(capacity, 1);
+  }
+
+  public SeatInventory(int capacity, int legCount) {
+    if (capacity <= 0) {
+      throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+    }
+    if (legCount <= 0 || legCount > WORD_BITS) {
+      throw new IllegalArgumentException("Leg count must be within 1.." + WORD_BITS + ": " + legCount);
+    }
+    this.capacity = capacity;
+    this.routeMask = legCount == WORD_BITS ? -1L : (1L << legCount) - 1;
+    this.legs = new AtomicLongArray(capacity);
+    this.words = new AtomicLongArray((capacity + WORD_BITS - 1) / WORD_BITS);
+    this.partial = new AtomicLongArray(words.length());
+    this.freeCount = new AtomicInteger(capacity);
+    int tailBits = capacity % WORD_BITS;
+    if (tailBits != 0) {
+      words.set(words.length() - 1, -1L << tailBits);
+    }
+  }
+
+  public int getCapacity() {
+    return capacity;
+  }
+
+  /**
+   * Returns the leg mask covering the whole route.
+   */
+  public long getRouteMask() {
+    return routeMask;
+  }
+
+  /**
+   * Returns the number of seats with no leg sold.
+   */
+  public int getFreeCount() {
+    return freeCount.get();
+  }
+
+  /**
+   * Returns the number of seats with some but not all legs sold, which are the only ones
+   * {@link #nextSharedSeat} can return.
+   */
+  public int getPartialCount() {
+    return partialCount.get();
+  }
+
+  public int getAllocatedCount() {
+    return capacity - freeCount.get();
+  }
+
+  public boolean isAllocated(int seatNumber) {
+    checkSeat(seatNumber);
+    return legs.get(seatNumber - 1) != 0;
+  }
+
+  /**
+   * Returns true if none of the given legs are sold on the seat.
+   */
+  public boolean isFree(int seatNumber, long legMask) {
+    checkSeat(seatNumber);
+    return (legs.get(seatNumber - 1) & legMask) == 0;
+  }
+
+  /**
+   * Atomically takes the seat for the whole route.
+   *
+   * @return true if this call took the seat, false if any leg was already sold
+   */
+  public boolean claim(int seatNumber) {
+    return claim(seatNumber, routeMask);
+  }
+
+  /**
+   * Atomically takes the given legs of the seat.
+   *
+   * @return true if this call took the legs, false if any of them was already sold
+   */
+  public boolean claim(int seatNumber, long legMask) {
+    checkSeat(seatNumber);
+    int index = seatNumber - 1;
+    long current;
+    do {
+      current = legs.get(index);
+      if ((current & legMask) != 0) {
+        return false;
+      }
+    } while (!legs.compareAndSet(index, current, current | legMask));
+    if (current == 0) {
+      freeCount.decrementAndGet();
+      syncBit(words, index);
+    }
+    changedLegs(index, current, current | legMask);
+    return true;
+  }
+
+  /**
+   * Atomically returns the whole seat to the pool.
+   *
+   * @return true if this call freed the seat, false if it was not held for the whole route
+   */
+  public boolean release(int seatNumber) {
+    return release(seatNumber, routeMask);
+  }
+
+  /**
+   * Atomically returns the given legs of the seat to the pool.
+   *
+   * @return true if this call freed the legs, false if they were not all sold
+   */
+  public boolean release(int seatNumber, long legMask) {
+    checkSeat(seatNumber);
+    int index = seatNumber - 1;
+    long current;
+    long next;
+    do {
+      current = legs.get(index);
+      if ((current & legMask) != legMask) {
+        return false;
+      }
+      next = current & ~legMask;
+    } while (!legs.compareAndSet(index, current, next));
+    if (next == 0) {
+      freeCount.incrementAndGet();
+      syncBit(words, index);
+    }
+    changedLegs(index, current, next);
+    return true;
+  }
+
+  /**
+   * Returns the lowest seat at or after the given seat that already has some leg sold but
+   * is free on all of the given legs, or -1 if there is none. Used to pack partial journeys
+   * onto seats that are already in use before breaking into an empty seat. Only partly sold
+   * seats are visited.
+   */
+  public int nextSharedSeat(int fromSeat, long legMask) {
+    if (fromSeat < 1) {
+      fromSeat = 1;
+    }
+    int index = fromSeat - 1;
+    if (index >= capacity || partialCount.get() == 0) {
+      return -1;
+    }
+    int wordIndex = index / WORD_BITS;
+    long candidates = partial.get(wordIndex) & (-1L << (index % WORD_BITS));
+    while (true) {
+      while (candidates != 0) {
+        int seatIndex = wordIndex * WORD_BITS + Long.numberOfTrailingZeros(candidates);
+        long occupied = legs.get(seatIndex);
+        if (occupied != 0 && (occupied & legMask) == 0) {
+          return seatIndex + 1;
+        }
+        candidates &= candidates - 1;
+      }
+      if (++wordIndex == partial.length()) {
+        return -1;
+      }
+      candidates = partial.get(wordIndex);
+    }
+  }
+
+  /**
+   * Returns the lowest free seat at or after the given seat, or -1 if there is none.
+   */
+  public int nextFreeSeat(int fromSeat) {
+    return nextFreeSeat(fromSeat, -1L);
+  }
+
+  /**
+   * Returns the lowest free seat at or after the given seat whose position within its
+   * 64-seat word is set in {@code pattern}, or -1 if there is none. Scans a word at a time.
+   */
+  public int nextFreeSeat(int fromSeat, long pattern) {
+    if (fromSeat < 1) {
+      fromSeat = 1;
+    }
+    int index = fromSeat - 1;
+    if (index >= capacity) {
+      return -1;
+    }
+    int wordIndex = index / WORD_BITS;
+    long free = ~words.get(wordIndex) & pattern & (-1L << (index % WORD_BITS));
+    while (free == 0) {
+      if (++wordIndex == words.length()) {
+        return -1;
+      }
+      free = ~words.get(wordIndex) & pattern;
+    }
+    return wordIndex * WORD_BITS + Long.numberOfTrailingZeros(free) + 1;
+  }
+
+  /**
+   * Returns the lowest seat at or after the given seat that has any leg sold, or
+   * capacity + 1 if there is none.
+   */
+  public int nextUsedSeat(int fromSeat) {
+    if (fromSeat < 1) {
+      fromSeat = 1;
+    }
+    int index = fromSeat - 1;
+    if (index >= capacity) {
+      return capacity + 1;
+    }
+    int wordIndex = index / WORD_BITS;
+    long used = words.get(wordIndex) & (-1L << (index % WORD_BITS));
+    while (used == 0) {
+      if (++wordIndex == words.length()) {
+        return capacity + 1;
+      }
+      used = words.get(wordIndex);
+    }
+    return Math.min(capacity + 1, wordIndex * WORD_BITS + Long.numberOfTrailingZeros(used) + 1);
+  }
+
+  /**
+   * Claims the given legs on {@code count} consecutive, completely free seats.
+   *
+   * Runs of free seats are found from the bitmap; if another thread takes a seat in the
+   * middle of a run while it is being claimed, the seats already taken are released and
+   * the search continues after the lost seat.
+   *
+   * @return the first seat of the claimed run, or -1 if no such run is free
+   */
+  public int claimRun(int count, long legMask) {
+    if (count <= 0 || count > capacity) {
+      return -1;
+    }
+    int start = nextFreeSeat(1);
+    while (start != -1 && start + count - 1 <= capacity) {
+      int end = nextUsedSeat(start);
+      if (end - start < count) {
+        start = nextFreeSeat(end);
+        continue;
+      }
+      int claimed = 0;
+      while (claimed < count && claim(start + claimed, legMask)) {
+        claimed++;
+      }
+      if (claimed == count) {
+        return start;
+      }
+      for (int i = 0; i < claimed; i++) {
+        release(start + i, legMask);
+      }
+      start = nextFreeSeat(start + claimed + 1);
+    }
+    return -1;
+  }
+
+  /**
+   * Returns the n-th (zero based) free seat in seat order, or -1 if fewer seats are free.
+   * Whole words are skipped by popcount and the bit inside the word is found with
+   * {@link Long#expand}, so the cost is one bitCount per 64 seats.
+   */
+  public int nthFreeSeat(int n) {
+    if (n < 0) {
+      return -1;
+    }
+    for (int wordIndex = 0; wordIndex < words.length(); wordIndex++) {
+      long free = ~words.get(wordIndex);
+      int count = Long.bitCount(free);
+      if (n < count) {
+        return wordIndex * WORD_BITS + Long.numberOfTrailingZeros(Long.expand(1L << n, free)) + 1;
+      }
+      n -= count;
+    }
+    return -1;
+  }
+
+  private boolean isPartial(long occupied) {
+    return occupied != 0 && occupied != routeMask;
+  }
+
+  /**
+   * Follows a seat's leg word from {@code before} to {@code after} in the partly sold count
+   * and bitmap. The thread whose CAS made the change owns the count update.
+   */
+  private void changedLegs(int index, long before, long after) {
+    if (isPartial(before) != isPartial(after)) {
+      partialCount.addAndGet(isPartial(after) ? 1 : -1);
+      syncBit(partial, index);
+    }
+  }
+
+  /**
+   * Sets or clears the seat's bit in one of the bitmaps to match its leg word: in
+   * {@code words} a bit means any leg sold, in {@code partial} some but not all.
+   */
+  private void syncBit(AtomicLongArray bitmap, int index) {
+    int wordIndex = index / WORD_BITS;
+    long mask = bit(index);
+    while (true) {
+      boolean set = marks(bitmap, legs.get(index));
+      long current;
+      long next;
+      do {
+        current = bitmap.get(wordIndex);
+        next = set ? current | mask : current & ~mask;
+      } while (current != next && !bitmap.compareAndSet(wordIndex, current, next));
+      // Another thread may have changed the seat while we were updating its bit
+      if (marks(bitmap, legs.get(index)) == set) {
+        return;
+      }
+    }
+  }
+
+  private boolean marks(AtomicLongArray bitmap, long occupied) {
+    return bitmap == partial ? isPartial(occupied) : occupied != 0;
+  }
+
+  private static long bit(int index) {
+    return 1L << (index % WORD_BITS);
+  }
+
+  private void checkSeat(int seatNumber) {
+    if (seatNumber < 1 || seatNumber > capacity) {
+      throw new IllegalArgumentException("Seat " + seatNumber + " outside 1.." + capacity);
+    }
+  }
+}
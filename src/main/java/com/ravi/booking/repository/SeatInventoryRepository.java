@@ -0,0 +1,91 @@
+package com.ravi.booking.repository;
+
+import java.time.LocalDate;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+import org.springframework.stereotype.Component;
+
+import com.ravi.booking.config.TopologyProperties;
+import com.ravi.booking.model.Coach;
+import com.ravi.booking.model.TrainTopology;
+
+/**
+ * Holds the configured train topologies and the seat inventory of every train run.
+ *
+ * Run inventories are created on first use, so a day's schedule only costs memory for
+ * the runs that are actually booked.
+ */
+@Component
+public class SeatInventoryRepository {
+
+  private final Map<String, TrainTopology> topologies;
+  private final String defaultTrainId;
+  private final Map<String, Map<LocalDate, TrainInventory>> runs = new ConcurrentHashMap<>();
+
+  public SeatInventoryRepository(TopologyProperties properties) {
+    Map<String, TrainTopology> trains = new LinkedHashMap<>();
+    for (TopologyProperties.TrainProperties train : properties.getTrains()) {
+      trains.put(train.getId(), new TrainTopology(train.getId(), train.getCoaches().stream()
+          .map(coach -> new Coach(coach.getName(), coach.getSection(), coach.getSeats()))
+          .collect(Collectors.toList()), train.getStations()));
+    }
+    if (trains.isEmpty()) {
+      throw new IllegalStateException("No trains configured under booking.topology.trains");
+    }
+    this.topologies = Map.copyOf(trains);
+    this.defaultTrainId = properties.getDefaultTrain() != null
+        ? properties.getDefaultTrain()
+        : trains.keySet().iterator().next();
+    if (!topologies.containsKey(defaultTrainId)) {
+      throw new IllegalStateException("Default train " + defaultTrainId + " is not configured");
+    }
+  }
+
+  public String getDefaultTrainId() {
+    return defaultTrainId;
+  }
+
+  public TrainTopology getTopology(String trainId) {
+    return topologies.get(trainId);
+  }
+
+  public Map<String, TrainTopology> getTopologies() {
+    return topologies;
+  }
+
+  /**
+   * Returns the inventory for the given run, creating it on first use.
+   *
+   * @return the run inventory, or null if the train is not configured
+   */
+  public TrainInventory getInventory(String trainId, LocalDate serviceDate) {
+    TrainTopology topology = topologies.get(trainId);
+    if (topology == null) {
+      return null;
+    }
+    return runs.computeIfAbsent(trainId, id -> new ConcurrentHashMap<>())
+        .computeIfAbsent(serviceDate, date -> new TrainInventory(topology, date));
+  }
+
+  /**
+   * Forgets every run, so that seats can be claimed again from scratch. Only meant for
+   * recovery, before any booking is taken.
+   */
+  public void clear() {
+    runs.clear();
+  }
+
+  /**
+   * Returns the inventory for the given run only if it has been created.
+   */
+  public TrainInventory findInventory(String trainId, LocalDate serviceDate) {
+    if (trainId == null || serviceDate == null) {
+      return null;
+    }
+    Map<LocalDate, TrainInventory> byDate = runs.get(trainId);
+    return byDate == null ? null : byDate.get(serviceDate);
+  }
+}
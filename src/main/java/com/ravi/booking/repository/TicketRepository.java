@@ -1,73 +1,271 @@
 package com.ravi.booking.repository;
 
-import java.util.HashMap;
-import java.util.HashSet;
+import java.util.ArrayList;
+import java.util.EnumMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
-import java.util.stream.Collectors;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
 
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
 import com.ravi.booking.model.SeatAssignment;
 import com.ravi.booking.model.Section;
 import com.ravi.booking.model.TicketEntity;
+import com.ravi.booking.persistence.Journal;
 
+/**
+ * In-memory ticket store with secondary indexes.
+ *
+ * Besides the primary store, every saved ticket is indexed by section (in purchase order)
+ * and by its current seat. Both indexes are maintained on {@link #save} and {@link #delete},
+ * so section listings cost O(result size) and seat lookups are a single map read.
+ *
+ * The tickets themselves live in a {@link TicketStore}; the indexes only hold ticket ids.
+ * Tickets already in the store when the repository is created are indexed and their seats
+ * taken again.
+ *
+ * Writes for a ticket id are serialized by one of a fixed set of striped locks. Under that
+ * lock a mutation is first handed to the {@link Journal} and only applied to the store and
+ * the indexes once the journal reports it durable, so a save or delete that throws has
+ * changed nothing.
+ */
 @Component
 public class TicketRepository{
-  private final Map<String,TicketEntity> map = new HashMap<>();
-  private final Map<SeatAssignment, String> seatToTicketMap = new HashMap<>();
-  private final Map<Section, Set<Integer>> allocatedSeats = new HashMap<>();
+  private static final int STRIPES = 1024;
 
+  private final TicketStore store;
+  private final ReentrantLock[] stripes = new ReentrantLock[STRIPES];
+  private final Map<String, IndexEntry> index = new ConcurrentHashMap<>();
+  private final Map<Section, ConcurrentSkipListMap<Long, String>> sectionIndex = new EnumMap<>(Section.class);
+  private final AtomicLong sequence = new AtomicLong();
+  private final SeatInventoryRepository inventoryRepository;
+  private volatile Journal journal = Journal.NOOP;
 
-  public TicketRepository() {
-    allocatedSeats.put(Section.A, new HashSet<>());
-    allocatedSeats.put(Section.B, new HashSet<>());
+
+  public TicketRepository(SeatInventoryRepository inventoryRepository) {
+    this(inventoryRepository, new HeapTicketStore());
+  }
+
+  @Autowired
+  public TicketRepository(SeatInventoryRepository inventoryRepository, TicketStore store) {
+    this.inventoryRepository = inventoryRepository;
+    this.store = store;
+    for (int i = 0; i < STRIPES; i++) {
+      stripes[i] = new ReentrantLock();
+    }
+    for (Section section : Section.values()) {
+      sectionIndex.put(section, new ConcurrentSkipListMap<>());
+    }
+    store.forEach(ticket -> {
+      index.put(ticket.getId(), indexEntry(ticket, null));
+      TrainInventory inventory = inventoryRepository.getInventory(ticket.getTrainId(), ticket.getServiceDate());
+      if (inventory != null) {
+        inventory.claim(new SeatAssignment(ticket.getSeatNo(), ticket.getSection(), ticket.getCoach()),
+            inventory.getTopology().legMask(ticket.getSource(), ticket.getDestination()));
+      }
+    });
+  }
+
+  public void setJournal(Journal journal) {
+    this.journal = journal;
   }
-  public TicketEntity save(TicketEntity entity){
 
-    map.put(entity.getId(), entity);
+  /**
+   * Stores a ticket, or replaces the stored ticket with the same id.
+   *
+   * @throws java.util.concurrent.CompletionException if the journal could not record it;
+   *     the repository is then left as it was
+   */
+  public TicketEntity save(TicketEntity entity){
+    ReentrantLock stripe = stripe(entity.getId());
+    stripe.lock();
+    try {
+      journal.ticketSaved(entity).join();
+      store.put(entity);
+      index.compute(entity.getId(), (id, previous) -> indexEntry(entity, previous));
+    } finally {
+      stripe.unlock();
+    }
     return entity;
   }
 
+  private IndexEntry indexEntry(TicketEntity entity, IndexEntry previous) {
+    long position = previous == null ? sequence.incrementAndGet() : previous.sequence;
+    if (previous != null && previous.seat.getSection() != null
+        && previous.seat.getSection() != entity.getSection()) {
+      sectionIndex.get(previous.seat.getSection()).remove(position);
+    }
+    if (entity.getSection() != null) {
+      sectionIndex.get(entity.getSection()).put(position, entity.getId());
+    }
+    SeatAssignment seat = previous != null && previous.matches(entity)
+        ? previous.seat
+        : new SeatAssignment(entity.getSeatNo(), entity.getSection(), entity.getCoach());
+    return new IndexEntry(position, seat);
+  }
+
   public TicketEntity findById(String ticketId) {
-    if(map.containsKey(ticketId))
-      return map.get(ticketId);
-    return null;
+    return store.get(ticketId);
   }
 
-  public void assignSeat(String ticketId, int seatNumber, Section section) {
-    SeatAssignment seatAssignment = new SeatAssignment(seatNumber, section);
-    seatToTicketMap.put(seatAssignment, ticketId);
-    allocatedSeats.get(section).add(seatNumber);
+  /**
+   * Moves a stored ticket to a new seat and re-indexes it. The stored ticket is replaced by
+   * an updated copy, so it keeps its old seat if the save fails.
+   */
+  public void assignSeat(String ticketId, SeatAssignment seatAssignment) {
+    TicketEntity stored = store.get(ticketId);
+    if (stored != null) {
+      TicketEntity ticket = new TicketEntity(stored);
+      ticket.setSeatNo(seatAssignment.getSeatNumber());
+      ticket.setSection(seatAssignment.getSection());
+      ticket.setCoach(seatAssignment.getCoach());
+      save(ticket);
+    }
   }
 
   public List<TicketEntity> findBySection(Section section) {
-    return map.values().stream()
-        .filter(ticket -> ticket.getSection() == section)
-        .collect(Collectors.toList());
+    if (section == null) {
+      return List.of();
+    }
+    List<TicketEntity> tickets = new ArrayList<>();
+    forEachInSection(section, tickets::add);
+    return tickets;
   }
 
-  public SeatAssignment getSeatAssignmentByTicketId(String ticketId) {
-    for (Map.Entry<SeatAssignment, String> entry : seatToTicketMap.entrySet()) {
-      if (entry.getValue().equals(ticketId)) {
-        return entry.getKey();
+  /**
+   * Visits the tickets of a section in purchase order without copying them.
+   */
+  public void forEachInSection(Section section, Consumer<TicketEntity> action) {
+    for (String ticketId : sectionIndex.get(section).values()) {
+      TicketEntity ticket = store.get(ticketId);
+      if (ticket != null) {
+        action.accept(ticket);
       }
     }
-    return null;
   }
 
-  public Set<Integer> getAllocatedSeats(Section section) {
-    return allocatedSeats.get(section);
+  /**
+   * Visits the holder and seat of up to {@code limit} tickets of a section that were indexed
+   * after the given sequence number, in purchase order, without building the tickets. Pass 0
+   * to start from the first ticket.
+   *
+   * @return the sequence number of the last ticket visited, which can be handed back to
+   *     continue from there, or {@code afterSequence} if none was
+   */
+  public long visitSection(Section section, long afterSequence, int limit, TicketStore.SeatVisitor visitor) {
+    long last = afterSequence;
+    int visited = 0;
+    for (Map.Entry<Long, String> entry : sectionIndex.get(section).tailMap(afterSequence, false).entrySet()) {
+      if (visited == limit) {
+        break;
+      }
+      // Tickets deleted between the index read and the store read are skipped
+      if (store.visitSeat(entry.getValue(), visitor)) {
+        visited++;
+        last = entry.getKey();
+      }
+    }
+    return last;
+  }
+
+  /**
+   * Returns whether a section has tickets indexed after the given sequence number.
+   */
+  public boolean hasTicketsAfter(Section section, long sequence) {
+    return sectionIndex.get(section).higherKey(sequence) != null;
+  }
+
+  public int countBySection(Section section) {
+    return sectionIndex.get(section).size();
+  }
+
+  public int count() {
+    return index.size();
+  }
+
+  public SeatAssignment getSeatAssignmentByTicketId(String ticketId) {
+    IndexEntry entry = index.get(ticketId);
+    return entry == null ? null : entry.seat;
+  }
+
+  public void forEachTicket(Consumer<TicketEntity> action) {
+    store.forEach(action);
   }
 
+  /**
+   * Removes a ticket and gives its seat back. Does nothing if there is no such ticket.
+   *
+   * @throws java.util.concurrent.CompletionException if the journal could not record the
+   *     removal; the ticket then stays stored and keeps its seat
+   */
   public void delete(String ticketId) {
-    TicketEntity ticket = map.remove(ticketId);
-    if (ticket != null) {
-      SeatAssignment seatAssignment = new SeatAssignment(ticket.getSeatNo(), ticket.getSection());
-      seatToTicketMap.remove(seatAssignment);
-      allocatedSeats.get(seatAssignment.getSection()).remove(seatAssignment.getSeatNumber());
+    ReentrantLock stripe = stripe(ticketId);
+    stripe.lock();
+    try {
+      IndexEntry entry = index.get(ticketId);
+      if (entry == null) {
+        return;
+      }
+      journal.ticketDeleted(ticketId).join();
+      index.remove(ticketId);
+      if (entry.seat.getSection() != null) {
+        sectionIndex.get(entry.seat.getSection()).remove(entry.sequence);
+      }
+      TicketEntity ticket = store.remove(ticketId);
+      if (ticket != null) {
+        TrainInventory inventory = inventoryRepository.findInventory(ticket.getTrainId(), ticket.getServiceDate());
+        if (inventory != null) {
+          inventory.release(entry.seat,
+              inventory.getTopology().legMask(ticket.getSource(), ticket.getDestination()));
+        }
+      }
+    } finally {
+      stripe.unlock();
+    }
+  }
+
+  /**
+   * Runs the action while no write is in progress, holding every stripe lock. Each write the
+   * journal accepted before the action has then also been applied.
+   */
+  public void whileWritesPaused(Runnable action) {
+    for (ReentrantLock stripe : stripes) {
+      stripe.lock();
+    }
+    try {
+      action.run();
+    } finally {
+      for (int i = STRIPES - 1; i >= 0; i--) {
+        stripes[i].unlock();
+      }
+    }
+  }
+
+  private ReentrantLock stripe(String ticketId) {
+    int hash = ticketId == null ? 0 : ticketId.hashCode();
+    return stripes[(hash ^ (hash >>> 16)) & (STRIPES - 1)];
+  }
+
+  private static final class IndexEntry {
+    private final long sequence;
+    private final SeatAssignment seat;
+
+    private IndexEntry(long sequence, SeatAssignment seat) {
+      this.sequence = sequence;
+      this.seat = seat;
+    }
+
+    private boolean matches(TicketEntity entity) {
+      return seat.getSeatNumber() == entity.getSeatNo()
+          && seat.getSection() == entity.getSection()
+          && Objects.equals(seat.getCoach(), entity.getCoach());
     }
   }
 
-}
\ No newline at end of file
+}
@@ -0,0 +1,51 @@
+package com.ravi.booking.repository;
+
+import java.util.function.Consumer;
+
+import com.ravi.booking.model.TicketEntity;
+import com.ravi.booking.model.UserEntity;
+
+/**
+ * Primary storage behind {@link TicketRepository}, keyed by ticket id.
+ *
+ * Stores may keep their own copy of a ticket: {@link #get} can return a new object on every
+ * call, so changes to a returned ticket are only kept once it is passed to {@link #put}
+ * again. {@link TicketRepository} serializes writes for the same ticket id.
+ */
+public interface TicketStore {
+
+  void put(TicketEntity ticket);
+
+  TicketEntity get(String ticketId);
+
+  /**
+   * Passes the holder and seat of a stored ticket to the visitor without building the ticket,
+   * which is all a manifest row needs.
+   *
+   * @return false if there is no such ticket
+   */
+  default boolean visitSeat(String ticketId, SeatVisitor visitor) {
+    TicketEntity ticket = get(ticketId);
+    if (ticket == null) {
+      return false;
+    }
+    visitor.visit(ticket.getUser(), ticket.getSeatNo(), ticket.getCoach());
+    return true;
+  }
+
+  /**
+   * Removes a ticket.
+   *
+   * @return the removed ticket, or null if there was none
+   */
+  TicketEntity remove(String ticketId);
+
+  void forEach(Consumer<TicketEntity> action);
+
+  int size();
+
+  @FunctionalInterface
+  interface SeatVisitor {
+    void visit(UserEntity user, int seatNo, String coach);
+  }
+}
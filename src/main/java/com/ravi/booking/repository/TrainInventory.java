@@ -0,0 +1,309 @@
+package com.ravi.booking.repository;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import com.ravi.booking.model.Coach;
+import com.ravi.booking.model.SeatAssignment;
+import com.ravi.booking.model.Section;
+import com.ravi.booking.model.TrainTopology;
+import com.ravi.booking.strategy.SeatSelectionStrategy;
+
+/**
+ * Seat inventory for one run of a train (train + service date), one {@link SeatInventory}
+ * per coach.
+ *
+ * Each section also keeps a bitmap of its coaches that still have free seats, so finding a
+ * coach to book from skips full coaches 64 at a time instead of asking every coach in turn.
+ * The bitmap is only a hint: the coach inventory decides, and a coach that turns out to be
+ * full is cleared from the bitmap as it is passed over.
+ *
+ * Journeys that cover only part of the route are first packed onto seats that are already
+ * sold on other legs, so completely free seats stay available for longer journeys.
+ */
+public class TrainInventory {
+
+  private static final int WORD_BITS = Long.SIZE;
+
+  private final TrainTopology topology;
+  private final LocalDate serviceDate;
+  private final SeatInventory[] coaches;
+  private final int[] sectionPositions;
+  private final Map<String, Integer> coachIndexByName = new HashMap<>();
+  private final Map<Section, SectionIndex> sections = new EnumMap<>(Section.class);
+  private final AtomicLong releases = new AtomicLong();
+
+  public TrainInventory(TrainTopology topology, LocalDate serviceDate) {
+    this.topology = topology;
+    this.serviceDate = serviceDate;
+    List<Coach> layout = topology.getCoaches();
+    this.coaches = new SeatInventory[layout.size()];
+    this.sectionPositions = new int[layout.size()];
+    Map<Section, int[]> coachesBySection = new EnumMap<>(Section.class);
+    for (int i = 0; i < layout.size(); i++) {
+      Coach coach = layout.get(i);
+      coaches[i] = new SeatInventory(coach.getSeats(), topology.getLegCount());
+      coachIndexByName.put(coach.getName(), i);
+      int[] current = coachesBySection.getOrDefault(coach.getSection(), new int[0]);
+      int[] next = Arrays.copyOf(current, current.length + 1);
+      next[current.length] = i;
+      sectionPositions[i] = current.length;
+      coachesBySection.put(coach.getSection(), next);
+    }
+    for (Section section : Section.values()) {
+      sections.put(section, new SectionIndex(coachesBySection.getOrDefault(section, new int[0])));
+    }
+  }
+
+  public TrainTopology getTopology() {
+    return topology;
+  }
+
+  public String getTrainId() {
+    return topology.getTrainId();
+  }
+
+  public LocalDate getServiceDate() {
+    return serviceDate;
+  }
+
+  /**
+   * Claims a seat for the whole route in the first coach of the section that still has
+   * room, using the given strategy to pick the seat inside the coach.
+   *
+   * @return the claimed seat, or null if every coach in the section is full
+   */
+  public SeatAssignment allocate(Section section, SeatSelectionStrategy strategy) {
+    return allocate(section, strategy, topology.getRouteMask());
+  }
+
+  /**
+   * Claims the given legs of a seat in the section. Seats already sold on other legs are
+   * tried first; otherwise the strategy picks a completely free seat.
+   *
+   * @return the claimed seat, or null if no seat in the section is free on those legs
+   */
+  public SeatAssignment allocate(Section section, SeatSelectionStrategy strategy, long legMask) {
+    SectionIndex index = sections.get(section);
+    if (legMask != topology.getRouteMask()) {
+      SeatAssignment shared = allocateShared(index, section, legMask);
+      if (shared != null) {
+        return shared;
+      }
+    }
+    int position = index.nextAvailable(0);
+    while (position != -1) {
+      int coachIndex = index.coaches[position];
+      SeatInventory coach = coaches[coachIndex];
+      int seatNumber = strategy.selectSeat(section, coach, legMask);
+      if (seatNumber != -1) {
+        if (coach.getFreeCount() == 0) {
+          index.markFull(position, coach);
+        }
+        return new SeatAssignment(seatNumber, section, topology.getCoaches().get(coachIndex).getName());
+      }
+      index.markFull(position, coach);
+      position = index.nextAvailable(position + 1);
+    }
+    return null;
+  }
+
+  /**
+   * Claims the given legs on {@code count} consecutive seats of one coach in the section.
+   *
+   * @return the claimed seats in order, or null if no coach has such a run free
+   */
+  public List<SeatAssignment> allocateRun(Section section, int count, long legMask) {
+    SectionIndex index = sections.get(section);
+    int position = index.nextAvailable(0);
+    while (position != -1) {
+      int coachIndex = index.coaches[position];
+      SeatInventory coach = coaches[coachIndex];
+      if (coach.getFreeCount() >= count) {
+        int first = coach.claimRun(count, legMask);
+        if (first != -1) {
+          if (coach.getFreeCount() == 0) {
+            index.markFull(position, coach);
+          }
+          String coachName = topology.getCoaches().get(coachIndex).getName();
+          List<SeatAssignment> seats = new ArrayList<>(count);
+          for (int i = 0; i < count; i++) {
+            seats.add(new SeatAssignment(first + i, section, coachName));
+          }
+          return seats;
+        }
+      }
+      position = index.nextAvailable(position + 1);
+    }
+    return null;
+  }
+
+  private SeatAssignment allocateShared(SectionIndex index, Section section, long legMask) {
+    for (int coachIndex : index.coaches) {
+      SeatInventory coach = coaches[coachIndex];
+      if (coach.getPartialCount() == 0) {
+        continue;
+      }
+      int seatNumber = coach.nextSharedSeat(1, legMask);
+      while (seatNumber != -1) {
+        if (coach.claim(seatNumber, legMask)) {
+          return new SeatAssignment(seatNumber, section, topology.getCoaches().get(coachIndex).getName());
+        }
+        seatNumber = coach.nextSharedSeat(seatNumber, legMask);
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Returns a seat booked for the whole route to the inventory.
+   *
+   * @return true if the seat was held and is now free
+   */
+  public boolean release(SeatAssignment seatAssignment) {
+    return release(seatAssignment, topology.getRouteMask());
+  }
+
+  /**
+   * Returns the given legs of a seat to the inventory.
+   *
+   * @return true if those legs were held and are now free
+   */
+  public boolean release(SeatAssignment seatAssignment, long legMask) {
+    Integer coachIndex = coachIndexByName.get(seatAssignment.getCoach());
+    if (coachIndex == null) {
+      return false;
+    }
+    SeatInventory coach = coaches[coachIndex];
+    if (!coach.release(seatAssignment.getSeatNumber(), legMask)) {
+      return false;
+    }
+    releases.incrementAndGet();
+    if (coach.getFreeCount() > 0) {
+      Section section = topology.getCoaches().get(coachIndex).getSection();
+      sections.get(section).setBit(sectionPositions[coachIndex]);
+    }
+    return true;
+  }
+
+  /**
+   * Takes a specific seat, as when rebuilding the inventory from stored tickets.
+   *
+   * @return true if the legs were free and are now held
+   */
+  public boolean claim(SeatAssignment seatAssignment, long legMask) {
+    Integer coachIndex = coachIndexByName.get(seatAssignment.getCoach());
+    if (coachIndex == null) {
+      return false;
+    }
+    SeatInventory coach = coaches[coachIndex];
+    if (!coach.claim(seatAssignment.getSeatNumber(), legMask)) {
+      return false;
+    }
+    if (coach.getFreeCount() == 0) {
+      Section section = topology.getCoaches().get(coachIndex).getSection();
+      sections.get(section).markFull(sectionPositions[coachIndex], coach);
+    }
+    return true;
+  }
+
+  public SeatInventory getCoachInventory(String coachName) {
+    Integer coachIndex = coachIndexByName.get(coachName);
+    return coachIndex == null ? null : coaches[coachIndex];
+  }
+
+  /**
+   * Returns a counter that moves on every release. If it has not moved since a search found
+   * no seat, no seat can have become free in the meantime.
+   */
+  public long getReleaseCount() {
+    return releases.get();
+  }
+
+  public int getFreeSeats(Section section) {
+    int free = 0;
+    for (int coachIndex : sections.get(section).coaches) {
+      free += coaches[coachIndex].getFreeCount();
+    }
+    return free;
+  }
+
+  /**
+   * Returns the number of seats with some but not all legs sold, across both sections.
+   * Together with the free seats this bounds how many partial journeys can still be sold.
+   */
+  public int getPartlySoldSeats() {
+    int partial = 0;
+    for (SeatInventory coach : coaches) {
+      partial += coach.getPartialCount();
+    }
+    return partial;
+  }
+
+  private static final class SectionIndex {
+    private final int[] coaches;
+    private final AtomicLongArray available;
+
+    private SectionIndex(int[] coaches) {
+      this.coaches = coaches;
+      this.available = new AtomicLongArray(Math.max(1, (coaches.length + WORD_BITS - 1) / WORD_BITS));
+      for (int position = 0; position < coaches.length; position++) {
+        setBit(position);
+      }
+    }
+
+    private int nextAvailable(int fromPosition) {
+      if (fromPosition >= coaches.length) {
+        return -1;
+      }
+      int wordIndex = fromPosition / WORD_BITS;
+      long word = available.get(wordIndex) & (-1L << (fromPosition % WORD_BITS));
+      while (word == 0) {
+        if (++wordIndex == available.length()) {
+          return -1;
+        }
+        word = available.get(wordIndex);
+      }
+      return wordIndex * WORD_BITS + Long.numberOfTrailingZeros(word);
+    }
+
+    private void markFull(int position, SeatInventory coach) {
+      clearBit(position);
+      // A release may have slipped in between the failed claim and the clear
+      if (coach.getFreeCount() > 0) {
+        setBit(position);
+      }
+    }
+
+    private void setBit(int position) {
+      int wordIndex = position / WORD_BITS;
+      long mask = 1L << (position % WORD_BITS);
+      long current;
+      do {
+        current = available.get(wordIndex);
+        if ((current & mask) != 0) {
+          return;
+        }
+      } while (!available.compareAndSet(wordIndex, current, current | mask));
+    }
+
+    private void clearBit(int position) {
+      int wordIndex = position / WORD_BITS;
+      long mask = 1L << (position % WORD_BITS);
+      long current;
+      do {
+        current = available.get(wordIndex);
+        if ((current & mask) == 0) {
+          return;
+        }
+      } while (!available.compareAndSet(wordIndex, current, current & ~mask));
+    }
+  }
+}
@@ -0,0 +1,441 @@
+package com.ravi.booking.repository;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.lang.ref.WeakReference;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Consumer;
+
+import com.ravi.booking.model.UserEntity;
+
+/**
+ * Compact store of users in primitive columns, indexed by email and by id.
+ *
+ * Every user is a slot across parallel arrays: the id as two longs, first and last name as
+ * codes into a name dictionary, and the email as its domain (also dictionary-coded) plus
+ * the UTF-8 bytes of the local part in a shared byte arena. Two open-addressing tables map
+ * email hashes and id halves to slots. A user costs about 80 bytes and no objects of its
+ * own. Ids that are not UUIDs, such as those of legacy or restored users, are kept as
+ * strings in a column and map of their own instead.
+ *
+ * Each slot also has one canonical {@link UserEntity}, held weakly: every read returns that
+ * same object for as long as anything (a ticket, say) still refers to it, and a new one is
+ * built from the columns once nothing does. Storing a user whose slot still has a canonical
+ * entity copies the new fields into it, so holders see the change.
+ *
+ * Changing a user's email leaves its old local part in the arena unless the new one fits in
+ * its place. The arena is compacted once more than half of it is such garbage.
+ *
+ * Writes take the write lock and reads the read lock, so lookups only wait for writes.
+ */
+final class UserDirectory {
+
+  private static final int NONE = -1;
+  private static final int MIN_ARENA = 1 << 16;
+  private static final VarHandle ENTITIES = MethodHandles.arrayElementVarHandle(WeakReference[].class);
+
+  private final StampedLock lock = new StampedLock();
+  private final Dictionary names = new Dictionary();
+  private final Dictionary domains = new Dictionary();
+
+  // Columns, indexed by slot
+  private long[] idHigh = new long[1024];
+  private long[] idLow = new long[1024];
+  private int[] firstName = new int[1024];
+  private int[] lastName = new int[1024];
+  private int[] domain = new int[1024];
+  private int[] emailHash = new int[1024];
+  private long[] local = new long[1024];
+  @SuppressWarnings("unchecked")
+  private WeakReference<UserEntity>[] entities = new WeakReference[1024];
+  // Ids that are not UUIDs; null where the id is in idHigh and idLow
+  private String[] otherId = new String[1024];
+  private int count;
+
+  private byte[] arena = new byte[MIN_ARENA];
+  private int arenaSize;
+  private int arenaGarbage;
+
+  // Open-addressing tables holding slot + 1, so that 0 marks an empty bucket
+  private int[] byEmail = new int[2048];
+  private int[] byId = new int[2048];
+  private final Map<String, Integer> byOtherId = new HashMap<>();
+
+  UserEntity findByEmail(String email) {
+    if (email == null) {
+      return null;
+    }
+    long stamp = lock.readLock();
+    try {
+      return read(findEmailSlot(email));
+    } finally {
+      lock.unlockRead(stamp);
+    }
+  }
+
+  UserEntity findById(String id) {
+    if (id == null) {
+      return null;
+    }
+    UUID uuid = parse(id);
+    if (uuid != null) {
+      return findById(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits());
+    }
+    long stamp = lock.readLock();
+    try {
+      return read(byOtherId.getOrDefault(id, NONE));
+    } finally {
+      lock.unlockRead(stamp);
+    }
+  }
+
+  UserEntity findById(long high, long low) {
+    long stamp = lock.readLock();
+    try {
+      return read(findIdSlot(high, low));
+    } finally {
+      lock.unlockRead(stamp);
+    }
+  }
+
+  /**
+   * Stores a user. A user with the same id is updated in place; otherwise the user takes a
+   * new slot and becomes the one found by its email. The stored user becomes the canonical
+   * entity of its slot unless the slot still has one, which is updated to match instead.
+   *
+   * @throws IllegalArgumentException if the user has no id
+   */
+  void put(UserEntity user) {
+    String id = user.getId();
+    if (id == null) {
+      throw new IllegalArgumentException("User has no id");
+    }
+    UUID uuid = parse(id);
+    long high = uuid == null ? 0 : uuid.getMostSignificantBits();
+    long low = uuid == null ? 0 : uuid.getLeastSignificantBits();
+    long stamp = lock.writeLock();
+    try {
+      int slot = uuid == null ? byOtherId.getOrDefault(id, NONE) : findIdSlot(high, low);
+      boolean existing = slot != NONE;
+      if (!existing) {
+        slot = count++;
+        ensureColumns(count);
+        idHigh[slot] = high;
+        idLow[slot] = low;
+        if (uuid == null) {
+          otherId[slot] = id;
+          byOtherId.put(id, slot);
+        } else {
+          insert(byId = grown(byId, slot, true), idHash(high, low), slot);
+        }
+      } else {
+        removeEmail(slot);
+      }
+      firstName[slot] = names.code(user.getFirstName());
+      lastName[slot] = names.code(user.getLastName());
+      writeEmail(slot, user.getEmail(), existing);
+      int previous = findEmailSlot(user.getEmail());
+      if (previous != NONE) {
+        removeEmail(previous);
+      }
+      insert(byEmail = grown(byEmail, slot, false), mix(emailHash[slot]), slot);
+
+      UserEntity canonical = canonical(slot);
+      if (canonical == null) {
+        entities[slot] = new WeakReference<>(user);
+      } else if (canonical != user) {
+        canonical.setFirstName(user.getFirstName());
+        canonical.setLastName(user.getLastName());
+        canonical.setEmail(user.getEmail());
+      }
+    } finally {
+      lock.unlockWrite(stamp);
+    }
+  }
+
+  void forEach(Consumer<UserEntity> action) {
+    for (int slot = 0; ; slot++) {
+      UserEntity user;
+      long stamp = lock.readLock();
+      try {
+        if (slot >= count) {
+          return;
+        }
+        user = read(slot);
+      } finally {
+        lock.unlockRead(stamp);
+      }
+      action.accept(user);
+    }
+  }
+
+  int size() {
+    long stamp = lock.readLock();
+    try {
+      return count;
+    } finally {
+      lock.unlockRead(stamp);
+    }
+  }
+
+  /**
+   * Returns the canonical entity of a slot, building it from the columns if it has been
+   * collected. Callers hold at least the read lock; concurrent readers agree on one entity.
+   * Returns null for {@code NONE}.
+   */
+  private UserEntity read(int slot) {
+    if (slot == NONE) {
+      return null;
+    }
+    WeakReference<UserEntity>[] refs = entities;
+    while (true) {
+      @SuppressWarnings("unchecked")
+      WeakReference<UserEntity> ref = (WeakReference<UserEntity>) ENTITIES.getVolatile(refs, slot);
+      UserEntity user = ref == null ? null : ref.get();
+      if (user != null) {
+        return user;
+      }
+      user = new UserEntity();
+      user.setId(otherId[slot] != null ? otherId[slot] : new UUID(idHigh[slot], idLow[slot]).toString());
+      user.setFirstName(names.value(firstName[slot]));
+      user.setLastName(names.value(lastName[slot]));
+      user.setEmail(readEmail(slot));
+      if (ENTITIES.compareAndSet(refs, slot, ref, new WeakReference<>(user))) {
+        return user;
+      }
+    }
+  }
+
+  private UserEntity canonical(int slot) {
+    @SuppressWarnings("unchecked")
+    WeakReference<UserEntity> ref = (WeakReference<UserEntity>) ENTITIES.getVolatile(entities, slot);
+    return ref == null ? null : ref.get();
+  }
+
+  private int findEmailSlot(String email) {
+    if (email == null) {
+      return NONE;
+    }
+    int hash = email.hashCode();
+    int at = email.lastIndexOf('@');
+    int domainCode = at < 0 ? NONE : domains.find(email.substring(at + 1));
+    if (at >= 0 && domainCode == NONE) {
+      return NONE;
+    }
+    byte[] localBytes = (at < 0 ? email : email.substring(0, at)).getBytes(StandardCharsets.UTF_8);
+    int[] table = byEmail;
+    int mask = table.length - 1;
+    for (int bucket = mix(hash) & mask; table[bucket] != 0; bucket = (bucket + 1) & mask) {
+      int slot = table[bucket] - 1;
+      if (emailHash[slot] == hash && domain[slot] == domainCode && localEquals(slot, localBytes)) {
+        return slot;
+      }
+    }
+    return NONE;
+  }
+
+  private int findIdSlot(long high, long low) {
+    int[] table = byId;
+    int mask = table.length - 1;
+    for (int bucket = idHash(high, low) & mask; table[bucket] != 0; bucket = (bucket + 1) & mask) {
+      int slot = table[bucket] - 1;
+      if (idHigh[slot] == high && idLow[slot] == low) {
+        return slot;
+      }
+    }
+    return NONE;
+  }
+
+  private void writeEmail(int slot, String email, boolean existing) {
+    int at = email == null ? -1 : email.lastIndexOf('@');
+    int previousLength = existing && local[slot] != -1 ? (int) local[slot] : 0;
+    domain[slot] = at < 0 ? NONE : domains.code(email.substring(at + 1));
+    emailHash[slot] = email == null ? 0 : email.hashCode();
+    if (email == null) {
+      local[slot] = -1;
+      arenaGarbage += previousLength;
+    } else {
+      byte[] bytes = (at < 0 ? email : email.substring(0, at)).getBytes(StandardCharsets.UTF_8);
+      if (previousLength > 0 && bytes.length <= previousLength) {
+        // Reuse the old extent; whatever it no longer covers is garbage
+        int offset = (int) (local[slot] >>> 32);
+        System.arraycopy(bytes, 0, arena, offset, bytes.length);
+        local[slot] = ((long) offset << 32) | bytes.length;
+        arenaGarbage += previousLength - bytes.length;
+      } else {
+        if (arenaSize + bytes.length > arena.length) {
+          arena = Arrays.copyOf(arena, Math.max(arena.length * 2, arenaSize + bytes.length));
+        }
+        System.arraycopy(bytes, 0, arena, arenaSize, bytes.length);
+        local[slot] = ((long) arenaSize << 32) | bytes.length;
+        arenaSize += bytes.length;
+        arenaGarbage += previousLength;
+      }
+    }
+    if (arenaGarbage > arenaSize / 2 && arenaSize > MIN_ARENA) {
+      compactArena();
+    }
+  }
+
+  /**
+   * Copies every live local part into a new arena, in slot order.
+   */
+  private void compactArena() {
+    int live = arenaSize - arenaGarbage;
+    byte[] compacted = new byte[Math.max(MIN_ARENA, live + live / 2)];
+    int size = 0;
+    for (int slot = 0; slot < count; slot++) {
+      if (local[slot] == -1) {
+        continue;
+      }
+      int length = (int) local[slot];
+      System.arraycopy(arena, (int) (local[slot] >>> 32), compacted, size, length);
+      local[slot] = ((long) size << 32) | length;
+      size += length;
+    }
+    arena = compacted;
+    arenaSize = size;
+    arenaGarbage = 0;
+  }
+
+  private String readEmail(int slot) {
+    if (local[slot] == -1) {
+      return null;
+    }
+    String localPart = new String(arena, (int) (local[slot] >>> 32), (int) local[slot], StandardCharsets.UTF_8);
+    return domain[slot] == NONE ? localPart : localPart + "@" + domains.value(domain[slot]);
+  }
+
+  private boolean localEquals(int slot, byte[] bytes) {
+    if (local[slot] == -1) {
+      return false;
+    }
+    int offset = (int) (local[slot] >>> 32);
+    int length = (int) local[slot];
+    return Arrays.equals(arena, offset, offset + length, bytes, 0, bytes.length);
+  }
+
+  private void removeEmail(int slot) {
+    int[] table = byEmail;
+    int mask = table.length - 1;
+    int bucket = mix(emailHash[slot]) & mask;
+    while (table[bucket] != 0 && table[bucket] != slot + 1) {
+      bucket = (bucket + 1) & mask;
+    }
+    if (table[bucket] == 0) {
+      return;
+    }
+    // Backward-shift deletion keeps probe runs free of holes
+    int hole = bucket;
+    for (int next = (hole + 1) & mask; table[next] != 0; next = (next + 1) & mask) {
+      int home = mix(emailHash[table[next] - 1]) & mask;
+      if (((next - home) & mask) >= ((next - hole) & mask)) {
+        table[hole] = table[next];
+        hole = next;
+      }
+    }
+    table[hole] = 0;
+  }
+
+  private static void insert(int[] table, int hash, int slot) {
+    int mask = table.length - 1;
+    int bucket = hash & mask;
+    while (table[bucket] != 0) {
+      bucket = (bucket + 1) & mask;
+    }
+    table[bucket] = slot + 1;
+  }
+
+  /**
+   * Returns the table, doubled and rehashed first if adding one more entry would take it
+   * past half full.
+   */
+  private int[] grown(int[] table, int slot, boolean ids) {
+    if ((count + 1) * 2 <= table.length) {
+      return table;
+    }
+    int[] rehashed = new int[table.length * 2];
+    for (int entry : table) {
+      if (entry != 0 && entry != slot + 1) {
+        int other = entry - 1;
+        insert(rehashed, ids ? idHash(idHigh[other], idLow[other]) : mix(emailHash[other]), other);
+      }
+    }
+    return rehashed;
+  }
+
+  private void ensureColumns(int size) {
+    if (size <= idHigh.length) {
+      return;
+    }
+    int capacity = idHigh.length * 2;
+    idHigh = Arrays.copyOf(idHigh, capacity);
+    idLow = Arrays.copyOf(idLow, capacity);
+    firstName = Arrays.copyOf(firstName, capacity);
+    lastName = Arrays.copyOf(lastName, capacity);
+    domain = Arrays.copyOf(domain, capacity);
+    emailHash = Arrays.copyOf(emailHash, capacity);
+    local = Arrays.copyOf(local, capacity);
+    entities = Arrays.copyOf(entities, capacity);
+    otherId = Arrays.copyOf(otherId, capacity);
+  }
+
+  private static int mix(int hash) {
+    return hash * 0x9E3779B9;
+  }
+
+  private static int idHash(long high, long low) {
+    long h = (high ^ Long.rotateLeft(low, 32)) * 0x9E3779B97F4A7C15L;
+    return (int) (h ^ (h >>> 32));
+  }
+
+  /**
+   * Returns the id as a UUID if it is one in canonical form, so that it is given back
+   * unchanged when read; null otherwise.
+   */
+  private static UUID parse(String id) {
+    if (id == null || id.length() != 36) {
+      return null;
+    }
+    try {
+      UUID uuid = UUID.fromString(id);
+      return uuid.toString().equals(id) ? uuid : null;
+    } catch (IllegalArgumentException e) {
+      return null;
+    }
+  }
+
+  /**
+   * Interns strings that many users share, such as first names and email domains.
+   */
+  private static final class Dictionary {
+    private final Map<String, Integer> codes = new HashMap<>();
+    private final List<String> values = new ArrayList<>();
+
+    int code(String value) {
+      if (value == null) {
+        return NONE;
+      }
+      return codes.computeIfAbsent(value, key -> {
+        values.add(key);
+        return values.size() - 1;
+      });
+    }
+
+    int find(String value) {
+      Integer code = codes.get(value);
+      return code == null ? NONE : code;
+    }
+
+    String value(int code) {
+      return code == NONE ? null : values.get(code);
+    }
+  }
+}
@@ -1,29 +1,141 @@
 package com.ravi.booking.repository;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 import org.springframework.stereotype.Component;
 
 import com.ravi.booking.model.UserEntity;
+import com.ravi.booking.persistence.Journal;
 
+/**
+ * Users keyed by email and by id, kept in a compact {@link UserDirectory}.
+ *
+ * The directory stores users in primitive columns rather than as objects. Lookups of a user
+ * return one shared {@link UserEntity} while it is in use, so the tickets of a user all
+ * refer to the same object; changes to it are only indexed once it is saved again.
+ *
+ * Writes for an email are serialized by one of a fixed set of striped locks, which makes
+ * {@link #findOrCreate} atomic per email while first-time users with different emails are
+ * created in parallel. Lookups of existing users take no lock at all. A write reaches the
+ * directory only after the {@link Journal} reports it durable, so a write that throws has
+ * changed nothing.
+ */
 @Component
 public class UserRepository {
-  //email
-  Map<String, UserEntity> emailMap = new HashMap<>();
-  Map<String, UserEntity> idMap = new HashMap<>();
+  private static final int STRIPES = 256;
+
+  private final UserDirectory directory = new UserDirectory();
+  private final ReentrantLock[] stripes = new ReentrantLock[STRIPES];
+  private volatile Journal journal = Journal.NOOP;
+
+  public UserRepository() {
+    for (int i = 0; i < STRIPES; i++) {
+      stripes[i] = new ReentrantLock();
+    }
+  }
+
+  public void setJournal(Journal journal) {
+    this.journal = journal;
+  }
+
   public UserEntity findByEmail(String email){
-    if(emailMap.containsKey(email))
-      return emailMap.get(email);
-    return null;
+    return directory.findByEmail(email);
+  }
+
+  public UserEntity findById(String id) {
+    return directory.findById(id);
+  }
+
+  /**
+   * Looks a user up by the two halves of its id, without going through a string.
+   */
+  UserEntity findById(long idHigh, long idLow) {
+    return directory.findById(idHigh, idLow);
+  }
 
+  /**
+   * Adds a user kept by a durable ticket store, unless the repository already knows it. The
+   * user is not journaled again, since the store has it on disk already.
+   */
+  void restore(UserEntity user) {
+    ReentrantLock stripe = stripe(user.getEmail());
+    stripe.lock();
+    try {
+      if (directory.findById(user.getId()) == null) {
+        directory.put(user);
+      }
+    } finally {
+      stripe.unlock();
+    }
   }
 
   public UserEntity save(UserEntity user){
-    idMap.put(user.getId(), user);
-    emailMap.put(user.getEmail(), user);
+    ReentrantLock stripe = stripe(user.getEmail());
+    stripe.lock();
+    try {
+      journal.userSaved(user).join();
+      directory.put(user);
+    } finally {
+      stripe.unlock();
+    }
     return user;
   }
 
+  /**
+   * Returns the user with the given email, creating and saving one from {@code factory} if
+   * there is none. Concurrent calls for the same email all return the same user.
+   */
+  public UserEntity findOrCreate(String email, Supplier<UserEntity> factory) {
+    UserEntity existing = directory.findByEmail(email);
+    if (existing != null) {
+      return existing;
+    }
+    ReentrantLock stripe = stripe(email);
+    stripe.lock();
+    try {
+      existing = directory.findByEmail(email);
+      if (existing != null) {
+        return existing;
+      }
+      UserEntity created = factory.get();
+      journal.userSaved(created).join();
+      directory.put(created);
+      return created;
+    } finally {
+      stripe.unlock();
+    }
+  }
+
+  public void forEachUser(Consumer<UserEntity> action) {
+    directory.forEach(action);
+  }
+
+  public int count() {
+    return directory.size();
+  }
+
+  /**
+   * Runs the action while no write is in progress, holding every stripe lock. Each write the
+   * journal accepted before the action has then also been applied.
+   */
+  public void whileWritesPaused(Runnable action) {
+    for (ReentrantLock stripe : stripes) {
+      stripe.lock();
+    }
+    try {
+      action.run();
+    } finally {
+      for (int i = STRIPES - 1; i >= 0; i--) {
+        stripes[i].unlock();
+      }
+    }
+  }
+
+  private ReentrantLock stripe(String email) {
+    int hash = email == null ? 0 : email.hashCode();
+    return stripes[(hash ^ (hash >>> 16)) & (STRIPES - 1)];
+  }
 
-}
\ No newline at end of file
+}
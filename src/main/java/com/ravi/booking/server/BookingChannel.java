@@ -0,0 +1,187 @@
+package com.ravi.booking.server;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.ravi.model.BookingCommand;
+import org.ravi.model.BookingResult;
+import org.ravi.model.ModifySeatResponse;
+import org.ravi.model.PurchaseTicketResponse;
+import org.ravi.model.RemoveUserResponse;
+import org.ravi.model.Ticket;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.ravi.booking.exception.AdmissionRejectedException;
+import com.ravi.booking.exception.SeatUnavailableException;
+import com.ravi.booking.exception.TicketNotFoundException;
+import com.ravi.booking.exception.TrainNotFoundException;
+import com.ravi.booking.service.TicketService;
+
+import io.grpc.Status;
+import io.grpc.stub.ServerCallStreamObserver;
+import io.grpc.stub.StreamObserver;
+
+/**
+ * Server side of one {@code BookingChannel} stream.
+ *
+ * Every command is run on the booking executor as soon as it arrives and its result is sent
+ * when it completes, so a slow command does not hold up the ones behind it. Inbound flow
+ * control is manual: the stream asks the client for at most {@link #MAX_IN_FLIGHT} commands
+ * and requests one more each time a result has been sent, which bounds the work a single
+ * client can queue on the server.
+ *
+ * Outbound flow control follows the transport: a finished result is queued and only sent
+ * while the call is ready, and the on-ready handler drains whatever a slow reader left
+ * behind. Since the next command is only requested once a result is sent, the queue never
+ * holds more than {@link #MAX_IN_FLIGHT} results.
+ */
+class BookingChannel implements StreamObserver<BookingCommand> {
+
+  private static final Logger logger = LoggerFactory.getLogger(BookingChannel.class);
+
+  static final int MAX_IN_FLIGHT = 64;
+
+  private final TicketService ticketService;
+  private final Executor executor;
+  private final ServerCallStreamObserver<BookingResult> responseObserver;
+  private final ReentrantLock sendLock = new ReentrantLock();
+  // Commands received whose results have not been sent yet
+  private final AtomicInteger inFlight = new AtomicInteger();
+  // Guarded by sendLock
+  private final ArrayDeque<BookingResult> pending = new ArrayDeque<>();
+  private volatile boolean halfClosed;
+  private boolean finished;
+
+  BookingChannel(TicketService ticketService, Executor executor, StreamObserver<BookingResult> responseObserver) {
+    this.ticketService = ticketService;
+    this.executor = executor;
+    this.responseObserver = (ServerCallStreamObserver<BookingResult>) responseObserver;
+    this.responseObserver.disableAutoRequest();
+    this.responseObserver.setOnReadyHandler(this::drain);
+    this.responseObserver.request(MAX_IN_FLIGHT);
+  }
+
+  @Override
+  public void onNext(BookingCommand command) {
+    inFlight.incrementAndGet();
+    try {
+      executor.execute(() -> complete(execute(command)));
+    } catch (RejectedExecutionException e) {
+      complete(error(command, Status.RESOURCE_EXHAUSTED.withDescription("Server is busy")));
+    }
+  }
+
+  @Override
+  public void onError(Throwable t) {
+    logger.warn("BookingChannel closed by client: {}", t.getMessage());
+    sendLock.lock();
+    try {
+      finished = true;
+      pending.clear();
+    } finally {
+      sendLock.unlock();
+    }
+  }
+
+  @Override
+  public void onCompleted() {
+    halfClosed = true;
+    if (inFlight.get() == 0) {
+      finish();
+    }
+  }
+
+  private BookingResult execute(BookingCommand command) {
+    BookingResult.Builder result = BookingResult.newBuilder().setCorrelationId(command.getCorrelationId());
+    try {
+      switch (command.getCommandCase()) {
+        case PURCHASE -> result.setPurchase(PurchaseTicketResponse.newBuilder()
+            .setTicketId(ticketService.purchaseTicket(command.getPurchase())));
+        case MODIFY -> {
+          Ticket ticket = ticketService.modifySeat(command.getModify().getTicketId(), command.getModify().getIdempotencyKey());
+          result.setModify(ModifySeatResponse.newBuilder()
+              .setNewSeatNumber(ticket.getSeat())
+              .setSection(ticket.getSection())
+              .setCoach(ticket.getCoach())
+              .setTickerId(ticket.getId()));
+        }
+        case CANCEL -> {
+          ticketService.removeUserBooking(command.getCancel().getTicketId());
+          result.setCancel(RemoveUserResponse.newBuilder().setRemoved(true));
+        }
+        default -> {
+          return error(command, Status.INVALID_ARGUMENT.withDescription("Booking command is empty"));
+        }
+      }
+      return result.build();
+    } catch (AdmissionRejectedException e) {
+      return error(command, Status.RESOURCE_EXHAUSTED.withDescription(e.getMessage()));
+    } catch (SeatUnavailableException e) {
+      return error(command, Status.UNAVAILABLE.withDescription(e.getMessage()));
+    } catch (TicketNotFoundException | TrainNotFoundException e) {
+      return error(command, Status.NOT_FOUND.withDescription(e.getMessage()));
+    } catch (Exception e) {
+      logger.error("Internal error during booking command {}: {}", command.getCorrelationId(), e.getMessage(), e);
+      return error(command, Status.INTERNAL.withDescription(e.getMessage()));
+    }
+  }
+
+  private static BookingResult error(BookingCommand command, Status status) {
+    return BookingResult.newBuilder()
+        .setCorrelationId(command.getCorrelationId())
+        .setStatusCode(status.getCode().value())
+        .setErrorMessage(status.getDescription() == null ? "" : status.getDescription())
+        .build();
+  }
+
+  private void complete(BookingResult result) {
+    sendLock.lock();
+    try {
+      if (finished || responseObserver.isCancelled()) {
+        inFlight.decrementAndGet();
+        return;
+      }
+      pending.add(result);
+    } finally {
+      sendLock.unlock();
+    }
+    drain();
+  }
+
+  /**
+   * Sends queued results for as long as the transport is ready, asking the client for one
+   * more command per result sent. Runs both when a result is queued and from the on-ready
+   * handler.
+   */
+  private void drain() {
+    sendLock.lock();
+    try {
+      while (!finished && !pending.isEmpty() && responseObserver.isReady()) {
+        responseObserver.onNext(pending.poll());
+        inFlight.decrementAndGet();
+        responseObserver.request(1);
+      }
+    } finally {
+      sendLock.unlock();
+    }
+    if (halfClosed && inFlight.get() == 0) {
+      finish();
+    }
+  }
+
+  private void finish() {
+    sendLock.lock();
+    try {
+      if (!finished) {
+        finished = true;
+        responseObserver.onCompleted();
+      }
+    } finally {
+      sendLock.unlock();
+    }
+  }
+}
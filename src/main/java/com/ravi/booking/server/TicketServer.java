@@ -1,30 +1,60 @@
 package com.ravi.booking.server;
 
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.ravi.model.BookingCommand;
+import org.ravi.model.BookingResult;
+import org.ravi.model.ConfirmHoldRequest;
+import org.ravi.model.ConfirmHoldResponse;
 import org.ravi.model.GetReceiptRequest;
-import org.ravi.model.GetReceiptResponse;
+import org.ravi.model.GetUsersBySectionPageRequest;
 import org.ravi.model.GetUsersBySectionRequest;
-import org.ravi.model.GetUsersBySectionResponse;
-import org.ravi.model.GetUsersBySectionResponseList;
+import org.ravi.model.HoldSeatRequest;
+import org.ravi.model.HoldSeatResponse;
 import org.ravi.model.ModifySeatRequest;
 import org.ravi.model.ModifySeatResponse;
 import org.ravi.model.PurchaseTicketRequest;
 import org.ravi.model.PurchaseTicketResponse;
+import org.ravi.model.PurchaseTicketsRequest;
+import org.ravi.model.PurchaseTicketsResponse;
+import org.ravi.model.ReleaseHoldRequest;
+import org.ravi.model.ReleaseHoldResponse;
 import org.ravi.model.RemoveUserRequest;
 import org.ravi.model.RemoveUserResponse;
-import org.ravi.model.Section;
 import org.ravi.model.Ticket;
 import org.ravi.model.TrainBookingServiceGrpc;
 
+import com.ravi.booking.exception.AdmissionRejectedException;
+import com.ravi.booking.exception.HoldNotFoundException;
 import com.ravi.booking.exception.SeatUnavailableException;
 import com.ravi.booking.exception.TicketNotFoundException;
+import com.ravi.booking.exception.TrainNotFoundException;
+import com.ravi.booking.Util.ProtoWriter;
+import com.ravi.booking.Util.Util;
+import com.ravi.booking.service.HoldService;
 import com.ravi.booking.service.TicketService;
 
+import io.grpc.Drainable;
+import io.grpc.KnownLength;
+import io.grpc.MethodDescriptor;
+import io.grpc.ServerCallHandler;
+import io.grpc.ServerMethodDefinition;
+import io.grpc.ServerServiceDefinition;
+import io.grpc.ServiceDescriptor;
 import io.grpc.Status;
 import io.grpc.StatusRuntimeException;
+import io.grpc.stub.ServerCallStreamObserver;
+import io.grpc.stub.ServerCalls;
 import io.grpc.stub.StreamObserver;
 import net.devh.boot.grpc.server.service.GrpcService;
 
@@ -33,27 +63,40 @@ public class TicketServer extends TrainBookingServiceGrpc.TrainBookingServiceImp
 
   private static final Logger logger = LoggerFactory.getLogger(TicketServer.class);
 
+  static final int STREAM_CHUNK_SIZE = 256;
+  static final int DEFAULT_PAGE_SIZE = 100;
+  static final int MAX_PAGE_SIZE = 1000;
+
   private final TicketService ticketService;
+  private final HoldService holdService;
+  private final Executor bookingExecutor;
 
-  public TicketServer(TicketService ticketService) {
+  public TicketServer(TicketService ticketService, HoldService holdService,
+      @Qualifier("bookingExecutor") Executor bookingExecutor) {
     this.ticketService = ticketService;
+    this.holdService = holdService;
+    this.bookingExecutor = bookingExecutor;
   }
 
   @Override
   public void purchaseTicket(PurchaseTicketRequest request,
       StreamObserver<PurchaseTicketResponse> responseObserver) {
-    logger.info("Received purchaseTicket request: {}", request);
     try {
       String ticketId = ticketService.purchaseTicket(request);
       PurchaseTicketResponse response = PurchaseTicketResponse.newBuilder()
           .setTicketId(ticketId)
           .build();
-      logger.info("Successfully purchased ticket: {}", ticketId);
+      logger.debug("Successfully purchased ticket: {}", ticketId);
       responseObserver.onNext(response);
       responseObserver.onCompleted();
+    } catch (AdmissionRejectedException e) {
+      responseObserver.onError(new StatusRuntimeException(Status.RESOURCE_EXHAUSTED.withDescription(e.getMessage())));
     } catch (SeatUnavailableException e) {
-      logger.error("Seat unavailable: {}", e.getMessage());
+      logger.debug("Seat unavailable: {}", e.getMessage());
       responseObserver.onError(new StatusRuntimeException(Status.UNAVAILABLE.withDescription(e.getMessage())));
+    } catch (TrainNotFoundException e) {
+      logger.warn("Train not found: {}", e.getMessage());
+      responseObserver.onError(new StatusRuntimeException(Status.NOT_FOUND.withDescription(e.getMessage())));
     } catch (Exception e) {
       logger.error("Internal error during ticket purchase: {}", e.getMessage(), e);
       responseObserver.onError(new StatusRuntimeException(Status.INTERNAL.withDescription(e.getMessage())));
@@ -61,15 +104,82 @@ public class TicketServer extends TrainBookingServiceGrpc.TrainBookingServiceImp
   }
 
   @Override
-  public void getReceipt(GetReceiptRequest request,
-      StreamObserver<GetReceiptResponse> responseObserver) {
-    logger.info("Received getReceipt request: {}", request);
+  public void purchaseTickets(PurchaseTicketsRequest request,
+      StreamObserver<PurchaseTicketsResponse> responseObserver) {
+    logger.debug("Received purchaseTickets request for {} users", request.getUsersCount());
     try {
-      Ticket ticket = ticketService.getReceipt(request.getTicketId());
-      GetReceiptResponse response = GetReceiptResponse.newBuilder().setTicket(ticket).build();
-      logger.info("Successfully retrieved receipt for ticket: {}", request.getTicketId());
+      List<String> ticketIds = ticketService.purchaseTickets(request);
+      PurchaseTicketsResponse response = PurchaseTicketsResponse.newBuilder()
+          .addAllTicketIds(ticketIds)
+          .build();
+      logger.debug("Successfully purchased {} tickets", ticketIds.size());
       responseObserver.onNext(response);
       responseObserver.onCompleted();
+    } catch (IllegalArgumentException e) {
+      logger.warn("Invalid group purchase: {}", e.getMessage());
+      responseObserver.onError(new StatusRuntimeException(Status.INVALID_ARGUMENT.withDescription(e.getMessage())));
+    } catch (AdmissionRejectedException e) {
+      responseObserver.onError(new StatusRuntimeException(Status.RESOURCE_EXHAUSTED.withDescription(e.getMessage())));
+    } catch (SeatUnavailableException e) {
+      logger.debug("Seats unavailable: {}", e.getMessage());
+      responseObserver.onError(new StatusRuntimeException(Status.UNAVAILABLE.withDescription(e.getMessage())));
+    } catch (TrainNotFoundException e) {
+      logger.warn("Train not found: {}", e.getMessage());
+      responseObserver.onError(new StatusRuntimeException(Status.NOT_FOUND.withDescription(e.getMessage())));
+    } catch (Exception e) {
+      logger.error("Internal error during group purchase: {}", e.getMessage(), e);
+      responseObserver.onError(new StatusRuntimeException(Status.INTERNAL.withDescription(e.getMessage())));
+    }
+  }
+
+  /**
+   * Serves GetReceipt and the manifest methods from bytes encoded by the service layer. The
+   * generated bindings for those methods are swapped for ones whose response marshaller
+   * takes the bytes as they are, so a response is never built as a message or encoded a
+   * second time.
+   */
+  @Override
+  public ServerServiceDefinition bindService() {
+    ServerServiceDefinition generated = super.bindService();
+    Map<String, ServerMethodDefinition<?, ?>> methods = new LinkedHashMap<>();
+    for (ServerMethodDefinition<?, ?> method : generated.getMethods()) {
+      methods.put(method.getMethodDescriptor().getFullMethodName(), method);
+    }
+    bindPreSerialized(methods, TrainBookingServiceGrpc.getGetReceiptMethod(),
+        ServerCalls.asyncUnaryCall(this::getReceiptBytes));
+    bindPreSerialized(methods, TrainBookingServiceGrpc.getGetUsersBySectionMethod(),
+        ServerCalls.asyncUnaryCall(this::getUsersBySectionBytes));
+    bindPreSerialized(methods, TrainBookingServiceGrpc.getStreamUsersBySectionMethod(),
+        ServerCalls.asyncServerStreamingCall(this::streamUsersBySectionBytes));
+    bindPreSerialized(methods, TrainBookingServiceGrpc.getGetUsersBySectionPageMethod(),
+        ServerCalls.asyncUnaryCall(this::getUsersBySectionPageBytes));
+
+    ServiceDescriptor.Builder descriptor = ServiceDescriptor.newBuilder(TrainBookingServiceGrpc.SERVICE_NAME)
+        .setSchemaDescriptor(generated.getServiceDescriptor().getSchemaDescriptor());
+    for (ServerMethodDefinition<?, ?> method : methods.values()) {
+      descriptor.addMethod(method.getMethodDescriptor());
+    }
+    ServerServiceDefinition.Builder definition = ServerServiceDefinition.builder(descriptor.build());
+    for (ServerMethodDefinition<?, ?> method : methods.values()) {
+      definition.addMethod(method);
+    }
+    return definition.build();
+  }
+
+  private static <ReqT> void bindPreSerialized(Map<String, ServerMethodDefinition<?, ?>> methods,
+      MethodDescriptor<ReqT, ?> generated, ServerCallHandler<ReqT, byte[]> handler) {
+    MethodDescriptor<ReqT, byte[]> method = generated
+        .toBuilder(generated.getRequestMarshaller(), PreSerializedMarshaller.INSTANCE)
+        .build();
+    methods.put(method.getFullMethodName(), ServerMethodDefinition.create(method, handler));
+  }
+
+  private void getReceiptBytes(GetReceiptRequest request, StreamObserver<byte[]> responseObserver) {
+    try {
+      byte[] receipt = ticketService.getReceiptBytes(request.getTicketId());
+      logger.debug("Successfully retrieved receipt for ticket: {}", request.getTicketId());
+      responseObserver.onNext(receipt);
+      responseObserver.onCompleted();
     } catch (TicketNotFoundException e) {
       logger.warn("Ticket not found: {}", e.getMessage());
       responseObserver.onError(new StatusRuntimeException(Status.NOT_FOUND.withDescription(e.getMessage())));
@@ -79,22 +189,50 @@ public class TicketServer extends TrainBookingServiceGrpc.TrainBookingServiceImp
     }
   }
 
-  @Override
-  public void getUsersBySection(GetUsersBySectionRequest request,
-      StreamObserver<GetUsersBySectionResponseList> responseObserver) {
-    logger.info("Received getUsersBySection request: {}", request);
+  /**
+   * Passes messages that are already serialized straight through. The stream it hands to
+   * the transport can drain its array into the outgoing buffer in one copy.
+   */
+  static final class PreSerializedMarshaller implements MethodDescriptor.Marshaller<byte[]> {
+    static final PreSerializedMarshaller INSTANCE = new PreSerializedMarshaller();
+
+    @Override
+    public InputStream stream(byte[] value) {
+      return new DrainableBytes(value);
+    }
+
+    @Override
+    public byte[] parse(InputStream stream) {
+      try {
+        return stream.readAllBytes();
+      } catch (IOException e) {
+        throw Status.INTERNAL.withDescription("Failed to read message").withCause(e).asRuntimeException();
+      }
+    }
+  }
+
+  private static final class DrainableBytes extends ByteArrayInputStream implements Drainable, KnownLength {
+    DrainableBytes(byte[] bytes) {
+      super(bytes);
+    }
+
+    @Override
+    public int drainTo(OutputStream target) throws IOException {
+      int length = count - pos;
+      target.write(buf, pos, length);
+      pos = count;
+      return length;
+    }
+  }
+
+  private void getUsersBySectionBytes(GetUsersBySectionRequest request, StreamObserver<byte[]> responseObserver) {
     try {
-      com.ravi.booking.model.Section section = (request.getSection() == Section.S_A)
-          ? com.ravi.booking.model.Section.A
-          : com.ravi.booking.model.Section.B;
-
-      List<GetUsersBySectionResponse> list = ticketService.getUsersList(section).stream()
-          .map(a -> GetUsersBySectionResponse.newBuilder()
-              .setUserName(a.getUser().getFirstName() + " " + a.getUser().getLastName())
-              .setSeatNo(a.getSeatNo()).build()
-          ).toList();
-      var response = GetUsersBySectionResponseList.newBuilder().addAllResponse(list).build();
-      logger.info("Successfully retrieved users by section: {}", section);
+      com.ravi.booking.model.Section section = Util.toModel(request.getSection());
+
+      ProtoWriter.Manifest manifest = new ProtoWriter.Manifest(STREAM_CHUNK_SIZE);
+      ticketService.visitUsers(section, 0, Integer.MAX_VALUE, manifest::add);
+      byte[] response = manifest.toByteArray(null);
+      logger.debug("Successfully retrieved users by section: {}", section);
       responseObserver.onNext(response);
       responseObserver.onCompleted();
     } catch (Exception e) {
@@ -103,16 +241,74 @@ public class TicketServer extends TrainBookingServiceGrpc.TrainBookingServiceImp
     }
   }
 
+  private void streamUsersBySectionBytes(GetUsersBySectionRequest request, StreamObserver<byte[]> responseObserver) {
+    ServerCallStreamObserver<byte[]> call = (ServerCallStreamObserver<byte[]>) responseObserver;
+    com.ravi.booking.model.Section section = Util.toModel(request.getSection());
+    call.setOnCancelHandler(() -> logger.debug("streamUsersBySection cancelled for section: {}", section));
+    // Only build the next chunk when the transport can take it, so server memory stays at
+    // one chunk no matter how large the section is or how slow the client reads.
+    call.setOnReadyHandler(new Runnable() {
+      private final ProtoWriter.Manifest chunk = new ProtoWriter.Manifest(STREAM_CHUNK_SIZE);
+      private long position;
+      private boolean completed;
+
+      @Override
+      public void run() {
+        try {
+          while (!completed && call.isReady() && !call.isCancelled()) {
+            chunk.clear();
+            position = ticketService.visitUsers(section, position, STREAM_CHUNK_SIZE, chunk::add);
+            if (chunk.size() == 0) {
+              completed = true;
+              logger.debug("Successfully streamed users by section: {}", section);
+              call.onCompleted();
+              return;
+            }
+            call.onNext(chunk.toByteArray(null));
+          }
+        } catch (Exception e) {
+          completed = true;
+          logger.error("Internal error during streamUsersBySection: {}", e.getMessage(), e);
+          call.onError(new StatusRuntimeException(Status.INTERNAL.withDescription(e.getMessage())));
+        }
+      }
+    });
+  }
+
+  private void getUsersBySectionPageBytes(GetUsersBySectionPageRequest request,
+      StreamObserver<byte[]> responseObserver) {
+    long after;
+    try {
+      after = request.getPageToken().isEmpty() ? 0 : Long.parseLong(request.getPageToken());
+    } catch (NumberFormatException e) {
+      responseObserver.onError(new StatusRuntimeException(
+          Status.INVALID_ARGUMENT.withDescription("Invalid page token: " + request.getPageToken())));
+      return;
+    }
+    try {
+      int pageSize = request.getPageSize() <= 0 ? DEFAULT_PAGE_SIZE : Math.min(request.getPageSize(), MAX_PAGE_SIZE);
+      com.ravi.booking.model.Section section = Util.toModel(request.getSection());
+      ProtoWriter.Manifest page = new ProtoWriter.Manifest(Math.min(pageSize, STREAM_CHUNK_SIZE));
+      long last = ticketService.visitUsers(section, after, pageSize, page::add);
+      String nextPageToken = ticketService.hasUsersAfter(section, last) ? Long.toString(last) : null;
+      logger.debug("Successfully retrieved users page for section: {}", section);
+      responseObserver.onNext(page.toByteArray(nextPageToken));
+      responseObserver.onCompleted();
+    } catch (Exception e) {
+      logger.error("Internal error during getUsersBySectionPage: {}", e.getMessage(), e);
+      responseObserver.onError(new StatusRuntimeException(Status.INTERNAL.withDescription(e.getMessage())));
+    }
+  }
+
   @Override
   public void removeUser(RemoveUserRequest request,
       StreamObserver<RemoveUserResponse> responseObserver) {
-    logger.info("Received removeUser request: {}", request);
     try {
       ticketService.removeUserBooking(request.getTicketId());
       RemoveUserResponse response = RemoveUserResponse.newBuilder()
           .setRemoved(true)
           .build();
-      logger.info("Successfully removed user booking for ticket: {}", request.getTicketId());
+      logger.debug("Successfully removed user booking for ticket: {}", request.getTicketId());
       responseObserver.onNext(response);
       responseObserver.onCompleted();
     } catch (TicketNotFoundException e) {
@@ -126,18 +322,18 @@ public class TicketServer extends TrainBookingServiceGrpc.TrainBookingServiceImp
 
   @Override
   public void modifySeat(ModifySeatRequest request, StreamObserver<ModifySeatResponse> responseObserver) {
-    logger.info("Received modifySeat request: {}", request);
     try {
-      Ticket ticket = ticketService.modifySeat(request.getTicketId());
+      Ticket ticket = ticketService.modifySeat(request.getTicketId(), request.getIdempotencyKey());
       var response = ModifySeatResponse.newBuilder()
           .setNewSeatNumber(ticket.getSeat())
           .setSection(ticket.getSection())
+          .setCoach(ticket.getCoach())
           .setTickerId(ticket.getId()).build();
-      logger.info("Successfully modified seat for ticket: {}", request.getTicketId());
+      logger.debug("Successfully modified seat for ticket: {}", request.getTicketId());
       responseObserver.onNext(response);
       responseObserver.onCompleted();
     } catch (SeatUnavailableException e) {
-      logger.error("Seat unavailable during modifySeat: {}", e.getMessage());
+      logger.debug("Seat unavailable during modifySeat: {}", e.getMessage());
       responseObserver.onError(new StatusRuntimeException(Status.UNAVAILABLE.withDescription(e.getMessage())));
     } catch (TicketNotFoundException e) {
       logger.warn("Ticket not found during modifySeat: {}", e.getMessage());
@@ -148,4 +344,67 @@ public class TicketServer extends TrainBookingServiceGrpc.TrainBookingServiceImp
     }
   }
 
+  @Override
+  public void holdSeat(HoldSeatRequest request, StreamObserver<HoldSeatResponse> responseObserver) {
+    try {
+      HoldService.Hold hold = holdService.hold(request);
+      responseObserver.onNext(HoldSeatResponse.newBuilder()
+          .setHoldId(hold.getId())
+          .setSection(Util.toProto(hold.getSeat().getSection()))
+          .setSeat(hold.getSeat().getSeatNumber())
+          .setCoach(hold.getSeat().getCoach())
+          .setExpiresAtMillis(hold.getExpiresAtMillis())
+          .build());
+      responseObserver.onCompleted();
+    } catch (IllegalArgumentException e) {
+      logger.warn("Invalid hold request: {}", e.getMessage());
+      responseObserver.onError(new StatusRuntimeException(Status.INVALID_ARGUMENT.withDescription(e.getMessage())));
+    } catch (AdmissionRejectedException e) {
+      responseObserver.onError(new StatusRuntimeException(Status.RESOURCE_EXHAUSTED.withDescription(e.getMessage())));
+    } catch (SeatUnavailableException e) {
+      logger.debug("Seat unavailable during holdSeat: {}", e.getMessage());
+      responseObserver.onError(new StatusRuntimeException(Status.UNAVAILABLE.withDescription(e.getMessage())));
+    } catch (TrainNotFoundException e) {
+      logger.warn("Train not found: {}", e.getMessage());
+      responseObserver.onError(new StatusRuntimeException(Status.NOT_FOUND.withDescription(e.getMessage())));
+    } catch (Exception e) {
+      logger.error("Internal error during holdSeat: {}", e.getMessage(), e);
+      responseObserver.onError(new StatusRuntimeException(Status.INTERNAL.withDescription(e.getMessage())));
+    }
+  }
+
+  @Override
+  public void confirmHold(ConfirmHoldRequest request, StreamObserver<ConfirmHoldResponse> responseObserver) {
+    try {
+      String ticketId = holdService.confirm(request.getHoldId());
+      logger.debug("Confirmed hold {} as ticket {}", request.getHoldId(), ticketId);
+      responseObserver.onNext(ConfirmHoldResponse.newBuilder().setTicketId(ticketId).build());
+      responseObserver.onCompleted();
+    } catch (HoldNotFoundException e) {
+      logger.warn("Hold not found during confirmHold: {}", e.getMessage());
+      responseObserver.onError(new StatusRuntimeException(Status.NOT_FOUND.withDescription(e.getMessage())));
+    } catch (Exception e) {
+      logger.error("Internal error during confirmHold: {}", e.getMessage(), e);
+      responseObserver.onError(new StatusRuntimeException(Status.INTERNAL.withDescription(e.getMessage())));
+    }
+  }
+
+  @Override
+  public void releaseHold(ReleaseHoldRequest request, StreamObserver<ReleaseHoldResponse> responseObserver) {
+    try {
+      boolean released = holdService.release(request.getHoldId());
+      responseObserver.onNext(ReleaseHoldResponse.newBuilder().setReleased(released).build());
+      responseObserver.onCompleted();
+    } catch (Exception e) {
+      logger.error("Internal error during releaseHold: {}", e.getMessage(), e);
+      responseObserver.onError(new StatusRuntimeException(Status.INTERNAL.withDescription(e.getMessage())));
+    }
+  }
+
+  @Override
+  public StreamObserver<BookingCommand> bookingChannel(StreamObserver<BookingResult> responseObserver) {
+    logger.debug("Opened bookingChannel stream");
+    return new BookingChannel(ticketService, bookingExecutor, responseObserver);
+  }
+
 }
@@ -0,0 +1,145 @@
+package com.ravi.booking.service;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.ravi.booking.exception.AdmissionRejectedException;
+import com.ravi.booking.exception.SeatUnavailableException;
+import com.ravi.booking.model.Section;
+import com.ravi.booking.repository.TrainInventory;
+
+/**
+ * Waiting room in front of the seat inventory of each train run.
+ *
+ * At most {@code concurrency} bookings per run search for seats at once; the others wait in
+ * arrival order on a fair semaphore, for up to {@code queueTimeout}. A permit covers only the
+ * seat search, so callers close it as soon as their seats are claimed. A booking is turned
+ * away with {@link AdmissionRejectedException} when the queue is full, and as soon as the
+ * waiting bookings ask for more seats than could still hold their journey, since the extra
+ * ones cannot succeed. A whole-route journey needs a free seat; a partial one can also go on
+ * a partly sold seat, so for it free and partly sold seats are counted.
+ *
+ * Once a search finds no seat for a journey, later bookings for that journey fail with
+ * {@link SeatUnavailableException} without touching the inventory, until a seat of the run
+ * is released again.
+ */
+@Component
+public class AdmissionController {
+
+  private final int concurrency;
+  private final int maxQueue;
+  private final long queueTimeoutNanos;
+  private final Map<TrainInventory, Gate> gates = new ConcurrentHashMap<>();
+
+  public AdmissionController(@Value("${booking.admission.concurrency:64}") int concurrency,
+      @Value("${booking.admission.max-queue:1000}") int maxQueue,
+      @Value("${booking.admission.queue-timeout:PT1S}") Duration queueTimeout) {
+    this.concurrency = concurrency;
+    this.maxQueue = maxQueue;
+    this.queueTimeoutNanos = queueTimeout.toNanos();
+  }
+
+  /**
+   * The right to search one run's inventory, held until closed.
+   */
+  public final class Permit implements AutoCloseable {
+    private final Gate gate;
+    private final long legMask;
+    private final long releaseCount;
+    private final int seats;
+
+    private Permit(Gate gate, long legMask, long releaseCount, int seats) {
+      this.gate = gate;
+      this.legMask = legMask;
+      this.releaseCount = releaseCount;
+      this.seats = seats;
+    }
+
+    /**
+     * Records that no seat was found for this permit's journey.
+     */
+    public void soldOut() {
+      gate.soldOut.put(legMask, releaseCount);
+    }
+
+    @Override
+    public void close() {
+      gate.permits.release();
+      gate.pending.decrementAndGet();
+      gate.demand.addAndGet(-seats);
+    }
+  }
+
+  private static final class Gate {
+    private final Semaphore permits;
+    private final AtomicInteger pending = new AtomicInteger();
+    // Seats asked for by the pending bookings
+    private final AtomicInteger demand = new AtomicInteger();
+    // Journey leg mask -> the run's release count when it was found sold out
+    private final Map<Long, Long> soldOut = new ConcurrentHashMap<>();
+
+    private Gate(int concurrency) {
+      this.permits = new Semaphore(concurrency, true);
+    }
+  }
+
+  public Permit admit(TrainInventory inventory, long legMask) {
+    return admit(inventory, legMask, 1);
+  }
+
+  /**
+   * Admits a booking of {@code seats} seats for the given journey.
+   */
+  public Permit admit(TrainInventory inventory, long legMask, int seats) {
+    Gate gate = gates.computeIfAbsent(inventory, run -> new Gate(concurrency));
+    // Read before the search, so that a release during it clears the sold-out mark
+    long releaseCount = inventory.getReleaseCount();
+    Long soldOutAt = gate.soldOut.get(legMask);
+    if (soldOutAt != null && soldOutAt == releaseCount) {
+      throw new SeatUnavailableException("Sold out for this journey on train " + inventory.getTrainId());
+    }
+    int pending = gate.pending.incrementAndGet();
+    int demand = gate.demand.addAndGet(seats);
+    boolean admitted = false;
+    try {
+      if (pending > concurrency + maxQueue) {
+        throw new AdmissionRejectedException("Booking queue for train " + inventory.getTrainId() + " is full");
+      }
+      int candidates = 0;
+      for (Section section : Section.values()) {
+        candidates += inventory.getFreeSeats(section);
+      }
+      if (legMask != inventory.getTopology().getRouteMask()) {
+        candidates += inventory.getPartlySoldSeats();
+      }
+      if (candidates == 0) {
+        gate.soldOut.put(legMask, releaseCount);
+        throw new SeatUnavailableException("Sold out for this journey on train " + inventory.getTrainId());
+      }
+      if (demand > candidates) {
+        throw new AdmissionRejectedException("More bookings are waiting than seats are left on train "
+            + inventory.getTrainId());
+      }
+      if (!gate.permits.tryAcquire(queueTimeoutNanos, TimeUnit.NANOSECONDS)) {
+        throw new AdmissionRejectedException("Timed out waiting for a booking slot on train " + inventory.getTrainId());
+      }
+      admitted = true;
+      return new Permit(gate, legMask, releaseCount, seats);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new AdmissionRejectedException("Interrupted while waiting for a booking slot");
+    } finally {
+      if (!admitted) {
+        gate.pending.decrementAndGet();
+        gate.demand.addAndGet(-seats);
+      }
+    }
+  }
+}
@@ -0,0 +1,155 @@
+package com.ravi.booking.service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Runs tasks after a delay, to a precision of one tick, at a cost that does not grow with the
+ * number of pending tasks.
+ *
+ * The wheel is a ring of buckets, one per tick. A task goes into the bucket its deadline
+ * falls in, with the number of full turns of the wheel still to wait. Each tick a single
+ * worker thread visits one bucket, runs the tasks whose turn has come and counts down the
+ * rest. Scheduling is a lock-free enqueue that the worker moves into the wheel on its next
+ * tick, and cancelling only flags the task, which the worker drops when it reaches it. Tasks
+ * run on the worker thread and must be short.
+ */
+final class HashedTimerWheel implements AutoCloseable {
+
+  private static final Logger logger = LoggerFactory.getLogger(HashedTimerWheel.class);
+
+  private static final int MAX_TRANSFERS_PER_TICK = 100_000;
+
+  private static final int PENDING = 0;
+  private static final int CANCELLED = 1;
+  private static final int EXPIRED = 2;
+
+  /**
+   * A scheduled task.
+   */
+  interface Timeout {
+    /**
+     * Stops the task from running.
+     *
+     * @return false if it has already run or been cancelled
+     */
+    boolean cancel();
+  }
+
+  private final long tickNanos;
+  private final List<Task>[] wheel;
+  private final int mask;
+  private final Queue<Task> incoming = new ConcurrentLinkedQueue<>();
+  private final long startTime;
+  private final Thread worker;
+  private volatile boolean running = true;
+  private long tick;
+
+  @SuppressWarnings("unchecked")
+  HashedTimerWheel(Duration tickDuration, int ticksPerWheel, String name) {
+    if (Integer.bitCount(ticksPerWheel) != 1) {
+      throw new IllegalArgumentException("ticksPerWheel must be a power of two");
+    }
+    this.tickNanos = tickDuration.toNanos();
+    this.wheel = new List[ticksPerWheel];
+    for (int i = 0; i < ticksPerWheel; i++) {
+      wheel[i] = new ArrayList<>();
+    }
+    this.mask = ticksPerWheel - 1;
+    this.startTime = System.nanoTime();
+    this.worker = new Thread(this::run, name);
+    worker.setDaemon(true);
+    worker.start();
+  }
+
+  Timeout schedule(Runnable action, long delay, TimeUnit unit) {
+    Task task = new Task(action, System.nanoTime() - startTime + unit.toNanos(delay));
+    incoming.add(task);
+    return task;
+  }
+
+  @Override
+  public void close() {
+    running = false;
+    worker.interrupt();
+  }
+
+  private void run() {
+    while (running) {
+      long deadline = (tick + 1) * tickNanos;
+      long sleep;
+      while (running && (sleep = deadline - (System.nanoTime() - startTime)) > 0) {
+        LockSupport.parkNanos(this, sleep);
+      }
+      if (!running) {
+        return;
+      }
+      transferIncoming();
+      expire(wheel[(int) (tick & mask)]);
+      tick++;
+    }
+  }
+
+  private void transferIncoming() {
+    for (int i = 0; i < MAX_TRANSFERS_PER_TICK; i++) {
+      Task task = incoming.poll();
+      if (task == null) {
+        return;
+      }
+      if (task.state.get() != PENDING) {
+        continue;
+      }
+      long due = task.deadline / tickNanos;
+      task.remainingRounds = (due - tick) / wheel.length;
+      // A task that is already due runs on the current tick
+      wheel[(int) (Math.max(due, tick) & mask)].add(task);
+    }
+  }
+
+  private void expire(List<Task> bucket) {
+    int kept = 0;
+    for (int i = 0; i < bucket.size(); i++) {
+      Task task = bucket.get(i);
+      if (task.state.get() != PENDING) {
+        continue;
+      }
+      if (task.remainingRounds > 0) {
+        task.remainingRounds--;
+        bucket.set(kept++, task);
+      } else if (task.state.compareAndSet(PENDING, EXPIRED)) {
+        try {
+          task.action.run();
+        } catch (RuntimeException e) {
+          logger.error("Timer task failed", e);
+        }
+      }
+    }
+    bucket.subList(kept, bucket.size()).clear();
+  }
+
+  private static final class Task implements Timeout {
+    private final Runnable action;
+    private final long deadline;
+    private final AtomicInteger state = new AtomicInteger(PENDING);
+    private long remainingRounds;
+
+    private Task(Runnable action, long deadline) {
+      this.action = action;
+      this.deadline = deadline;
+    }
+
+    @Override
+    public boolean cancel() {
+      return state.compareAndSet(PENDING, CANCELLED);
+    }
+  }
+}
@@ -0,0 +1,183 @@
+package com.ravi.booking.service;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.ravi.model.HoldSeatRequest;
+import org.ravi.model.User;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.ravi.booking.Util.Util;
+import com.ravi.booking.exception.HoldNotFoundException;
+import com.ravi.booking.model.SeatAssignment;
+import com.ravi.booking.model.UserEntity;
+import com.ravi.booking.repository.TrainInventory;
+
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Seat holds for two-step checkout.
+ *
+ * A hold claims its seat in the inventory straight away, so nobody else can book it, and is
+ * turned into a ticket by {@link #confirm} or given up by {@link #release}. Holds that are
+ * neither confirmed nor released are expired by a {@link HashedTimerWheel}, which releases
+ * their seats within one tick of the deadline. Confirm, release and expiry race for the
+ * hold's state with a compare-and-set, so exactly one of them takes effect.
+ */
+@Service
+public class HoldService {
+
+  private static final Logger logger = LoggerFactory.getLogger(HoldService.class);
+
+  private static final int HELD = 0;
+  private static final int CONFIRMED = 1;
+  private static final int RELEASED = 2;
+  private static final int EXPIRED = 3;
+
+  private final TicketService ticketService;
+  private final AdmissionController admission;
+  private final Duration defaultDuration;
+  private final Duration maxDuration;
+  private final Map<String, Hold> holds = new ConcurrentHashMap<>();
+  private final HashedTimerWheel expiry;
+
+  public HoldService(TicketService ticketService, AdmissionController admission,
+      @Value("${booking.hold.default-duration:PT5M}") Duration defaultDuration,
+      @Value("${booking.hold.max-duration:PT15M}") Duration maxDuration,
+      @Value("${booking.hold.tick:PT0.1S}") Duration tick) {
+    this.ticketService = ticketService;
+    this.admission = admission;
+    this.defaultDuration = defaultDuration;
+    this.maxDuration = maxDuration;
+    this.expiry = new HashedTimerWheel(tick, 4096, "hold-expiry");
+  }
+
+  @PreDestroy
+  public void stop() {
+    expiry.close();
+  }
+
+  /**
+   * A held seat.
+   */
+  public static final class Hold {
+    private final String id = Util.newId();
+    private final User user;
+    private final String from;
+    private final String to;
+    private final TrainInventory inventory;
+    private final SeatAssignment seat;
+    private final long legMask;
+    private final long expiresAtMillis;
+    private final AtomicInteger state = new AtomicInteger(HELD);
+    private volatile HashedTimerWheel.Timeout timeout;
+
+    private Hold(User user, String from, String to, TrainInventory inventory, SeatAssignment seat, long legMask,
+        long expiresAtMillis) {
+      this.user = user;
+      this.from = from;
+      this.to = to;
+      this.inventory = inventory;
+      this.seat = seat;
+      this.legMask = legMask;
+      this.expiresAtMillis = expiresAtMillis;
+    }
+
+    public String getId() {
+      return id;
+    }
+
+    public SeatAssignment getSeat() {
+      return seat;
+    }
+
+    public long getExpiresAtMillis() {
+      return expiresAtMillis;
+    }
+  }
+
+  public Hold hold(HoldSeatRequest request) {
+    TrainInventory inventory = ticketService.resolveInventory(request.getTrainId(),
+        ticketService.parseServiceDate(request.getServiceDate()));
+    long legMask = inventory.getTopology().legMask(request.getJourney().getFrom(), request.getJourney().getTo());
+    SeatAssignment seat;
+    try (AdmissionController.Permit permit = admission.admit(inventory, legMask)) {
+      seat = ticketService.findAvailableSeat(inventory, ticketService.determineSection(), legMask, permit);
+    }
+    Duration duration = request.getHoldSeconds() <= 0
+        ? defaultDuration
+        : Duration.ofSeconds(Math.min(request.getHoldSeconds(), maxDuration.getSeconds()));
+    Hold hold = new Hold(request.getUser(), request.getJourney().getFrom(), request.getJourney().getTo(),
+        inventory, seat, legMask, System.currentTimeMillis() + duration.toMillis());
+    holds.put(hold.id, hold);
+    hold.timeout = expiry.schedule(() -> expire(hold), duration.toNanos(), TimeUnit.NANOSECONDS);
+    logger.debug("Held seat {} in coach {} as {}", seat.getSeatNumber(), seat.getCoach(), hold.id);
+    return hold;
+  }
+
+  /**
+   * Books the held seat.
+   *
+   * @return the ticket id
+   * @throws HoldNotFoundException if the hold is unknown, has lapsed or was released
+   */
+  public String confirm(String holdId) {
+    Hold hold = take(holdId, CONFIRMED);
+    UserEntity user;
+    try {
+      user = ticketService.findOrCreateUser(hold.user);
+    } catch (RuntimeException e) {
+      hold.inventory.release(hold.seat, hold.legMask);
+      throw e;
+    }
+    return ticketService.issueTicket(user, hold.inventory, hold.seat, hold.legMask,
+        ticketService.getPrice(hold.seat.getSection()), hold.from, hold.to);
+  }
+
+  /**
+   * Gives the held seat back.
+   *
+   * @return false if the hold is unknown, has lapsed or was already released or confirmed
+   */
+  public boolean release(String holdId) {
+    try {
+      Hold hold = take(holdId, RELEASED);
+      hold.inventory.release(hold.seat, hold.legMask);
+      return true;
+    } catch (HoldNotFoundException e) {
+      return false;
+    }
+  }
+
+  int activeHolds() {
+    return holds.size();
+  }
+
+  private Hold take(String holdId, int outcome) {
+    Hold hold = holdId == null ? null : holds.get(holdId);
+    // A lapsed hold stays HELD until the wheel reaches it, but can no longer be taken
+    if (hold == null || System.currentTimeMillis() >= hold.expiresAtMillis
+        || !hold.state.compareAndSet(HELD, outcome)) {
+      throw new HoldNotFoundException("Hold " + holdId + " not found or no longer active");
+    }
+    holds.remove(holdId, hold);
+    if (hold.timeout != null) {
+      hold.timeout.cancel();
+    }
+    return hold;
+  }
+
+  private void expire(Hold hold) {
+    if (hold.state.compareAndSet(HELD, EXPIRED)) {
+      holds.remove(hold.id, hold);
+      hold.inventory.release(hold.seat, hold.legMask);
+      logger.debug("Hold {} expired", hold.id);
+    }
+  }
+}
@@ -0,0 +1,112 @@
+package com.ravi.booking.service;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Remembers the result of an operation by idempotency key for a fixed time, holding at most
+ * {@code maxEntries} keys.
+ *
+ * The first call with a key runs the operation; calls with the same key that arrive while
+ * it runs wait for it, and later ones get its result without running anything. Failures are
+ * not remembered, so a retry after a failed attempt runs the operation again. Every entry
+ * lives for the same time, so the insertion queue is also the expiry queue and eviction only
+ * ever looks at its head.
+ *
+ * Entries that failed or were replaced after expiring stay in the queue until they reach its
+ * head. The capacity bounds the queue rather than the map, so such dead entries count
+ * against it and a stream of failing keys cannot grow the queue without bound.
+ *
+ * An entry whose operation is still running is never evicted, since a retry of its key
+ * would then run the operation a second time. Eviction stops at such an entry, so the cache
+ * can briefly hold more than {@code maxEntries} keys while it runs.
+ */
+final class IdempotencyCache<V> {
+
+  private final long ttlNanos;
+  private final int maxEntries;
+  private final LongSupplier clock;
+  private final Map<String, Entry<V>> entries = new ConcurrentHashMap<>();
+  private final ConcurrentLinkedQueue<Entry<V>> order = new ConcurrentLinkedQueue<>();
+  // Length of order; ConcurrentLinkedQueue.size() walks the whole queue
+  private final AtomicInteger queued = new AtomicInteger();
+
+  IdempotencyCache(Duration ttl, int maxEntries) {
+    this(ttl, maxEntries, System::nanoTime);
+  }
+
+  IdempotencyCache(Duration ttl, int maxEntries, LongSupplier clock) {
+    this.ttlNanos = ttl.toNanos();
+    this.maxEntries = maxEntries;
+    this.clock = clock;
+  }
+
+  V get(String key, Supplier<V> operation) {
+    long now = clock.getAsLong();
+    evict(now);
+    Entry<V> created = new Entry<>(key, now + ttlNanos);
+    Entry<V> existing;
+    while ((existing = entries.putIfAbsent(key, created)) != null && existing.expiresAt - now <= 0
+        && existing.result.isDone()) {
+      entries.remove(key, existing);
+    }
+    if (existing != null) {
+      try {
+        return existing.result.join();
+      } catch (CompletionException e) {
+        throw e.getCause() instanceof RuntimeException cause ? cause : e;
+      }
+    }
+    order.add(created);
+    queued.incrementAndGet();
+    try {
+      V value = operation.get();
+      created.result.complete(value);
+      return value;
+    } catch (RuntimeException e) {
+      entries.remove(key, created);
+      created.result.completeExceptionally(e);
+      throw e;
+    }
+  }
+
+  int size() {
+    return entries.size();
+  }
+
+  /**
+   * Returns the number of entries in the eviction queue, including dead ones.
+   */
+  int queued() {
+    return queued.get();
+  }
+
+  private void evict(long now) {
+    Entry<V> head;
+    while ((head = order.peek()) != null && head.result.isDone()
+        && (head.expiresAt - now <= 0 || queued.get() >= maxEntries)) {
+      if (order.remove(head)) {
+        queued.decrementAndGet();
+        entries.remove(head.key, head);
+      }
+    }
+  }
+
+  private static final class Entry<V> {
+    private final String key;
+    private final long expiresAt;
+    private final CompletableFuture<V> result = new CompletableFuture<>();
+
+    private Entry(String key, long expiresAt) {
+      this.key = key;
+      this.expiresAt = expiresAt;
+    }
+  }
+}
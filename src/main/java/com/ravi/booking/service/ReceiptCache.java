@@ -0,0 +1,230 @@
+package com.ravi.booking.service;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+
+/**
+ * Read-through cache of serialized receipts by ticket id, holding at most
+ * {@code maxEntries} of them.
+ *
+ * Eviction follows W-TinyLFU. New entries go into a small LRU window; an entry pushed out of
+ * the window only displaces the least recently used entry of the main region if it has been
+ * asked for more often, as estimated by a count-min sketch of 4-bit counters that is halved
+ * periodically so old popularity fades. A burst of one-off lookups therefore cannot flush
+ * the receipts that are read over and over.
+ *
+ * Hits are served from a concurrent map without locking. Recording the access is lossy: it
+ * is skipped when another thread holds the lock, which only blurs the estimates a little.
+ * A load that overlaps an {@link #invalidate} is returned to its caller but not cached, so a
+ * receipt read before a change can never be stored after it.
+ */
+final class ReceiptCache {
+
+  private final int maxEntries;
+  private final int windowMax;
+  private final Map<String, Node> entries = new ConcurrentHashMap<>();
+  private final ReentrantLock lock = new ReentrantLock();
+  private final AtomicLong invalidations = new AtomicLong();
+  private final FrequencySketch sketch;
+
+  // Sentinels of the two circular LRU lists, least recently used first
+  private final Node window = new Node(null, null);
+  private final Node main = new Node(null, null);
+  private int windowSize;
+  private int mainSize;
+
+  ReceiptCache(int maxEntries) {
+    if (maxEntries <= 0) {
+      throw new IllegalArgumentException("maxEntries must be positive");
+    }
+    this.maxEntries = maxEntries;
+    this.windowMax = Math.max(1, maxEntries / 100);
+    this.sketch = new FrequencySketch(maxEntries);
+  }
+
+  /**
+   * Returns the cached value for the key, loading it on a miss. Exceptions from the loader
+   * propagate and nothing is cached.
+   */
+  byte[] get(String key, Function<String, byte[]> loader) {
+    Node node = entries.get(key);
+    if (node != null) {
+      recordHit(node);
+      return node.value;
+    }
+    long seen = invalidations.get();
+    byte[] value = loader.apply(key);
+    put(key, value, seen);
+    return value;
+  }
+
+  void invalidate(String key) {
+    invalidations.incrementAndGet();
+    lock.lock();
+    try {
+      Node node = entries.remove(key);
+      if (node != null) {
+        unlink(node);
+      }
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  int size() {
+    return entries.size();
+  }
+
+  private void recordHit(Node node) {
+    if (!lock.tryLock()) {
+      return;
+    }
+    try {
+      sketch.increment(node.key);
+      if (node.prev != null) {
+        unlink(node);
+        append(node.inWindow ? window : main, node);
+      }
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  private void put(String key, byte[] value, long seen) {
+    lock.lock();
+    try {
+      sketch.increment(key);
+      if (invalidations.get() != seen || entries.containsKey(key)) {
+        return;
+      }
+      Node node = new Node(key, value);
+      entries.put(key, node);
+      node.inWindow = true;
+      append(window, node);
+      if (windowSize > windowMax) {
+        Node candidate = window.next;
+        unlink(candidate);
+        candidate.inWindow = false;
+        append(main, candidate);
+        if (windowSize + mainSize > maxEntries) {
+          Node victim = main.next;
+          // Ties go against the newcomer, which has the least history behind it
+          evict(victim != candidate && sketch.frequency(candidate.key) > sketch.frequency(victim.key)
+              ? victim : candidate);
+        }
+      }
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  private void evict(Node node) {
+    entries.remove(node.key, node);
+    unlink(node);
+  }
+
+  private void append(Node list, Node node) {
+    node.prev = list.prev;
+    node.next = list;
+    list.prev.next = node;
+    list.prev = node;
+    if (node.inWindow) {
+      windowSize++;
+    } else {
+      mainSize++;
+    }
+  }
+
+  private void unlink(Node node) {
+    node.prev.next = node.next;
+    node.next.prev = node.prev;
+    node.prev = null;
+    node.next = null;
+    if (node.inWindow) {
+      windowSize--;
+    } else {
+      mainSize--;
+    }
+  }
+
+  private static final class Node {
+    final String key;
+    final byte[] value;
+    // Guarded by the lock; prev is null once the node has left the lists
+    Node prev;
+    Node next;
+    boolean inWindow;
+
+    Node(String key, byte[] value) {
+      this.key = key;
+      this.value = value;
+      if (key == null) {
+        prev = this;
+        next = this;
+      }
+    }
+  }
+
+  /**
+   * Count-min sketch with four 4-bit counters per key, packed sixteen to a long. After ten
+   * increments per cached entry every counter is halved.
+   */
+  private static final class FrequencySketch {
+    private static final long[] SEEDS = {
+        0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L};
+
+    private final long[] table;
+    private final int sampleSize;
+    private int additions;
+
+    FrequencySketch(int maxEntries) {
+      // About sixteen counters per entry keeps collisions from inflating estimates
+      this.table = new long[Integer.highestOneBit(Math.max(maxEntries, 16) - 1) << 1];
+      this.sampleSize = 10 * Math.max(maxEntries, 16);
+    }
+
+    int frequency(String key) {
+      int hash = spread(key.hashCode());
+      int frequency = 15;
+      for (int i = 0; i < 4; i++) {
+        int index = index(hash, i);
+        frequency = Math.min(frequency, (int) ((table[index >>> 4] >>> ((index & 15) << 2)) & 15));
+      }
+      return frequency;
+    }
+
+    void increment(String key) {
+      int hash = spread(key.hashCode());
+      boolean added = false;
+      for (int i = 0; i < 4; i++) {
+        int index = index(hash, i);
+        int shift = (index & 15) << 2;
+        long word = table[index >>> 4];
+        if (((word >>> shift) & 15) != 15) {
+          table[index >>> 4] = word + (1L << shift);
+          added = true;
+        }
+      }
+      if (added && ++additions >= sampleSize) {
+        for (int i = 0; i < table.length; i++) {
+          table[i] = (table[i] >>> 1) & 0x7777777777777777L;
+        }
+        additions >>>= 1;
+      }
+    }
+
+    private int index(int hash, int depth) {
+      long h = (hash + SEEDS[depth]) * SEEDS[depth];
+      h ^= h >>> 32;
+      return (int) h & ((table.length << 4) - 1);
+    }
+
+    private static int spread(int hash) {
+      hash *= 0x9E3779B9;
+      return hash ^ (hash >>> 16);
+    }
+  }
+}
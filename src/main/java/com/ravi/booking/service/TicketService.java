@@ -1,117 +1,358 @@
 package com.ravi.booking.service;
 
+import com.ravi.booking.Util.ProtoWriter;
 import com.ravi.booking.Util.Util;
+import com.ravi.booking.exception.AdmissionRejectedException;
 import com.ravi.booking.exception.SeatUnavailableException;
 import com.ravi.booking.exception.TicketNotFoundException;
+import com.ravi.booking.exception.TrainNotFoundException;
+import com.ravi.booking.metrics.BookingMetrics;
+import com.ravi.booking.metrics.BookingMetrics.Stage;
 import com.ravi.booking.model.SeatAssignment;
 import com.ravi.booking.model.Section;
 import com.ravi.booking.model.TicketEntity;
 import com.ravi.booking.model.UserEntity;
+import com.ravi.booking.repository.SeatInventoryRepository;
 import com.ravi.booking.repository.TicketRepository;
+import com.ravi.booking.repository.TicketStore;
+import com.ravi.booking.repository.TrainInventory;
 import com.ravi.booking.repository.UserRepository;
-import com.ravi.booking.strategy.RandomStrategy;
 import com.ravi.booking.strategy.SeatSelectionStrategy;
 import org.ravi.model.*;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
-import java.util.Optional;
-import java.util.Random;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.locks.ReentrantLock;
 
+/**
+ * Booking operations over the user, ticket and seat repositories.
+ *
+ * Seats are claimed and released with atomic compare-and-set on the seat inventory, so two
+ * bookings can never hold the same seat. What needs a transaction boundary is the step from
+ * a claimed seat to a stored ticket: every operation that changes an existing ticket runs
+ * under that ticket's lock, taken from a fixed set of striped locks, and undoes its seat
+ * claims if it fails. Operations on different tickets, sections and trains run in parallel.
+ */
 @Service
 public class TicketService {
 
   private static final Logger logger = LoggerFactory.getLogger(TicketService.class);
 
+  static final int MAX_GROUP_SIZE = 100;
+  private static final int TICKET_LOCK_STRIPES = 1024;
+  static final Duration IDEMPOTENCY_TTL = Duration.ofMinutes(10);
+  static final int IDEMPOTENCY_MAX_ENTRIES = 100_000;
+  static final int RECEIPT_CACHE_ENTRIES = 100_000;
+  private static final int DEFAULT_ADMISSION_CONCURRENCY = 64;
+  private static final int DEFAULT_ADMISSION_QUEUE = 1000;
+  private static final Duration DEFAULT_ADMISSION_TIMEOUT = Duration.ofSeconds(1);
+
   private final UserRepository userRepository;
   private final TicketRepository ticketRepository;
   private final SeatSelectionStrategy selectionStrategy;
+  private final SeatInventoryRepository inventoryRepository;
+  private final BookingMetrics metrics;
+  private final AdmissionController admission;
+  private final ReentrantLock[] ticketLocks = new ReentrantLock[TICKET_LOCK_STRIPES];
+  private final IdempotencyCache<String> purchases = new IdempotencyCache<>(IDEMPOTENCY_TTL, IDEMPOTENCY_MAX_ENTRIES);
+  private final IdempotencyCache<Ticket> seatChanges = new IdempotencyCache<>(IDEMPOTENCY_TTL, IDEMPOTENCY_MAX_ENTRIES);
+  private final ReceiptCache receipts = new ReceiptCache(RECEIPT_CACHE_ENTRIES);
+
+  public TicketService(UserRepository userRepository, TicketRepository ticketRepository,
+      SeatSelectionStrategy selectionStrategy, SeatInventoryRepository inventoryRepository) {
+    this(userRepository, ticketRepository, selectionStrategy, inventoryRepository, BookingMetrics.unregistered(),
+        new AdmissionController(DEFAULT_ADMISSION_CONCURRENCY, DEFAULT_ADMISSION_QUEUE, DEFAULT_ADMISSION_TIMEOUT));
+  }
 
-  public TicketService(UserRepository userRepository, TicketRepository ticketRepository) {
+  @Autowired
+  public TicketService(UserRepository userRepository, TicketRepository ticketRepository,
+      SeatSelectionStrategy selectionStrategy, SeatInventoryRepository inventoryRepository,
+      BookingMetrics metrics, AdmissionController admission) {
     this.userRepository = userRepository;
     this.ticketRepository = ticketRepository;
-    this.selectionStrategy = new RandomStrategy();
-  }
-
-  private UserEntity findOrCreateUser(PurchaseTicketRequest request) {
-    logger.info("Finding or creating user with email: {}", request.getUser().getEmail());
-    return Optional.ofNullable(userRepository.findByEmail(request.getUser().getEmail()))
-        .orElseGet(() -> {
-          UserEntity newUser = new UserEntity(
-              request.getUser().getLastName(),
-              request.getUser().getFirstName(),
-              request.getUser().getEmail()
-          );
-          logger.info("User not found, creating new user: {}", newUser);
-          return userRepository.save(newUser);
-        });
-  }
-
-  private Section determineSection() {
-    Section section = new Random().nextBoolean() ? Section.A : Section.B;
-    logger.info("Determined section: {}", section);
+    this.selectionStrategy = selectionStrategy;
+    this.inventoryRepository = inventoryRepository;
+    this.metrics = metrics;
+    this.admission = admission;
+    for (int i = 0; i < TICKET_LOCK_STRIPES; i++) {
+      ticketLocks[i] = new ReentrantLock();
+    }
+  }
+
+  private ReentrantLock ticketLock(String ticketId) {
+    int hash = ticketId == null ? 0 : ticketId.hashCode();
+    return ticketLocks[(hash ^ (hash >>> 16)) & (TICKET_LOCK_STRIPES - 1)];
+  }
+
+  UserEntity findOrCreateUser(User user) {
+    logger.debug("Finding or creating user");
+    return metrics.time(Stage.USER_RESOLUTION, () -> userRepository.findOrCreate(user.getEmail(), () -> {
+      UserEntity newUser = new UserEntity(
+          user.getLastName(),
+          user.getFirstName(),
+          user.getEmail()
+      );
+      logger.debug("User not found, creating new user: {}", newUser);
+      return newUser;
+    }));
+  }
+
+  Section determineSection() {
+    Section section = ThreadLocalRandom.current().nextBoolean() ? Section.A : Section.B;
+    logger.debug("Determined section: {}", section);
     return section;
   }
 
-  private SeatAssignment findAvailableSeat(Section section) {
-    logger.info("Finding available seat in section: {}", section);
-    int seatNumber = selectionStrategy.selectSeat(section, ticketRepository.getAllocatedSeats(section));
-    if (seatNumber == -1) {
-      logger.info("No seats available in section: {}, checking other section.", section);
+  LocalDate parseServiceDate(String serviceDate) {
+    if (serviceDate == null || serviceDate.isEmpty()) {
+      return null;
+    }
+    try {
+      return LocalDate.parse(serviceDate);
+    } catch (DateTimeParseException e) {
+      throw new IllegalArgumentException("Invalid service date: " + serviceDate);
+    }
+  }
+
+  TrainInventory resolveInventory(String trainId, LocalDate serviceDate) {
+    String train = (trainId == null || trainId.isEmpty()) ? inventoryRepository.getDefaultTrainId() : trainId;
+    LocalDate date = serviceDate == null ? LocalDate.now() : serviceDate;
+    TrainInventory inventory = inventoryRepository.getInventory(train, date);
+    if (inventory == null) {
+      logger.error("Train {} is not configured", train);
+      throw new TrainNotFoundException("Train " + train + " not found");
+    }
+    return inventory;
+  }
+
+  SeatAssignment findAvailableSeat(TrainInventory inventory, Section section, long legMask) {
+    return metrics.time(Stage.SEAT_SELECTION, () -> selectSeat(inventory, section, legMask));
+  }
+
+  /**
+   * Finds a seat for an admitted booking, telling the admission controller when there is
+   * none left for the journey.
+   */
+  SeatAssignment findAvailableSeat(TrainInventory inventory, Section section, long legMask,
+      AdmissionController.Permit permit) {
+    try {
+      return findAvailableSeat(inventory, section, legMask);
+    } catch (SeatUnavailableException e) {
+      permit.soldOut();
+      throw e;
+    }
+  }
+
+  private SeatAssignment selectSeat(TrainInventory inventory, Section section, long legMask) {
+    logger.debug("Finding available seat in section: {}", section);
+    SeatAssignment seatAssignment = inventory.allocate(section, selectionStrategy, legMask);
+    if (seatAssignment == null) {
+      logger.debug("No seats available in section: {}, checking other section.", section);
       Section otherSection = (section == Section.A) ? Section.B : Section.A;
-      seatNumber = selectionStrategy.selectSeat(otherSection, ticketRepository.getAllocatedSeats(otherSection));
-      if (seatNumber == -1) {
-        logger.error("No seats available in either section A or B");
+      seatAssignment = inventory.allocate(otherSection, selectionStrategy, legMask);
+      if (seatAssignment == null) {
+        logger.debug("No seats available in either section A or B");
         throw new SeatUnavailableException("No seats available in either section " + Section.A + " or " + Section.B);
       }
-      section = otherSection;
     }
-    logger.info("Seat found: {} in section: {}", seatNumber, section);
-    return new SeatAssignment(seatNumber, section);
+    logger.debug("Seat found: {} in coach: {}", seatAssignment.getSeatNumber(), seatAssignment.getCoach());
+    return seatAssignment;
   }
 
+  /**
+   * Books a ticket. A request that repeats the idempotency key of an earlier one from the
+   * same email within {@link #IDEMPOTENCY_TTL} gets the earlier ticket id back and does not
+   * touch the seat inventory.
+   */
   public String purchaseTicket(PurchaseTicketRequest request) {
-    logger.info("Initiating ticket purchase for user: {}", request.getUser().getEmail());
+    if (request.getIdempotencyKey().isEmpty()) {
+      return purchase(request);
+    }
+    return purchases.get(request.getUser().getEmail() + '\n' + request.getIdempotencyKey(), () -> purchase(request));
+  }
+
+  private String purchase(PurchaseTicketRequest request) {
+    logger.debug("Initiating ticket purchase on train: {}", request.getTrainId());
     try {
-      UserEntity user = findOrCreateUser(request);
+      TrainInventory inventory = resolveInventory(request.getTrainId(), parseServiceDate(request.getServiceDate()));
+      long legMask = inventory.getTopology().legMask(request.getJourney().getFrom(), request.getJourney().getTo());
       Section section = determineSection();
-      SeatAssignment seatAssignment = findAvailableSeat(section);
-      double price = getPrice(section);
-
-      TicketEntity ticket = new TicketEntity(user, price, seatAssignment.getSection(), seatAssignment.getSeatNumber(), request.getJourney().getTo(), request.getJourney().getFrom());
-      ticket = ticketRepository.save(ticket);
-
-      if (ticket == null) {
-        logger.error("Ticket not saved properly for user: {}", user.getEmail());
-        throw new RuntimeException("Ticket not saved properly.");
+      SeatAssignment seatAssignment;
+      // Hold the permit for the seat search only, not for the user lookup or the save
+      try (AdmissionController.Permit permit = admission.admit(inventory, legMask)) {
+        seatAssignment = findAvailableSeat(inventory, section, legMask, permit);
       }
-
-      user.setTicketEntities(ticket);
-      logger.info("Ticket successfully purchased: {}", ticket.getId());
-      return ticket.getId();  // Only return if ticket creation is successful
+      UserEntity user;
+      try {
+        user = findOrCreateUser(request.getUser());
+      } catch (RuntimeException e) {
+        inventory.release(seatAssignment, legMask);
+        throw e;
+      }
+      // Charge for the section the seat is in, which may not be the one asked for
+      String ticketId = issueTicket(user, inventory, seatAssignment, legMask,
+          getPrice(seatAssignment.getSection()), request.getJourney().getFrom(), request.getJourney().getTo());
+      logger.debug("Ticket successfully purchased: {}", ticketId);
+      return ticketId;  // Only return if ticket creation is successful
     } catch (SeatUnavailableException e) {
-      logger.error("Seat unavailable: {}", e.getMessage(), e);
+      // Expected once a train sells out, so kept cheap; the request log records it
+      logger.debug("Seat unavailable: {}", e.getMessage());
       throw e;  // Rethrow the specific exception
+    } catch (TrainNotFoundException | AdmissionRejectedException e) {
+      throw e;
     } catch (Exception e) {
-      logger.error("Error purchasing ticket for user: {}", request.getUser().getEmail(), e);
+      logger.error("Error purchasing ticket on train: {}", request.getTrainId(), e);
       throw new RuntimeException("Failed to purchase ticket: " + e.getMessage());
     }
   }
 
+  /**
+   * Stores a ticket for a seat the caller has already claimed. If the ticket cannot be
+   * stored, the repository has not kept any of it, so the seat is released before the
+   * exception propagates.
+   */
+  String issueTicket(UserEntity user, TrainInventory inventory, SeatAssignment seatAssignment, long legMask,
+      double price, String from, String to) {
+    TicketEntity ticket = new TicketEntity(user, price, seatAssignment.getSection(), seatAssignment.getSeatNumber(), to, from);
+    ticket.setTrainId(inventory.getTrainId());
+    ticket.setServiceDate(inventory.getServiceDate());
+    ticket.setCoach(seatAssignment.getCoach());
+    try {
+      save(ticket);
+    } catch (RuntimeException e) {
+      inventory.release(seatAssignment, legMask);
+      throw e;
+    }
+    user.setTicketEntities(ticket);
+    return ticket.getId();
+  }
+
+  private List<SeatAssignment> findAvailableSeats(TrainInventory inventory, Section section, int count, long legMask) {
+    return metrics.time(Stage.SEAT_SELECTION, () -> selectSeats(inventory, section, count, legMask));
+  }
+
+  private List<SeatAssignment> selectSeats(TrainInventory inventory, Section section, int count, long legMask) {
+    Section otherSection = (section == Section.A) ? Section.B : Section.A;
+    List<SeatAssignment> seats = inventory.allocateRun(section, count, legMask);
+    if (seats == null) {
+      seats = inventory.allocateRun(otherSection, count, legMask);
+    }
+    if (seats != null) {
+      logger.debug("Found {} adjacent seats in coach: {}", count, seats.get(0).getCoach());
+      return seats;
+    }
+    logger.debug("No {} adjacent seats left, allocating seats individually", count);
+    seats = new ArrayList<>(count);
+    for (int i = 0; i < count; i++) {
+      SeatAssignment seat = inventory.allocate(section, selectionStrategy, legMask);
+      if (seat == null) {
+        seat = inventory.allocate(otherSection, selectionStrategy, legMask);
+      }
+      if (seat == null) {
+        releaseSeats(inventory, seats, legMask);
+        logger.debug("Only {} of {} requested seats available", i, count);
+        throw new SeatUnavailableException("Only " + i + " of " + count + " requested seats available");
+      }
+      seats.add(seat);
+    }
+    return seats;
+  }
+
+  private void releaseSeats(TrainInventory inventory, List<SeatAssignment> seats, long legMask) {
+    for (SeatAssignment seat : seats) {
+      inventory.release(seat, legMask);
+    }
+  }
+
+  /**
+   * Books one ticket per user of the request, all or nothing. Seats are taken in one pass
+   * over the inventory, adjacent in a single coach when such a block is free.
+   *
+   * @return the ticket ids, in the order of the request's users
+   */
+  public List<String> purchaseTickets(PurchaseTicketsRequest request) {
+    int count = request.getUsersCount();
+    logger.debug("Initiating group purchase of {} tickets", count);
+    if (count == 0 || count > MAX_GROUP_SIZE) {
+      throw new IllegalArgumentException("A group booking must have between 1 and " + MAX_GROUP_SIZE + " users");
+    }
+    List<SeatAssignment> seats = null;
+    List<String> ticketIds = new ArrayList<>(count);
+    TrainInventory inventory = null;
+    long legMask = 0;
+    try {
+      inventory = resolveInventory(request.getTrainId(), parseServiceDate(request.getServiceDate()));
+      Map<String, UserEntity> users = new HashMap<>();
+      for (User user : request.getUsersList()) {
+        users.computeIfAbsent(user.getEmail(), email -> findOrCreateUser(user));
+      }
+      legMask = inventory.getTopology().legMask(request.getJourney().getFrom(), request.getJourney().getTo());
+      try (AdmissionController.Permit permit = admission.admit(inventory, legMask, count)) {
+        seats = findAvailableSeats(inventory, determineSection(), count, legMask);
+      }
+
+      for (int i = 0; i < count; i++) {
+        SeatAssignment seat = seats.get(i);
+        UserEntity user = users.get(request.getUsers(i).getEmail());
+        TicketEntity ticket = new TicketEntity(user, getPrice(seat.getSection()), seat.getSection(), seat.getSeatNumber(), request.getJourney().getTo(), request.getJourney().getFrom());
+        ticket.setTrainId(inventory.getTrainId());
+        ticket.setServiceDate(inventory.getServiceDate());
+        ticket.setCoach(seat.getCoach());
+        save(ticket);
+        ticketIds.add(ticket.getId());
+        user.setTicketEntities(ticket);
+      }
+      logger.debug("Group purchase of {} tickets successful", count);
+      return ticketIds;
+    } catch (SeatUnavailableException | TrainNotFoundException | AdmissionRejectedException e) {
+      // Expected outcomes, recorded by the request log
+      logger.debug("Group purchase failed: {}", e.getMessage());
+      throw e;
+    } catch (Exception e) {
+      logger.error("Error during group purchase of {} tickets", count, e);
+      // Undo whatever part of the booking went through. Deleting a stored ticket gives its
+      // seat back; a ticket that cannot be deleted is still stored and keeps its seat.
+      for (String ticketId : ticketIds) {
+        try {
+          ticketRepository.delete(ticketId);
+          receipts.invalidate(ticketId);
+        } catch (RuntimeException deleteFailure) {
+          logger.error("Could not roll back ticket {} of a failed group purchase", ticketId, deleteFailure);
+        }
+      }
+      // The seats from the failed save onwards were never stored with a ticket
+      if (seats != null) {
+        releaseSeats(inventory, seats.subList(ticketIds.size(), seats.size()), legMask);
+      }
+      throw new RuntimeException("Failed to purchase tickets: " + e.getMessage());
+    }
+  }
+
+  private TicketEntity save(TicketEntity ticket) {
+    return metrics.time(Stage.SAVE, () -> ticketRepository.save(ticket));
+  }
+
   public Ticket getReceipt(String ticketId) {
-    logger.info("Retrieving receipt for ticket ID: {}", ticketId);
+    logger.debug("Retrieving receipt for ticket ID: {}", ticketId);
     try {
       TicketEntity ticket = ticketRepository.findById(ticketId);
       if (ticket == null) {
-        logger.error("Ticket with ID {} not found", ticketId);
+        logger.debug("Ticket with ID {} not found", ticketId);
         throw new TicketNotFoundException("Ticket with ID " + ticketId + " not found");
       }
-      logger.info("Receipt retrieved successfully for ticket ID: {}", ticketId);
+      logger.debug("Receipt retrieved successfully for ticket ID: {}", ticketId);
       return Util.toProto(ticket);
     } catch (TicketNotFoundException e) {
-      logger.error("Ticket with ID {} not found", ticketId, e);
       throw e;  // Rethrow the specific exception
     } catch (Exception e) {
       logger.error("Error retrieving ticket receipt for ID: {}", ticketId, e);
@@ -119,30 +360,49 @@ public class TicketService {
     }
   }
 
+  /**
+   * Returns the receipt for a ticket as a serialized {@link GetReceiptResponse}, served from
+   * the receipt cache when the ticket has been read before. Changes to a ticket through this
+   * service invalidate its cached receipt.
+   */
+  public byte[] getReceiptBytes(String ticketId) {
+    return receipts.get(ticketId, id -> {
+      TicketEntity ticket = ticketRepository.findById(id);
+      if (ticket == null) {
+        throw new TicketNotFoundException("Ticket with ID " + id + " not found");
+      }
+      return ProtoWriter.receipt(ticket);
+    });
+  }
+
   public void removeUserBooking(String ticketId) {
-    logger.info("Removing booking for ticket ID: {}", ticketId);
+    logger.debug("Removing booking for ticket ID: {}", ticketId);
+    ReentrantLock lock = ticketLock(ticketId);
+    lock.lock();
     try {
       TicketEntity ticket = ticketRepository.findById(ticketId);
       if (ticket == null) {
-        logger.error("Ticket with ID {} not found", ticketId);
+        logger.debug("Ticket with ID {} not found", ticketId);
         throw new TicketNotFoundException("Ticket with ID " + ticketId + " not found");
       }
       ticketRepository.delete(ticketId);
-      logger.info("Successfully removed booking for ticket ID: {}", ticketId);
+      receipts.invalidate(ticketId);
+      logger.debug("Successfully removed booking for ticket ID: {}", ticketId);
     } catch (TicketNotFoundException e) {
-      logger.error("Ticket with ID {} not found", ticketId, e);
       throw e;  // Rethrow specific exception
     } catch (Exception e) {
       logger.error("Error removing user booking for ticket ID: {}", ticketId, e);
       throw new RuntimeException("Failed to remove user booking: " + e.getMessage());
+    } finally {
+      lock.unlock();
     }
   }
 
   public List<TicketEntity> getUsersList(Section section) {
-    logger.info("Retrieving users list for section: {}", section);
+    logger.debug("Retrieving users list for section: {}", section);
     try {
       List<TicketEntity> tickets = ticketRepository.findBySection(section);
-      logger.info("Users list retrieved successfully for section: {}", section);
+      logger.debug("Users list retrieved successfully for section: {}", section);
       return tickets;
     } catch (Exception e) {
       logger.error("Error getting users list for section: {}", section, e);
@@ -150,34 +410,83 @@ public class TicketService {
     }
   }
 
+  /**
+   * Visits the holder and seat of up to {@code limit} tickets of a section after the given
+   * position, without building the tickets.
+   *
+   * @return the position of the last ticket visited, which can be handed back to resume
+   *     from there, or {@code afterPosition} if none was
+   */
+  public long visitUsers(Section section, long afterPosition, int limit, TicketStore.SeatVisitor visitor) {
+    return ticketRepository.visitSection(section, afterPosition, limit, visitor);
+  }
+
+  public boolean hasUsersAfter(Section section, long position) {
+    return ticketRepository.hasTicketsAfter(section, position);
+  }
+
+  /**
+   * Moves a ticket to another seat, once per idempotency key: a repeat of an earlier key for
+   * the same ticket within {@link #IDEMPOTENCY_TTL} returns the seat the first request got.
+   * An empty key moves the ticket every time.
+   */
+  public Ticket modifySeat(String ticketId, String idempotencyKey) {
+    if (idempotencyKey == null || idempotencyKey.isEmpty()) {
+      return modifySeat(ticketId);
+    }
+    return seatChanges.get(ticketId + '\n' + idempotencyKey, () -> modifySeat(ticketId));
+  }
+
+  /**
+   * Moves a ticket to another seat. The new seat is claimed before the ticket is saved and
+   * the old one released after, so the ticket always holds at least one seat and a failed
+   * save gives the new seat back.
+   */
   public Ticket modifySeat(String ticketId) {
-    logger.info("Modifying seat for ticket ID: {}", ticketId);
+    logger.debug("Modifying seat for ticket ID: {}", ticketId);
+    ReentrantLock lock = ticketLock(ticketId);
+    lock.lock();
     try {
       TicketEntity ticket = ticketRepository.findById(ticketId);
       if (ticket == null) {
-        logger.error("Ticket with ID {} not found", ticketId);
+        logger.debug("Ticket with ID {} not found", ticketId);
         throw new TicketNotFoundException("Ticket with ID " + ticketId + " not found");
       }
 
-      SeatAssignment seatAssignment = findAvailableSeat(ticket.getSection());
-      ticket.setSection(seatAssignment.getSection());
-      ticket.setSeatNo(seatAssignment.getSeatNumber());
-      ticketRepository.save(ticket);
+      TrainInventory inventory = resolveInventory(ticket.getTrainId(), ticket.getServiceDate());
+      long legMask = inventory.getTopology().legMask(ticket.getSource(), ticket.getDestination());
+      SeatAssignment previous = new SeatAssignment(ticket.getSeatNo(), ticket.getSection(), ticket.getCoach());
+      SeatAssignment seatAssignment = findAvailableSeat(inventory, ticket.getSection(), legMask);
+      // Work on a copy, so the stored ticket keeps its old seat unless the save succeeds
+      TicketEntity moved = new TicketEntity(ticket);
+      moved.setSection(seatAssignment.getSection());
+      moved.setSeatNo(seatAssignment.getSeatNumber());
+      moved.setCoach(seatAssignment.getCoach());
+      try {
+        save(moved);
+      } catch (RuntimeException e) {
+        inventory.release(seatAssignment, legMask);
+        throw e;
+      } finally {
+        receipts.invalidate(ticketId);
+      }
+      inventory.release(previous, legMask);
 
-      logger.info("Seat modification successful for ticket ID: {}", ticketId);
-      return Util.toProto(ticket);
-    } catch (TicketNotFoundException e) {
-      logger.error("Ticket with ID {} not found", ticketId, e);
+      logger.debug("Seat modification successful for ticket ID: {}", ticketId);
+      return Util.toProto(moved);
+    } catch (TicketNotFoundException | SeatUnavailableException | TrainNotFoundException e) {
       throw e;  // Rethrow specific exception
     } catch (Exception e) {
       logger.error("Error modifying seat for ticket ID: {}", ticketId, e);
       throw new RuntimeException("Failed to modify seat: " + e.getMessage());
+    } finally {
+      lock.unlock();
     }
   }
 
   public double getPrice(Section section) {
     double price = section == Section.A ? 50.0 : 100.0;
-    logger.info("Price determined for section {}: {}", section, price);
+    logger.debug("Price determined for section {}: {}", section, price);
     return price;
   }
 }
@@ -0,0 +1,23 @@
+package com.ravi.booking.strategy;
+
+import com.ravi.booking.model.Section;
+import com.ravi.booking.repository.SeatInventory;
+
+/**
+ * Always hands out the lowest numbered free seat, found by scanning the inventory bitmap.
+ */
+public class FirstFitStrategy implements SeatSelectionStrategy {
+
+  @Override
+  public int selectSeat(Section section, SeatInventory inventory, long legMask) {
+    int seat = inventory.nextFreeSeat(1);
+    while (seat != -1) {
+      if (inventory.claim(seat, legMask)) {
+        return seat;
+      }
+      // Lost the race for this seat, keep scanning from it
+      seat = inventory.nextFreeSeat(seat);
+    }
+    return -1;
+  }
+}
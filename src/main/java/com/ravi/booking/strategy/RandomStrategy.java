@@ -1,28 +1,23 @@
 package com.ravi.booking.strategy;
 
 import com.ravi.booking.model.Section;
+import com.ravi.booking.repository.SeatInventory;
 
-import java.util.*;
+import java.util.concurrent.ThreadLocalRandom;
 
 public class RandomStrategy implements SeatSelectionStrategy {
 
-  private static final int MAX_SEATS = 50;
-  private final Random random = new Random();
-
   @Override
-  public int selectSeat(Section section, Set<Integer> allocatedSeats) {
-    if (allocatedSeats.size() >= MAX_SEATS) {
-      // All seats are taken, return -1 to indicate no available seats
-      return -1;
-    }
-
+  public int selectSeat(Section section, SeatInventory inventory, long legMask) {
     int seat;
     do {
-      seat = random.nextInt(MAX_SEATS) + 1;
-    } while (allocatedSeats.contains(seat));
+      if (inventory.getFreeCount() == 0) {
+        // All seats are taken, return -1 to indicate no available seats
+        return -1;
+      }
+      seat = ThreadLocalRandom.current().nextInt(inventory.getCapacity()) + 1;
+    } while (!inventory.claim(seat, legMask));
 
-    allocatedSeats.add(seat);
     return seat;
   }
 }
-
@@ -0,0 +1,44 @@
+package com.ravi.booking.strategy;
+
+import com.ravi.booking.model.Section;
+import com.ravi.booking.repository.SeatInventory;
+
+/**
+ * Prefers window or aisle seats and falls back to first fit once none are left.
+ *
+ * Coaches are laid out in rows of four (window, aisle, aisle, window), so seat n is a
+ * window seat when n % 4 is 1 or 0. Since a bitmap word holds 16 whole rows the position
+ * pattern is the same for every word and the scan stays word-at-a-time.
+ */
+public class SeatPositionStrategy implements SeatSelectionStrategy {
+
+  public enum Position {
+    WINDOW(0x9999999999999999L),
+    AISLE(0x6666666666666666L);
+
+    private final long pattern;
+
+    Position(long pattern) {
+      this.pattern = pattern;
+    }
+  }
+
+  private final Position position;
+  private final SeatSelectionStrategy fallback = new FirstFitStrategy();
+
+  public SeatPositionStrategy(Position position) {
+    this.position = position;
+  }
+
+  @Override
+  public int selectSeat(Section section, SeatInventory inventory, long legMask) {
+    int seat = inventory.nextFreeSeat(1, position.pattern);
+    while (seat != -1) {
+      if (inventory.claim(seat, legMask)) {
+        return seat;
+      }
+      seat = inventory.nextFreeSeat(seat, position.pattern);
+    }
+    return fallback.selectSeat(section, inventory, legMask);
+  }
+}
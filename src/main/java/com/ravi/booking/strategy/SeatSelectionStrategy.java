@@ -1,12 +1,20 @@
 package com.ravi.booking.strategy;
 
-import java.util.Map;
-import java.util.Set;
-
 import com.ravi.booking.model.Section;
+import com.ravi.booking.repository.SeatInventory;
 
 public interface SeatSelectionStrategy {
-  int selectSeat(Section section,  Set<Integer> allocatedSeats);
-
+  /**
+   * Picks a completely free seat and claims the given legs of it in the inventory.
+   *
+   * @return the claimed seat number, or -1 if no seat is free
+   */
+  int selectSeat(Section section, SeatInventory inventory, long legMask);
 
+  /**
+   * Picks a completely free seat and claims it for the whole route.
+   */
+  default int selectSeat(Section section, SeatInventory inventory) {
+    return selectSeat(section, inventory, inventory.getRouteMask());
+  }
 }
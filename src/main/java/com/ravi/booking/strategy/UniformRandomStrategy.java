@@ -0,0 +1,29 @@
+package com.ravi.booking.strategy;
+
+import com.ravi.booking.model.Section;
+import com.ravi.booking.repository.SeatInventory;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Picks uniformly among the free seats by drawing a rank below the free count and
+ * resolving it against the bitmap. Unlike {@link RandomStrategy} the number of draws does
+ * not grow as the section fills; a retry only happens when another thread claims the same
+ * seat first.
+ */
+public class UniformRandomStrategy implements SeatSelectionStrategy {
+
+  @Override
+  public int selectSeat(Section section, SeatInventory inventory, long legMask) {
+    while (true) {
+      int free = inventory.getFreeCount();
+      if (free <= 0) {
+        return -1;
+      }
+      int seat = inventory.nthFreeSeat(ThreadLocalRandom.current().nextInt(free));
+      if (seat != -1 && inventory.claim(seat, legMask)) {
+        return seat;
+      }
+    }
+  }
+}
@@ -0,0 +1,30 @@
+package com.ravi.booking.Client;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RetryBudgetTest {
+
+  @Test
+  public void testRetriesStopAtHalfCapacity() {
+    GrpcTicketClient.RetryBudget budget = new GrpcTicketClient.RetryBudget(10, 0.1);
+    for (int i = 0; i < 4; i++) {
+      assertTrue(budget.tryAcquire());
+    }
+    assertFalse(budget.tryAcquire());
+  }
+
+  @Test
+  public void testSuccessesRefillTheBudget() {
+    GrpcTicketClient.RetryBudget budget = new GrpcTicketClient.RetryBudget(10, 0.1);
+    while (budget.tryAcquire()) {
+      // drain
+    }
+    for (int i = 0; i < 10; i++) {
+      budget.onSuccess();
+    }
+    assertTrue(budget.tryAcquire());
+    assertFalse(budget.tryAcquire());
+  }
+}
@@ -0,0 +1,77 @@
+package com.ravi.booking.Util;
+
+import com.ravi.booking.model.Section;
+import com.ravi.booking.model.TicketEntity;
+import com.ravi.booking.model.UserEntity;
+import org.junit.jupiter.api.Test;
+import org.ravi.model.GetReceiptResponse;
+import org.ravi.model.GetUsersBySectionPageResponse;
+import org.ravi.model.GetUsersBySectionResponse;
+import org.ravi.model.GetUsersBySectionResponseList;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ProtoWriterTest {
+
+  private static TicketEntity ticket(UserEntity user, Section section, int seat, String coach) {
+    TicketEntity ticket = new TicketEntity(user, section == Section.A ? 50.0 : 100.0, section, seat, "London", "France");
+    ticket.setTrainId("T1");
+    ticket.setServiceDate(LocalDate.of(2024, 7, 1));
+    ticket.setCoach(coach);
+    return ticket;
+  }
+
+  private static GetUsersBySectionResponse row(TicketEntity ticket) {
+    return GetUsersBySectionResponse.newBuilder()
+        .setUserName(ticket.getUser().getFirstName() + " " + ticket.getUser().getLastName())
+        .setSeatNo(ticket.getSeatNo())
+        .setCoach(ticket.getCoach() == null ? "" : ticket.getCoach())
+        .build();
+  }
+
+  @Test
+  public void testReceiptMatchesGeneratedEncoding() {
+    UserEntity user = new UserEntity("Doe", "Jöhn", "john.doe@example.com");
+    for (TicketEntity ticket : List.of(ticket(user, Section.A, 0, "A1"), ticket(user, Section.B, 12, null))) {
+      byte[] expected = GetReceiptResponse.newBuilder().setTicket(Util.toProto(ticket)).build().toByteArray();
+      assertArrayEquals(expected, ProtoWriter.receipt(ticket));
+    }
+  }
+
+  @Test
+  public void testManifestMatchesGeneratedEncoding() {
+    UserEntity user = new UserEntity("Doe", "John", "john.doe@example.com");
+    List<TicketEntity> tickets = List.of(ticket(user, Section.A, 1, "A1"), ticket(user, Section.A, 2, null));
+
+    byte[] expected = GetUsersBySectionResponseList.newBuilder()
+        .addResponse(row(tickets.get(0)))
+        .addResponse(row(tickets.get(1)))
+        .build().toByteArray();
+    assertArrayEquals(expected, ProtoWriter.manifest(tickets, null));
+
+    byte[] page = GetUsersBySectionPageResponse.newBuilder()
+        .addResponse(row(tickets.get(0)))
+        .addResponse(row(tickets.get(1)))
+        .setNextPageToken("42")
+        .build().toByteArray();
+    assertArrayEquals(page, ProtoWriter.manifest(tickets, "42"));
+    assertEquals(0, ProtoWriter.manifest(List.of(), null).length);
+  }
+
+  @Test
+  public void testUserChangesShowInTheNextEncoding() throws Exception {
+    UserEntity user = new UserEntity("Doe", "John", "john.doe@example.com");
+    TicketEntity ticket = ticket(user, Section.A, 1, "A1");
+    ProtoWriter.receipt(ticket);
+    ProtoWriter.manifest(List.of(ticket), null);
+
+    user.setLastName("Roe");
+
+    assertEquals("Roe", GetReceiptResponse.parseFrom(ProtoWriter.receipt(ticket)).getTicket().getUser().getLastName());
+    assertEquals("John Roe", GetUsersBySectionResponseList.parseFrom(ProtoWriter.manifest(List.of(ticket), null))
+        .getResponse(0).getUserName());
+  }
+}
@@ -0,0 +1,56 @@
+package com.ravi.booking.interceptor;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class GradientLimitTest {
+
+  private static final long FAST = TimeUnit.MILLISECONDS.toNanos(2);
+  private static final long SLOW = TimeUnit.MILLISECONDS.toNanos(20);
+
+  @Test
+  public void testRejectsOverTheLimit() {
+    GradientLimit limit = new GradientLimit(2, 1, 10);
+    assertEquals(1, limit.tryAcquire());
+    assertEquals(2, limit.tryAcquire());
+    assertEquals(0, limit.tryAcquire());
+    limit.release();
+    assertEquals(2, limit.tryAcquire());
+  }
+
+  @Test
+  public void testGrowsWhileLatencyHoldsUnderLoad() {
+    GradientLimit limit = new GradientLimit(10, 4, 100);
+    for (int i = 0; i < 200; i++) {
+      limit.onSample(FAST, limit.getLimit());
+    }
+    assertEquals(100, limit.getLimit());
+  }
+
+  @Test
+  public void testDoesNotGrowWhenIdle() {
+    GradientLimit limit = new GradientLimit(10, 4, 100);
+    for (int i = 0; i < 200; i++) {
+      limit.onSample(FAST, 1);
+    }
+    assertEquals(10, limit.getLimit());
+  }
+
+  @Test
+  public void testShrinksWhenLatencyRises() {
+    GradientLimit limit = new GradientLimit(50, 4, 100);
+    for (int i = 0; i < 50; i++) {
+      limit.onSample(FAST, limit.getLimit());
+    }
+    int before = limit.getLimit();
+    for (int i = 0; i < 50; i++) {
+      limit.onSample(SLOW, limit.getLimit());
+    }
+    assertTrue(limit.getLimit() < before / 2, limit.getLimit() + " vs " + before);
+    assertTrue(limit.getLimit() >= 4);
+    assertTrue(limit.retryAfterMillis() > 2);
+  }
+}
@@ -0,0 +1,208 @@
+package com.ravi.booking.persistence;
+
+import com.ravi.booking.config.TopologyProperties;
+import com.ravi.booking.model.SeatAssignment;
+import com.ravi.booking.model.Section;
+import com.ravi.booking.model.TicketEntity;
+import com.ravi.booking.model.UserEntity;
+import com.ravi.booking.repository.HeapTicketStore;
+import com.ravi.booking.repository.SeatInventoryRepository;
+import com.ravi.booking.repository.TicketRepository;
+import com.ravi.booking.repository.TicketStore;
+import com.ravi.booking.repository.TrainInventory;
+import com.ravi.booking.repository.UserRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PersistenceManagerTest {
+
+  private static final LocalDate DATE = LocalDate.of(2024, 7, 1);
+
+  @TempDir
+  Path directory;
+
+  private final class Node {
+    final SeatInventoryRepository inventoryRepository = new SeatInventoryRepository(topology());
+    final UserRepository userRepository = new UserRepository();
+    final TicketRepository ticketRepository;
+    final PersistenceManager manager;
+
+    Node() throws Exception {
+      this(new HeapTicketStore());
+    }
+
+    Node(TicketStore store) throws Exception {
+      ticketRepository = new TicketRepository(inventoryRepository, store);
+      manager = new PersistenceManager(userRepository, ticketRepository,
+          inventoryRepository, directory.toString(), false, Duration.ofHours(1));
+      manager.start();
+    }
+
+    TicketEntity book(String email, int seat) {
+      UserEntity user = userRepository.save(new UserEntity("Doe", "John", email));
+      TrainInventory inventory = inventoryRepository.getInventory("T1", DATE);
+      assertTrue(inventory.claim(new SeatAssignment(seat, Section.A, "A1"), inventory.getTopology().getRouteMask()));
+      TicketEntity ticket = new TicketEntity(user, 20.0, Section.A, seat, "London", "France");
+      ticket.setTrainId("T1");
+      ticket.setServiceDate(DATE);
+      ticket.setCoach("A1");
+      user.setTicketEntities(ticket);
+      return ticketRepository.save(ticket);
+    }
+  }
+
+  private static TopologyProperties topology() {
+    TopologyProperties.CoachProperties coach = new TopologyProperties.CoachProperties();
+    coach.setName("A1");
+    coach.setSection(Section.A);
+    coach.setSeats(10);
+    TopologyProperties.TrainProperties train = new TopologyProperties.TrainProperties();
+    train.setId("T1");
+    train.setCoaches(List.of(coach));
+    TopologyProperties properties = new TopologyProperties();
+    properties.setDefaultTrain("T1");
+    properties.setTrains(List.of(train));
+    return properties;
+  }
+
+  @Test
+  public void testRecoversTicketsAndSeatsFromLog() throws Exception {
+    Node first = new Node();
+    TicketEntity kept = first.book("kept@example.com", 3);
+    TicketEntity removed = first.book("removed@example.com", 4);
+    first.ticketRepository.delete(removed.getId());
+    first.manager.stop();
+
+    Node second = new Node();
+    TicketEntity recovered = second.ticketRepository.findById(kept.getId());
+    assertNotNull(recovered);
+    assertEquals("kept@example.com", recovered.getUser().getEmail());
+    assertEquals(3, recovered.getSeatNo());
+    assertNull(second.ticketRepository.findById(removed.getId()));
+    assertNotNull(second.userRepository.findByEmail("removed@example.com"));
+
+    TrainInventory inventory = second.inventoryRepository.getInventory("T1", DATE);
+    assertTrue(inventory.getCoachInventory("A1").isAllocated(3));
+    assertFalse(inventory.getCoachInventory("A1").isAllocated(4));
+    second.manager.stop();
+  }
+
+  @Test
+  public void testRecoversFromSnapshotPlusNewerLog() throws Exception {
+    Node first = new Node();
+    TicketEntity beforeSnapshot = first.book("before@example.com", 1);
+    first.manager.snapshot();
+    TicketEntity afterSnapshot = first.book("after@example.com", 2);
+    first.manager.stop();
+
+    try (var files = Files.list(directory)) {
+      assertEquals(2, files.count());
+    }
+
+    Node second = new Node();
+    assertNotNull(second.ticketRepository.findById(beforeSnapshot.getId()));
+    assertNotNull(second.ticketRepository.findById(afterSnapshot.getId()));
+    assertEquals(2, second.ticketRepository.countBySection(Section.A));
+    second.manager.stop();
+  }
+
+  @Test
+  public void testTornRecordAtEndOfLogIsDropped() throws Exception {
+    Node first = new Node();
+    TicketEntity ticket = first.book("torn@example.com", 5);
+    first.manager.stop();
+
+    Path log;
+    try (var files = Files.list(directory)) {
+      log = files.filter(path -> path.getFileName().toString().startsWith("wal-")).findFirst().orElseThrow();
+    }
+    try (OutputStream out = Files.newOutputStream(log, StandardOpenOption.APPEND)) {
+      out.write(new byte[] {0, 0, 0, 40, 1, 2, 3});
+    }
+
+    Node second = new Node();
+    assertNotNull(second.ticketRepository.findById(ticket.getId()));
+    second.manager.stop();
+  }
+
+  @Test
+  public void testSnapshotKeepsASaveThatWasJournaledButNotYetApplied() throws Exception {
+    CountDownLatch putStarted = new CountDownLatch(1);
+    CountDownLatch releasePut = new CountDownLatch(1);
+    Node first = new Node(new HeapTicketStore() {
+      @Override
+      public void put(TicketEntity ticket) {
+        if (ticket.getSeatNo() == 7) {
+          putStarted.countDown();
+          try {
+            releasePut.await();
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+          }
+        }
+        super.put(ticket);
+      }
+    });
+    CompletableFuture<TicketEntity> save = CompletableFuture.supplyAsync(() -> {
+      try {
+        return first.book("slow@example.com", 7);
+      } catch (Exception e) {
+        throw new IllegalStateException(e);
+      }
+    });
+    putStarted.await();
+
+    Thread snapshot = new Thread(() -> {
+      try {
+        first.manager.snapshot();
+      } catch (Exception e) {
+        throw new IllegalStateException(e);
+      }
+    });
+    snapshot.start();
+    // Give a snapshot that does not wait for the save time to finish without it
+    snapshot.join(500);
+    releasePut.countDown();
+    TicketEntity ticket = save.join();
+    snapshot.join();
+    first.manager.stop();
+
+    Node second = new Node();
+    assertNotNull(second.ticketRepository.findById(ticket.getId()));
+    assertTrue(second.inventoryRepository.getInventory("T1", DATE).getCoachInventory("A1").isAllocated(7));
+    second.manager.stop();
+  }
+
+  @Test
+  public void testReplayedDeleteDoesNotFreeTheSeatOfARestoredTicket() throws Exception {
+    Node first = new Node();
+    TicketEntity removed = first.book("removed@example.com", 3);
+    first.ticketRepository.delete(removed.getId());
+    first.manager.stop();
+
+    // A durable store that already holds a later ticket for the same seat
+    TicketStore store = new HeapTicketStore();
+    TicketEntity kept = new TicketEntity(null, 20.0, Section.A, 3, "London", "France");
+    kept.setTrainId("T1");
+    kept.setServiceDate(DATE);
+    kept.setCoach("A1");
+    store.put(kept);
+
+    Node second = new Node(store);
+    assertNotNull(second.ticketRepository.findById(kept.getId()));
+    assertTrue(second.inventoryRepository.getInventory("T1", DATE).getCoachInventory("A1").isAllocated(3));
+    second.manager.stop();
+  }
+}
@@ -0,0 +1,129 @@
+package com.ravi.booking.repository;
+
+import com.ravi.booking.model.Section;
+import com.ravi.booking.model.TicketEntity;
+import com.ravi.booking.model.UserEntity;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MappedTicketStoreTest {
+
+  @TempDir
+  Path directory;
+
+  private TicketEntity ticket(UserEntity user, int seat) {
+    TicketEntity ticket = new TicketEntity(user, 20.5, Section.B, seat, "London", "France");
+    ticket.setTrainId("T1");
+    ticket.setServiceDate(LocalDate.of(2024, 7, 1));
+    ticket.setCoach("B1");
+    return ticket;
+  }
+
+  @Test
+  public void testRoundTripsEveryField() throws Exception {
+    UserEntity user = new UserEntity("Doe", "John", "john.doe@example.com");
+    TicketEntity saved = ticket(user, 12);
+    try (MappedTicketStore store = new MappedTicketStore(directory.resolve("tickets.dat"), new UserRepository())) {
+      store.put(saved);
+      TicketEntity loaded = store.get(saved.getId());
+
+      assertEquals(saved.getId(), loaded.getId());
+      assertSame(user, loaded.getUser());
+      assertEquals(20.5, loaded.getPrice());
+      assertEquals(Section.B, loaded.getSection());
+      assertEquals(12, loaded.getSeatNo());
+      assertEquals("B1", loaded.getCoach());
+      assertEquals("London", loaded.getSource());
+      assertEquals("France", loaded.getDestination());
+      assertEquals("T1", loaded.getTrainId());
+      assertEquals(LocalDate.of(2024, 7, 1), loaded.getServiceDate());
+      assertNull(store.get("not-a-ticket"));
+    }
+  }
+
+  @Test
+  public void testUpdatesAndRemovesReuseRecords() throws Exception {
+    UserEntity user = new UserEntity("Doe", "Jane", "jane.doe@example.com");
+    try (MappedTicketStore store = new MappedTicketStore(directory.resolve("tickets.dat"), new UserRepository())) {
+      TicketEntity first = ticket(user, 1);
+      store.put(first);
+      first.setSeatNo(2);
+      store.put(first);
+      assertEquals(1, store.size());
+      assertEquals(2, store.get(first.getId()).getSeatNo());
+
+      assertEquals(2, store.remove(first.getId()).getSeatNo());
+      assertNull(store.remove(first.getId()));
+      assertNull(store.get(first.getId()));
+      assertEquals(0, store.size());
+    }
+  }
+
+  @Test
+  public void testReopenFindsTicketsWithoutLoadingThem() throws Exception {
+    Path file = directory.resolve("tickets.dat");
+    List<String> kept = new ArrayList<>();
+    String removed;
+    try (MappedTicketStore store = new MappedTicketStore(file, new UserRepository())) {
+      // Enough tickets to grow both the id index and the mapping
+      for (int i = 0; i < 70_000; i++) {
+        UserEntity user = new UserEntity("User", "Number" + (i % 100), "user" + (i % 100) + "@example.com");
+        TicketEntity ticket = ticket(user, i % 50 + 1);
+        store.put(ticket);
+        kept.add(ticket.getId());
+      }
+      removed = kept.remove(kept.size() / 2);
+      store.remove(removed);
+    }
+
+    try (MappedTicketStore store = new MappedTicketStore(file, new UserRepository())) {
+      assertEquals(kept.size(), store.size());
+      assertNull(store.get(removed));
+      TicketEntity last = store.get(kept.get(kept.size() - 1));
+      assertEquals("user99@example.com", last.getUser().getEmail());
+      assertEquals("B1", last.getCoach());
+
+      Set<String> seen = new HashSet<>();
+      store.forEachView(view -> seen.add(view.getTicketId()));
+      assertEquals(new HashSet<>(kept), seen);
+    }
+  }
+
+  @Test
+  public void testUsersAreResolvedThroughTheRepository() throws Exception {
+    Path file = directory.resolve("tickets.dat");
+    UserRepository users = new UserRepository();
+    UserEntity user = users.save(new UserEntity("Doe", "John", "john.doe@example.com"));
+    TicketEntity first = ticket(user, 1);
+    TicketEntity second = ticket(user, 2);
+    try (MappedTicketStore store = new MappedTicketStore(file, users)) {
+      store.put(first);
+      store.put(second);
+      assertSame(user, store.get(first.getId()).getUser());
+      assertSame(user, store.get(second.getId()).getUser());
+
+      List<String> rows = new ArrayList<>();
+      assertTrue(store.visitSeat(second.getId(),
+          (holder, seatNo, coach) -> rows.add(holder.getEmail() + " " + seatNo + " " + coach)));
+      assertEquals(List.of("john.doe@example.com 2 B1"), rows);
+      assertFalse(store.visitSeat("not-a-ticket", (holder, seatNo, coach) -> fail()));
+    }
+
+    // A fresh repository learns the user from the store's own file
+    UserRepository restarted = new UserRepository();
+    try (MappedTicketStore store = new MappedTicketStore(file, restarted)) {
+      assertEquals(1, restarted.count());
+      assertSame(restarted.findById(user.getId()), store.get(first.getId()).getUser());
+      assertEquals("John", store.get(second.getId()).getUser().getFirstName());
+    }
+  }
+}
@@ -0,0 +1,127 @@
+package com.ravi.booking.repository;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SeatInventoryTest {
+
+  @Test
+  public void testClaimAndRelease() {
+    SeatInventory inventory = new SeatInventory(50);
+
+    assertTrue(inventory.claim(1));
+    assertFalse(inventory.claim(1));
+    assertTrue(inventory.isAllocated(1));
+    assertEquals(49, inventory.getFreeCount());
+
+    assertTrue(inventory.release(1));
+    assertFalse(inventory.release(1));
+    assertFalse(inventory.isAllocated(1));
+    assertEquals(50, inventory.getFreeCount());
+  }
+
+  @Test
+  public void testSeatOutOfRange() {
+    SeatInventory inventory = new SeatInventory(50);
+
+    assertThrows(IllegalArgumentException.class, () -> inventory.claim(0));
+    assertThrows(IllegalArgumentException.class, () -> inventory.claim(51));
+  }
+
+  @Test
+  public void testNonOverlappingLegsShareASeat() {
+    SeatInventory inventory = new SeatInventory(4, 2);
+
+    assertTrue(inventory.claim(1, 0b01));
+    assertFalse(inventory.claim(1, 0b01));
+    assertFalse(inventory.claim(1));
+    assertTrue(inventory.claim(1, 0b10));
+    assertEquals(3, inventory.getFreeCount());
+
+    assertTrue(inventory.release(1, 0b01));
+    assertTrue(inventory.isAllocated(1));
+    assertTrue(inventory.isFree(1, 0b01));
+    assertTrue(inventory.release(1, 0b10));
+    assertFalse(inventory.isAllocated(1));
+    assertEquals(4, inventory.getFreeCount());
+  }
+
+  @Test
+  public void testNextSharedSeatSkipsEmptyAndOverlappingSeats() {
+    SeatInventory inventory = new SeatInventory(100, 3);
+    inventory.claim(10, 0b111);
+    inventory.claim(70, 0b001);
+
+    assertEquals(70, inventory.nextSharedSeat(1, 0b110));
+    assertEquals(-1, inventory.nextSharedSeat(1, 0b001));
+    assertEquals(1, inventory.nextFreeSeat(1));
+  }
+
+  @Test
+  public void testClaimRunSkipsGapsThatAreTooShort() {
+    SeatInventory inventory = new SeatInventory(9);
+    inventory.claim(3);
+    inventory.claim(7);
+
+    assertEquals(4, inventory.claimRun(3, inventory.getRouteMask()));
+    assertEquals(-1, inventory.claimRun(3, inventory.getRouteMask()));
+    assertEquals(1, inventory.claimRun(2, inventory.getRouteMask()));
+    assertEquals(2, inventory.getFreeCount());
+  }
+
+  @Test
+  public void testPartlySoldSeatsAreTrackedThroughEveryTransition() {
+    SeatInventory inventory = new SeatInventory(130, 3);
+    for (int seat = 1; seat <= 120; seat++) {
+      inventory.claim(seat);
+    }
+    assertEquals(0, inventory.getPartialCount());
+    assertEquals(-1, inventory.nextSharedSeat(1, 0b001));
+
+    inventory.release(100, 0b100);
+    inventory.claim(125, 0b001);
+    assertEquals(2, inventory.getPartialCount());
+    assertEquals(100, inventory.nextSharedSeat(1, 0b100));
+    assertEquals(125, inventory.nextSharedSeat(101, 0b110));
+
+    inventory.claim(100, 0b100);
+    inventory.release(125, 0b001);
+    assertEquals(0, inventory.getPartialCount());
+    assertEquals(-1, inventory.nextSharedSeat(1, 0b100));
+  }
+
+  @Test
+  public void testConcurrentClaimsNeverDoubleBook() throws InterruptedException {
+    int seats = 1000;
+    int threads = 16;
+    SeatInventory inventory = new SeatInventory(seats);
+    AtomicInteger wins = new AtomicInteger();
+    CountDownLatch start = new CountDownLatch(1);
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+
+    for (int t = 0; t < threads; t++) {
+      executor.submit(() -> {
+        start.await();
+        for (int seat = 1; seat <= seats; seat++) {
+          if (inventory.claim(seat)) {
+            wins.incrementAndGet();
+          }
+        }
+        return null;
+      });
+    }
+    start.countDown();
+    executor.shutdown();
+    assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+
+    assertEquals(seats, wins.get());
+    assertEquals(0, inventory.getFreeCount());
+  }
+}
@@ -0,0 +1,120 @@
+package com.ravi.booking.repository;
+
+import com.ravi.booking.model.SeatAssignment;
+import com.ravi.booking.model.Section;
+import com.ravi.booking.model.TicketEntity;
+import com.ravi.booking.model.UserEntity;
+import com.ravi.booking.persistence.Journal;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+public class TicketRepositoryTest {
+
+  private TicketRepository ticketRepository;
+
+  @BeforeEach
+  public void setUp() {
+    ticketRepository = new TicketRepository(mock(SeatInventoryRepository.class));
+  }
+
+  private TicketEntity ticket(Section section, int seat) {
+    UserEntity user = new UserEntity("Doe", "John", "john.doe@example.com");
+    TicketEntity ticket = new TicketEntity(user, 50.0, section, seat, "France", "London");
+    ticket.setCoach(section == Section.A ? "A1" : "B1");
+    return ticket;
+  }
+
+  @Test
+  public void testFindBySectionKeepsPurchaseOrder() {
+    TicketEntity first = ticketRepository.save(ticket(Section.A, 5));
+    TicketEntity second = ticketRepository.save(ticket(Section.B, 1));
+    TicketEntity third = ticketRepository.save(ticket(Section.A, 2));
+
+    assertEquals(List.of(first, third), ticketRepository.findBySection(Section.A));
+    assertEquals(List.of(second), ticketRepository.findBySection(Section.B));
+    assertEquals(2, ticketRepository.countBySection(Section.A));
+  }
+
+  @Test
+  public void testVisitSectionPagesInPurchaseOrder() {
+    for (int seat = 1; seat <= 5; seat++) {
+      ticketRepository.save(ticket(Section.A, seat));
+    }
+    ticketRepository.save(ticket(Section.B, 9));
+
+    List<Integer> seats = new ArrayList<>();
+    long position = ticketRepository.visitSection(Section.A, 0, 3, (user, seatNo, coach) -> seats.add(seatNo));
+    assertEquals(List.of(1, 2, 3), seats);
+    assertTrue(ticketRepository.hasTicketsAfter(Section.A, position));
+
+    position = ticketRepository.visitSection(Section.A, position, 3, (user, seatNo, coach) -> seats.add(seatNo));
+    assertEquals(List.of(1, 2, 3, 4, 5), seats);
+    assertFalse(ticketRepository.hasTicketsAfter(Section.A, position));
+    assertEquals(position, ticketRepository.visitSection(Section.A, position, 3, (user, seatNo, coach) -> fail()));
+  }
+
+  @Test
+  public void testIndexesFollowSeatChangesAndDeletes() {
+    TicketEntity ticket = ticketRepository.save(ticket(Section.A, 5));
+    assertEquals(new SeatAssignment(5, Section.A, "A1"), ticketRepository.getSeatAssignmentByTicketId(ticket.getId()));
+
+    ticketRepository.assignSeat(ticket.getId(), new SeatAssignment(7, Section.B, "B1"));
+    assertEquals(new SeatAssignment(7, Section.B, "B1"), ticketRepository.getSeatAssignmentByTicketId(ticket.getId()));
+    assertTrue(ticketRepository.findBySection(Section.A).isEmpty());
+    // The stored ticket is replaced by an updated copy
+    assertEquals(List.of(ticket.getId()),
+        ticketRepository.findBySection(Section.B).stream().map(TicketEntity::getId).toList());
+    assertEquals(7, ticketRepository.findById(ticket.getId()).getSeatNo());
+
+    ticketRepository.delete(ticket.getId());
+    assertNull(ticketRepository.getSeatAssignmentByTicketId(ticket.getId()));
+    assertTrue(ticketRepository.findBySection(Section.B).isEmpty());
+  }
+
+  @Test
+  public void testFailedJournalWriteLeavesNothingStored() {
+    TicketEntity kept = ticketRepository.save(ticket(Section.A, 5));
+    ticketRepository.setJournal(new FailingJournal());
+
+    TicketEntity lost = ticket(Section.A, 6);
+    assertThrows(CompletionException.class, () -> ticketRepository.save(lost));
+    assertNull(ticketRepository.findById(lost.getId()));
+    assertNull(ticketRepository.getSeatAssignmentByTicketId(lost.getId()));
+    assertEquals(List.of(kept), ticketRepository.findBySection(Section.A));
+
+    assertThrows(CompletionException.class,
+        () -> ticketRepository.assignSeat(kept.getId(), new SeatAssignment(7, Section.B, "B1")));
+    assertEquals(5, ticketRepository.findById(kept.getId()).getSeatNo());
+    assertEquals(new SeatAssignment(5, Section.A, "A1"), ticketRepository.getSeatAssignmentByTicketId(kept.getId()));
+
+    assertThrows(CompletionException.class, () -> ticketRepository.delete(kept.getId()));
+    assertSame(kept, ticketRepository.findById(kept.getId()));
+    assertEquals(1, ticketRepository.count());
+  }
+
+  private static final class FailingJournal implements Journal {
+    @Override
+    public CompletableFuture<Void> userSaved(UserEntity user) {
+      return CompletableFuture.failedFuture(new IOException("disk full"));
+    }
+
+    @Override
+    public CompletableFuture<Void> ticketSaved(TicketEntity ticket) {
+      return CompletableFuture.failedFuture(new IOException("disk full"));
+    }
+
+    @Override
+    public CompletableFuture<Void> ticketDeleted(String ticketId) {
+      return CompletableFuture.failedFuture(new IOException("disk full"));
+    }
+  }
+}
@@ -0,0 +1,90 @@
+package com.ravi.booking.repository;
+
+import com.ravi.booking.model.Coach;
+import com.ravi.booking.model.SeatAssignment;
+import com.ravi.booking.model.Section;
+import com.ravi.booking.model.TrainTopology;
+import com.ravi.booking.strategy.FirstFitStrategy;
+import com.ravi.booking.strategy.SeatSelectionStrategy;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TrainInventoryTest {
+
+  private final SeatSelectionStrategy strategy = new FirstFitStrategy();
+
+  @Test
+  public void testAllocateMovesToNextCoachWhenFull() {
+    TrainInventory inventory = new TrainInventory(new TrainTopology("T1", List.of(
+        new Coach("A1", Section.A, 2),
+        new Coach("B1", Section.B, 2),
+        new Coach("A2", Section.A, 2))), LocalDate.now());
+
+    assertEquals("A1", inventory.allocate(Section.A, strategy).getCoach());
+    assertEquals("A1", inventory.allocate(Section.A, strategy).getCoach());
+    SeatAssignment third = inventory.allocate(Section.A, strategy);
+    assertEquals("A2", third.getCoach());
+    assertEquals(1, third.getSeatNumber());
+    assertEquals("A2", inventory.allocate(Section.A, strategy).getCoach());
+    assertNull(inventory.allocate(Section.A, strategy));
+    assertEquals(2, inventory.getFreeSeats(Section.B));
+  }
+
+  @Test
+  public void testReleaseMakesCoachAvailableAgain() {
+    TrainInventory inventory = new TrainInventory(new TrainTopology("T1", List.of(
+        new Coach("A1", Section.A, 1),
+        new Coach("A2", Section.A, 1))), LocalDate.now());
+
+    SeatAssignment first = inventory.allocate(Section.A, strategy);
+    inventory.allocate(Section.A, strategy);
+    assertNull(inventory.allocate(Section.A, strategy));
+
+    assertTrue(inventory.release(first));
+    assertFalse(inventory.release(first));
+    assertEquals(first, inventory.allocate(Section.A, strategy));
+  }
+
+  @Test
+  public void testLargeTrainFillsEverySeat() {
+    List<Coach> coaches = new ArrayList<>();
+    for (int i = 0; i < 200; i++) {
+      coaches.add(new Coach("C" + i, i % 2 == 0 ? Section.A : Section.B, 100));
+    }
+    TrainInventory inventory = new TrainInventory(new TrainTopology("T1", coaches), LocalDate.now());
+
+    for (int i = 0; i < 10_000; i++) {
+      assertNotNull(inventory.allocate(Section.A, strategy));
+    }
+    assertNull(inventory.allocate(Section.A, strategy));
+    assertEquals(0, inventory.getFreeSeats(Section.A));
+    assertEquals(10_000, inventory.getFreeSeats(Section.B));
+  }
+
+  @Test
+  public void testSeatResoldForNonOverlappingLegs() {
+    TrainTopology topology = new TrainTopology("T1", List.of(new Coach("A1", Section.A, 1)),
+        List.of("Goa", "Pune", "Hyd"));
+    TrainInventory inventory = new TrainInventory(topology, LocalDate.now());
+
+    long goaToPune = topology.legMask("Goa", "Pune");
+    long puneToHyd = topology.legMask("Hyd", "Pune");
+    assertEquals(0b01, goaToPune);
+    assertEquals(0b10, puneToHyd);
+    assertEquals(0b11, topology.legMask("Goa", "Delhi"));
+
+    SeatAssignment first = inventory.allocate(Section.A, strategy, goaToPune);
+    SeatAssignment second = inventory.allocate(Section.A, strategy, puneToHyd);
+    assertEquals(first, second);
+    assertNull(inventory.allocate(Section.A, strategy, goaToPune));
+
+    assertTrue(inventory.release(first, goaToPune));
+    assertNull(inventory.allocate(Section.A, strategy));
+    assertEquals(first, inventory.allocate(Section.A, strategy, goaToPune));
+  }
+}
@@ -0,0 +1,167 @@
+package com.ravi.booking.repository;
+
+import com.ravi.booking.model.UserEntity;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class UserRepositoryTest {
+
+  private final UserRepository userRepository = new UserRepository();
+
+  @Test
+  public void testFindByEmailAndId() {
+    UserEntity saved = userRepository.save(new UserEntity("Doe", "John", "john.doe@example.com"));
+
+    UserEntity byEmail = userRepository.findByEmail("john.doe@example.com");
+    assertEquals(saved.getId(), byEmail.getId());
+    assertEquals("John", byEmail.getFirstName());
+    assertEquals("Doe", byEmail.getLastName());
+    assertEquals("john.doe@example.com", byEmail.getEmail());
+    assertEquals(saved.getId(), userRepository.findById(saved.getId()).getId());
+
+    assertNull(userRepository.findByEmail("jane.doe@example.com"));
+    assertNull(userRepository.findByEmail("john.doe@example.org"));
+    assertNull(userRepository.findById("not-a-user"));
+  }
+
+  @Test
+  public void testUsersWithIdsThatAreNotUuidsAreStored() {
+    UserEntity legacy = new UserEntity("Doe", "John", "legacy@example.com");
+    legacy.setId("legacy-42");
+    userRepository.save(legacy);
+    UserEntity upper = new UserEntity("Roe", "Jane", "upper@example.com");
+    upper.setId(upper.getId().toUpperCase());
+    userRepository.save(upper);
+
+    assertSame(legacy, userRepository.findById("legacy-42"));
+    assertSame(legacy, userRepository.findByEmail("legacy@example.com"));
+    assertSame(upper, userRepository.findById(upper.getId()));
+
+    legacy.setEmail("moved@example.com");
+    userRepository.save(legacy);
+    assertEquals(2, userRepository.count());
+    assertEquals("moved@example.com", userRepository.findById("legacy-42").getEmail());
+    assertNull(userRepository.findByEmail("legacy@example.com"));
+
+    Set<String> ids = new HashSet<>();
+    userRepository.forEachUser(user -> ids.add(user.getId()));
+    assertEquals(Set.of("legacy-42", upper.getId()), ids);
+  }
+
+  @Test
+  public void testSavingSameIdUpdatesEmail() {
+    UserEntity user = userRepository.save(new UserEntity("Doe", "John", "old@example.com"));
+    user.setEmail("new@example.com");
+    userRepository.save(user);
+
+    assertNull(userRepository.findByEmail("old@example.com"));
+    assertEquals(user.getId(), userRepository.findByEmail("new@example.com").getId());
+    assertEquals(1, userRepository.count());
+  }
+
+  @Test
+  public void testLookupsShareOneEntityPerUser() {
+    UserEntity saved = userRepository.save(new UserEntity("Doe", "John", "john.doe@example.com"));
+    assertSame(saved, userRepository.findByEmail("john.doe@example.com"));
+    assertSame(saved, userRepository.findById(saved.getId()));
+
+    UserEntity renamed = new UserEntity("Doe", "Johnny", "john.doe@example.com");
+    renamed.setId(saved.getId());
+    userRepository.save(renamed);
+    assertEquals("Johnny", saved.getFirstName());
+    assertSame(saved, userRepository.findById(saved.getId()));
+  }
+
+  @Test
+  public void testRepeatedEmailChangesKeepEveryUserReadable() {
+    List<UserEntity> others = new ArrayList<>();
+    for (int i = 0; i < 100; i++) {
+      others.add(userRepository.save(new UserEntity("User", "N" + i, "other" + i + "@example.com")));
+    }
+    UserEntity user = userRepository.save(new UserEntity("Doe", "John", "a@example.com"));
+    // Ever longer local parts never fit in place, so the arena fills with garbage and is compacted
+    for (int i = 0; i < 20_000; i++) {
+      user.setEmail("changed" + i + "x".repeat(i % 64) + "@example.com");
+      userRepository.save(user);
+    }
+
+    assertEquals(101, userRepository.count());
+    assertEquals(user.getId(), userRepository.findByEmail(user.getEmail()).getId());
+    assertNull(userRepository.findByEmail("a@example.com"));
+    for (int i = 0; i < 100; i++) {
+      assertEquals(others.get(i).getId(), userRepository.findByEmail("other" + i + "@example.com").getId());
+    }
+  }
+
+  @Test
+  public void testManyUsersSurviveTableGrowth() {
+    Set<String> ids = new HashSet<>();
+    for (int i = 0; i < 20_000; i++) {
+      ids.add(userRepository.save(new UserEntity("User", "N" + (i % 10), "user" + i + "@d" + (i % 7) + ".com")).getId());
+    }
+    for (int i = 0; i < 20_000; i += 997) {
+      assertEquals("user" + i + "@d" + (i % 7) + ".com", userRepository.findByEmail("user" + i + "@d" + (i % 7) + ".com").getEmail());
+    }
+    Set<String> seen = new HashSet<>();
+    userRepository.forEachUser(user -> seen.add(user.getId()));
+    assertEquals(ids, seen);
+  }
+
+  @Test
+  public void testFindOrCreateNeverDuplicatesUnderContention() throws Exception {
+    int threads = 64;
+    int emails = 2_000;
+    AtomicInteger created = new AtomicInteger();
+    ConcurrentHashMap<String, Set<String>> idsByEmail = new ConcurrentHashMap<>();
+    CountDownLatch start = new CountDownLatch(1);
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    List<Future<?>> results = new ArrayList<>();
+
+    for (int t = 0; t < threads; t++) {
+      results.add(executor.submit(() -> {
+        List<Integer> order = new ArrayList<>();
+        for (int i = 0; i < emails; i++) {
+          order.add(i);
+        }
+        Collections.shuffle(order);
+        start.await();
+        for (int i : order) {
+          String email = "user" + i + "@example.com";
+          UserEntity user = userRepository.findOrCreate(email, () -> {
+            created.incrementAndGet();
+            return new UserEntity("User", "N" + i, email);
+          });
+          idsByEmail.computeIfAbsent(email, key -> ConcurrentHashMap.newKeySet()).add(user.getId());
+        }
+        return null;
+      }));
+    }
+    start.countDown();
+    for (Future<?> result : results) {
+      result.get(30, TimeUnit.SECONDS);
+    }
+    executor.shutdown();
+
+    assertEquals(emails, created.get());
+    assertEquals(emails, userRepository.count());
+    assertEquals(emails, idsByEmail.size());
+    idsByEmail.forEach((email, ids) -> {
+      assertEquals(1, ids.size(), email);
+      assertEquals(ids.iterator().next(), userRepository.findByEmail(email).getId());
+    });
+  }
+}
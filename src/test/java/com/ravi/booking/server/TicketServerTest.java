@@ -1,5 +1,6 @@
 package com.ravi.booking.server;
 
+import io.grpc.Status;
 import io.grpc.StatusRuntimeException;
 import net.devh.boot.grpc.client.inject.GrpcClient;
 import org.junit.jupiter.api.Test;
@@ -85,6 +86,48 @@ public class TicketServerTest {
     });
   }
 
+  private HoldSeatRequest holdRequest(String email, int holdSeconds) {
+    return HoldSeatRequest.newBuilder()
+        .setUser(User.newBuilder().setFirstName("Jane").setLastName("Doe").setEmail(email))
+        .setJourney(Journey.newBuilder().setFrom("Goa").setTo("Hyd"))
+        .setHoldSeconds(holdSeconds)
+        .build();
+  }
+
+  @Test
+  public void testConfirmHold_BooksTheHeldSeat() {
+    HoldSeatResponse hold = stub.holdSeat(holdRequest("hold.confirm@example.com", 60));
+
+    ConfirmHoldResponse confirmed = stub.confirmHold(ConfirmHoldRequest.newBuilder().setHoldId(hold.getHoldId()).build());
+
+    Ticket ticket = stub.getReceipt(GetReceiptRequest.newBuilder().setTicketId(confirmed.getTicketId()).build()).getTicket();
+    assertEquals(hold.getSeat(), ticket.getSeat());
+    assertEquals(hold.getCoach(), ticket.getCoach());
+    assertThrows(StatusRuntimeException.class, () ->
+        stub.confirmHold(ConfirmHoldRequest.newBuilder().setHoldId(hold.getHoldId()).build()));
+  }
+
+  @Test
+  public void testReleaseHold_CannotBeConfirmedAfterwards() {
+    HoldSeatResponse hold = stub.holdSeat(holdRequest("hold.release@example.com", 60));
+
+    assertTrue(stub.releaseHold(ReleaseHoldRequest.newBuilder().setHoldId(hold.getHoldId()).build()).getReleased());
+    assertFalse(stub.releaseHold(ReleaseHoldRequest.newBuilder().setHoldId(hold.getHoldId()).build()).getReleased());
+    assertThrows(StatusRuntimeException.class, () ->
+        stub.confirmHold(ConfirmHoldRequest.newBuilder().setHoldId(hold.getHoldId()).build()));
+  }
+
+  @Test
+  public void testConfirmHold_AfterExpiry() throws InterruptedException {
+    HoldSeatResponse hold = stub.holdSeat(holdRequest("hold.expire@example.com", 1));
+
+    Thread.sleep(1300);
+
+    StatusRuntimeException e = assertThrows(StatusRuntimeException.class, () ->
+        stub.confirmHold(ConfirmHoldRequest.newBuilder().setHoldId(hold.getHoldId()).build()));
+    assertEquals(Status.Code.NOT_FOUND, e.getStatus().getCode());
+  }
+
 
   /*@Test
   public void testGetReceipt_Success() {
@@ -0,0 +1,102 @@
+package com.ravi.booking.service;
+
+import com.ravi.booking.exception.AdmissionRejectedException;
+import com.ravi.booking.exception.SeatUnavailableException;
+import com.ravi.booking.model.Coach;
+import com.ravi.booking.model.SeatAssignment;
+import com.ravi.booking.model.Section;
+import com.ravi.booking.model.TrainTopology;
+import com.ravi.booking.repository.TrainInventory;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AdmissionControllerTest {
+
+  private final TrainInventory inventory = new TrainInventory(
+      new TrainTopology("T1", List.of(new Coach("A1", Section.A, 2), new Coach("B1", Section.B, 2))), LocalDate.now());
+  private final long route = inventory.getTopology().getRouteMask();
+
+  @Test
+  public void testRejectsWhenQueueIsFull() {
+    AdmissionController admission = new AdmissionController(1, 0, Duration.ofSeconds(1));
+    try (AdmissionController.Permit permit = admission.admit(inventory, route)) {
+      assertThrows(AdmissionRejectedException.class, () -> admission.admit(inventory, route));
+    }
+    admission.admit(inventory, route).close();
+  }
+
+  @Test
+  public void testRejectsWhenMoreBookingsWaitThanSeatsAreFree() {
+    AdmissionController admission = new AdmissionController(10, 100, Duration.ofSeconds(1));
+    inventory.claim(new SeatAssignment(1, Section.A, "A1"), route);
+    inventory.claim(new SeatAssignment(2, Section.A, "A1"), route);
+    try (AdmissionController.Permit first = admission.admit(inventory, route);
+         AdmissionController.Permit second = admission.admit(inventory, route)) {
+      assertThrows(AdmissionRejectedException.class, () -> admission.admit(inventory, route));
+    }
+  }
+
+  @Test
+  public void testSoldOutShortCircuitsUntilASeatIsReleased() {
+    AdmissionController admission = new AdmissionController(10, 100, Duration.ofSeconds(1));
+    try (AdmissionController.Permit permit = admission.admit(inventory, 0b1)) {
+      permit.soldOut();
+    }
+    assertThrows(SeatUnavailableException.class, () -> admission.admit(inventory, 0b1));
+
+    SeatAssignment seat = new SeatAssignment(1, Section.B, "B1");
+    inventory.claim(seat, route);
+    inventory.release(seat, route);
+    admission.admit(inventory, 0b1).close();
+  }
+
+  @Test
+  public void testFullRouteIsSoldOutWhenNoSeatIsFree() {
+    AdmissionController admission = new AdmissionController(10, 100, Duration.ofSeconds(1));
+    for (String coach : List.of("A1", "B1")) {
+      for (int seat = 1; seat <= 2; seat++) {
+        inventory.claim(new SeatAssignment(seat, coach.equals("A1") ? Section.A : Section.B, coach), route);
+      }
+    }
+    assertThrows(SeatUnavailableException.class, () -> admission.admit(inventory, route));
+  }
+
+  @Test
+  public void testPartialJourneysCountPartlySoldSeats() {
+    AdmissionController admission = new AdmissionController(10, 100, Duration.ofSeconds(1));
+    TrainInventory train = new TrainInventory(new TrainTopology("T2",
+        List.of(new Coach("A1", Section.A, 1), new Coach("B1", Section.B, 1)), List.of("X", "Y", "Z")), LocalDate.now());
+    long whole = train.getTopology().getRouteMask();
+    long firstLeg = train.getTopology().legMask("X", "Y");
+    long lastLeg = train.getTopology().legMask("Y", "Z");
+    SeatAssignment a1 = new SeatAssignment(1, Section.A, "A1");
+    train.claim(a1, whole);
+    train.claim(new SeatAssignment(1, Section.B, "B1"), whole);
+    train.release(a1, lastLeg);
+
+    // One seat is partly sold, so one partial booking may search and a second cannot succeed
+    try (AdmissionController.Permit permit = admission.admit(train, lastLeg)) {
+      assertThrows(AdmissionRejectedException.class, () -> admission.admit(train, lastLeg));
+    }
+    assertThrows(SeatUnavailableException.class, () -> admission.admit(train, whole));
+
+    train.release(a1, firstLeg);
+    train.claim(a1, whole);
+    assertThrows(SeatUnavailableException.class, () -> admission.admit(train, lastLeg));
+  }
+
+  @Test
+  public void testGroupBookingsCountEverySeatTheyAskFor() {
+    AdmissionController admission = new AdmissionController(10, 100, Duration.ofSeconds(1));
+    try (AdmissionController.Permit group = admission.admit(inventory, route, 3)) {
+      assertThrows(AdmissionRejectedException.class, () -> admission.admit(inventory, route, 2));
+      admission.admit(inventory, route).close();
+    }
+    admission.admit(inventory, route, 4).close();
+  }
+}
@@ -0,0 +1,51 @@
+package com.ravi.booking.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class HashedTimerWheelTest {
+
+  @Test
+  public void testRunsTasksAfterTheirDelay() throws Exception {
+    try (HashedTimerWheel wheel = new HashedTimerWheel(Duration.ofMillis(10), 8, "test-wheel")) {
+      CountDownLatch fired = new CountDownLatch(1);
+      long start = System.nanoTime();
+      // Longer than one turn of the wheel, so the task has to wait out a full round
+      wheel.schedule(fired::countDown, 150, TimeUnit.MILLISECONDS);
+      assertTrue(fired.await(2, TimeUnit.SECONDS));
+      assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(150));
+    }
+  }
+
+  @Test
+  public void testCancelledTasksDoNotRun() throws Exception {
+    try (HashedTimerWheel wheel = new HashedTimerWheel(Duration.ofMillis(10), 8, "test-wheel")) {
+      AtomicInteger runs = new AtomicInteger();
+      HashedTimerWheel.Timeout timeout = wheel.schedule(runs::incrementAndGet, 50, TimeUnit.MILLISECONDS);
+      assertTrue(timeout.cancel());
+      CountDownLatch later = new CountDownLatch(1);
+      wheel.schedule(later::countDown, 100, TimeUnit.MILLISECONDS);
+      assertTrue(later.await(2, TimeUnit.SECONDS));
+      assertEquals(0, runs.get());
+      assertFalse(timeout.cancel());
+    }
+  }
+
+  @Test
+  public void testRunsManyTasks() throws Exception {
+    try (HashedTimerWheel wheel = new HashedTimerWheel(Duration.ofMillis(5), 64, "test-wheel")) {
+      int count = 100_000;
+      CountDownLatch fired = new CountDownLatch(count);
+      for (int i = 0; i < count; i++) {
+        wheel.schedule(fired::countDown, i % 200, TimeUnit.MILLISECONDS);
+      }
+      assertTrue(fired.await(5, TimeUnit.SECONDS));
+    }
+  }
+}
@@ -0,0 +1,106 @@
+package com.ravi.booking.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class IdempotencyCacheTest {
+
+  private final AtomicLong now = new AtomicLong();
+  private final IdempotencyCache<String> cache = new IdempotencyCache<>(Duration.ofSeconds(10), 3, now::get);
+
+  @Test
+  public void testRepeatedKeyReturnsFirstResult() {
+    AtomicInteger runs = new AtomicInteger();
+    assertEquals("first", cache.get("key", () -> runs.incrementAndGet() == 1 ? "first" : "second"));
+    assertEquals("first", cache.get("key", () -> runs.incrementAndGet() == 1 ? "first" : "second"));
+    assertEquals(1, runs.get());
+  }
+
+  @Test
+  public void testFailuresAreNotRemembered() {
+    assertThrows(IllegalStateException.class, () -> cache.get("key", () -> {
+      throw new IllegalStateException("boom");
+    }));
+    assertEquals("retried", cache.get("key", () -> "retried"));
+  }
+
+  @Test
+  public void testEntriesExpire() {
+    cache.get("key", () -> "old");
+    now.addAndGet(Duration.ofSeconds(11).toNanos());
+    assertEquals("new", cache.get("key", () -> "new"));
+  }
+
+  @Test
+  public void testOldestEntriesAreEvictedAtCapacity() {
+    for (int i = 0; i < 10; i++) {
+      String value = "v" + i;
+      cache.get("k" + i, () -> value);
+    }
+    assertTrue(cache.size() <= 3);
+    assertEquals("v9", cache.get("k9", () -> "again"));
+    assertEquals("again", cache.get("k0", () -> "again"));
+  }
+
+  @Test
+  public void testFailingKeysDoNotGrowTheCache() {
+    for (int i = 0; i < 100_000; i++) {
+      assertThrows(IllegalStateException.class, () -> cache.get("failing-" + now.incrementAndGet(), () -> {
+        throw new IllegalStateException("boom");
+      }));
+    }
+    assertTrue(cache.queued() <= 3);
+    assertEquals(0, cache.size());
+    assertEquals("kept", cache.get("key", () -> "kept"));
+    assertEquals("kept", cache.get("key", () -> "again"));
+  }
+
+  @Test
+  public void testRunningOperationIsNotEvictedAtCapacity() throws Exception {
+    CountDownLatch started = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    AtomicInteger runs = new AtomicInteger();
+    CompletableFuture<String> first = CompletableFuture.supplyAsync(() -> cache.get("slow", () -> {
+      runs.incrementAndGet();
+      started.countDown();
+      try {
+        release.await();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      return "first";
+    }));
+    started.await();
+    for (int i = 0; i < 10; i++) {
+      String value = "v" + i;
+      cache.get("k" + i, () -> value);
+    }
+
+    // The retry arrives while the first attempt is still running and waits for it
+    AtomicReference<String> retried = new AtomicReference<>();
+    Thread retry = new Thread(() -> retried.set(cache.get("slow", () -> {
+      runs.incrementAndGet();
+      return "second";
+    })));
+    retry.start();
+    while (retry.isAlive() && retry.getState() != Thread.State.WAITING) {
+      Thread.sleep(1);
+    }
+    release.countDown();
+    retry.join();
+    assertEquals("first", first.join());
+    assertEquals("first", retried.get());
+    assertEquals(1, runs.get());
+
+    cache.get("after", () -> "after");
+    assertTrue(cache.queued() <= 3);
+  }
+}
@@ -0,0 +1,72 @@
+package com.ravi.booking.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ReceiptCacheTest {
+
+  private final ReceiptCache cache = new ReceiptCache(100);
+
+  private static byte[] bytes(String value) {
+    return value.getBytes(StandardCharsets.UTF_8);
+  }
+
+  @Test
+  public void testHitsSkipTheLoader() {
+    AtomicInteger loads = new AtomicInteger();
+    cache.get("t1", key -> bytes("receipt-" + loads.incrementAndGet()));
+    assertArrayEquals(bytes("receipt-1"), cache.get("t1", key -> bytes("receipt-" + loads.incrementAndGet())));
+    assertEquals(1, loads.get());
+  }
+
+  @Test
+  public void testInvalidateForcesReload() {
+    cache.get("t1", key -> bytes("old"));
+    cache.invalidate("t1");
+    assertArrayEquals(bytes("new"), cache.get("t1", key -> bytes("new")));
+  }
+
+  @Test
+  public void testLoadOverlappingInvalidateIsNotCached() {
+    assertArrayEquals(bytes("stale"), cache.get("t1", key -> {
+      cache.invalidate("t1");
+      return bytes("stale");
+    }));
+    assertArrayEquals(bytes("fresh"), cache.get("t1", key -> bytes("fresh")));
+  }
+
+  @Test
+  public void testFailedLoadsAreNotCached() {
+    assertThrows(IllegalStateException.class, () -> cache.get("t1", key -> {
+      throw new IllegalStateException("boom");
+    }));
+    assertEquals(0, cache.size());
+  }
+
+  @Test
+  public void testFrequentlyReadEntriesSurviveAScan() {
+    for (int i = 0; i < 50; i++) {
+      String key = "hot" + i;
+      for (int read = 0; read < 5; read++) {
+        cache.get(key, k -> bytes(k));
+      }
+    }
+    for (int i = 0; i < 1000; i++) {
+      cache.get("cold" + i, k -> bytes(k));
+    }
+
+    assertTrue(cache.size() <= 100);
+    AtomicInteger reloads = new AtomicInteger();
+    for (int i = 0; i < 50; i++) {
+      cache.get("hot" + i, k -> {
+        reloads.incrementAndGet();
+        return bytes(k);
+      });
+    }
+    assertEquals(0, reloads.get());
+  }
+}
@@ -2,23 +2,36 @@ package com.ravi.booking.service;
 
 import com.ravi.booking.exception.SeatUnavailableException;
 import com.ravi.booking.exception.TicketNotFoundException;
+import com.ravi.booking.metrics.BookingMetrics;
+import com.ravi.booking.model.Coach;
+import com.ravi.booking.model.SeatAssignment;
 import com.ravi.booking.model.Section;
 import com.ravi.booking.model.TicketEntity;
+import com.ravi.booking.model.TrainTopology;
 import com.ravi.booking.model.UserEntity;
+import com.ravi.booking.repository.SeatInventory;
+import com.ravi.booking.repository.SeatInventoryRepository;
 import com.ravi.booking.repository.TicketRepository;
+import com.ravi.booking.repository.TrainInventory;
 import com.ravi.booking.repository.UserRepository;
 import com.ravi.booking.strategy.SeatSelectionStrategy;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.ArgumentCaptor;
 import org.mockito.MockitoAnnotations;
+import org.mockito.Spy;
 import org.ravi.model.*;
 
+import java.time.Duration;
+import java.time.LocalDate;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Supplier;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.*;
@@ -35,12 +48,31 @@ public class TicketServiceTest {
   @Mock
   private SeatSelectionStrategy selectionStrategy;
 
+  @Mock
+  private SeatInventoryRepository inventoryRepository;
+
+  private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+  @Spy
+  private BookingMetrics metrics = new BookingMetrics(registry);
+
+  @Spy
+  private AdmissionController admission = new AdmissionController(64, 1000, Duration.ofSeconds(1));
+
   @InjectMocks
   private TicketService ticketService;
 
+  private TrainInventory inventory;
+
   @BeforeEach
   public void setUp() {
     MockitoAnnotations.openMocks(this);
+    TrainTopology topology = new TrainTopology("T1", List.of(
+        new Coach("A1", Section.A, 50),
+        new Coach("B1", Section.B, 50)));
+    when(inventoryRepository.getDefaultTrainId()).thenReturn("T1");
+    inventory = new TrainInventory(topology, LocalDate.now());
+    when(inventoryRepository.getInventory(eq("T1"), any(LocalDate.class))).thenReturn(inventory);
   }
 
   @Test
@@ -61,16 +93,92 @@ public class TicketServiceTest {
     UserEntity user = new UserEntity("Doe", "John", "john.doe@example.com");
     TicketEntity ticket = new TicketEntity(user, 50.0, Section.A, 1, "France", "London");
 
-    when(userRepository.findByEmail(anyString())).thenReturn(null);
-    when(userRepository.save(any(UserEntity.class))).thenReturn(user);
-    when(selectionStrategy.selectSeat(eq(Section.A), anySet())).thenReturn(1);
+    when(userRepository.findOrCreate(anyString(), any())).thenReturn(user);
+    when(selectionStrategy.selectSeat(any(Section.class), any(), anyLong())).thenReturn(1);
     when(ticketRepository.save(any(TicketEntity.class))).thenReturn(ticket);
 
     String ticketId = ticketService.purchaseTicket(request);
 
     assertNotNull(ticketId);
-    verify(userRepository).save(any(UserEntity.class));
+    verify(userRepository).findOrCreate(eq("john.doe@example.com"), any());
     verify(ticketRepository).save(any(TicketEntity.class));
+    for (String stage : List.of("user_resolution", "seat_selection", "save")) {
+      assertEquals(1, registry.get("booking.stage.duration").tag("stage", stage).timer().count());
+    }
+  }
+
+  @Test
+  public void testPurchaseTicketRetryWithSameIdempotencyKeyBooksOnce() {
+    PurchaseTicketRequest request = PurchaseTicketRequest.newBuilder()
+        .setUser(User.newBuilder().setFirstName("John").setLastName("Doe").setEmail("john.doe@example.com"))
+        .setJourney(Journey.newBuilder().setFrom("London").setTo("France"))
+        .setIdempotencyKey("retry-1")
+        .build();
+
+    UserEntity user = new UserEntity("Doe", "John", "john.doe@example.com");
+    TicketEntity ticket = new TicketEntity(user, 50.0, Section.A, 1, "France", "London");
+
+    when(userRepository.findOrCreate(anyString(), any())).thenReturn(user);
+    when(selectionStrategy.selectSeat(any(Section.class), any(), anyLong())).thenReturn(1);
+    when(ticketRepository.save(any(TicketEntity.class))).thenReturn(ticket);
+
+    String first = ticketService.purchaseTicket(request);
+    String retried = ticketService.purchaseTicket(request);
+
+    assertEquals(first, retried);
+    verify(ticketRepository, times(1)).save(any(TicketEntity.class));
+    assertEquals(1, inventory.getCoachInventory("A1").getAllocatedCount()
+        + inventory.getCoachInventory("B1").getAllocatedCount());
+  }
+
+  @Test
+  public void testPurchaseTicketChargesTheSectionOfTheSeatItGot() {
+    PurchaseTicketRequest request = PurchaseTicketRequest.newBuilder()
+        .setUser(User.newBuilder().setFirstName("John").setLastName("Doe").setEmail("john.doe@example.com"))
+        .setJourney(Journey.newBuilder().setFrom("London").setTo("France"))
+        .build();
+
+    when(userRepository.findOrCreate(anyString(), any()))
+        .thenAnswer(invocation -> invocation.<Supplier<UserEntity>>getArgument(1).get());
+    // The first section tried is full, so the seat comes from the other one
+    when(selectionStrategy.selectSeat(any(Section.class), any(), anyLong())).thenReturn(-1, 1);
+
+    ticketService.purchaseTicket(request);
+
+    ArgumentCaptor<TicketEntity> saved = ArgumentCaptor.forClass(TicketEntity.class);
+    verify(ticketRepository).save(saved.capture());
+    TicketEntity ticket = saved.getValue();
+    assertEquals(ticket.getSection() == Section.A ? 50.0 : 100.0, ticket.getPrice(), 0.01);
+  }
+
+  @Test
+  public void testPurchaseTicketsBooksAdjacentSeats() {
+    PurchaseTicketsRequest request = PurchaseTicketsRequest.newBuilder()
+        .addUsers(User.newBuilder().setFirstName("John").setLastName("Doe").setEmail("john.doe@example.com"))
+        .addUsers(User.newBuilder().setFirstName("Jane").setLastName("Doe").setEmail("jane.doe@example.com"))
+        .addUsers(User.newBuilder().setFirstName("John").setLastName("Doe").setEmail("john.doe@example.com"))
+        .setJourney(Journey.newBuilder().setFrom("London").setTo("France"))
+        .build();
+
+    when(userRepository.findOrCreate(anyString(), any()))
+        .thenAnswer(invocation -> invocation.<Supplier<UserEntity>>getArgument(1).get());
+
+    List<String> ticketIds = ticketService.purchaseTickets(request);
+
+    assertEquals(3, ticketIds.size());
+    verify(userRepository, times(2)).findOrCreate(anyString(), any());
+    ArgumentCaptor<TicketEntity> tickets = ArgumentCaptor.forClass(TicketEntity.class);
+    verify(ticketRepository, times(3)).save(tickets.capture());
+    int firstSeat = tickets.getAllValues().get(0).getSeatNo();
+    for (int i = 0; i < 3; i++) {
+      assertEquals(firstSeat + i, tickets.getAllValues().get(i).getSeatNo());
+    }
+  }
+
+  @Test
+  public void testPurchaseTicketsRejectsEmptyGroup() {
+    assertThrows(IllegalArgumentException.class,
+        () -> ticketService.purchaseTickets(PurchaseTicketsRequest.getDefaultInstance()));
   }
 
   @Test
@@ -100,6 +208,25 @@ public class TicketServiceTest {
     verify(ticketRepository).findById(ticketId);
   }
 
+  @Test
+  public void testGetReceiptBytesIsCachedUntilSeatChanges() throws Exception {
+    UserEntity user = new UserEntity("Doe", "John", "john.doe@example.com");
+    TicketEntity[] stored = {new TicketEntity(user, 50.0, Section.A, 1, "France", "London")};
+    TicketEntity ticket = stored[0];
+    when(ticketRepository.findById(ticket.getId())).thenAnswer(invocation -> stored[0]);
+    when(ticketRepository.save(any(TicketEntity.class))).thenAnswer(invocation -> stored[0] = invocation.getArgument(0));
+    when(selectionStrategy.selectSeat(any(Section.class), any(), anyLong())).thenReturn(2);
+
+    byte[] first = ticketService.getReceiptBytes(ticket.getId());
+    assertSame(first, ticketService.getReceiptBytes(ticket.getId()));
+    assertEquals(1, GetReceiptResponse.parseFrom(first).getTicket().getSeat());
+    verify(ticketRepository).findById(ticket.getId());
+
+    ticketService.modifySeat(ticket.getId());
+
+    assertEquals(2, GetReceiptResponse.parseFrom(ticketService.getReceiptBytes(ticket.getId())).getTicket().getSeat());
+  }
+
   @Test
   public void testRemoveUserBooking() {
     TicketEntity ticket = new TicketEntity();
@@ -134,7 +261,7 @@ public class TicketServiceTest {
 
     // Mock the behavior of the repository and selection strategy
     when(ticketRepository.findById(ticketId)).thenReturn(ticket);
-    when(selectionStrategy.selectSeat(any(Section.class), anySet())).thenReturn(2);
+    when(selectionStrategy.selectSeat(any(Section.class), any(), anyLong())).thenReturn(2);
 
     // Call the method under test
     Ticket updatedTicket = ticketService.modifySeat(ticketId);
@@ -146,10 +273,64 @@ public class TicketServiceTest {
 
     // Verify the repository interaction
     verify(ticketRepository).findById(ticketId);
-    verify(ticketRepository).save(ticket);
+    ArgumentCaptor<TicketEntity> saved = ArgumentCaptor.forClass(TicketEntity.class);
+    verify(ticketRepository).save(saved.capture());
+    assertEquals(ticketId, saved.getValue().getId());
+    assertEquals(2, saved.getValue().getSeatNo());
+    // The stored ticket is only replaced through the repository
+    assertEquals(1, ticket.getSeatNo());
   }
 
 
+  @Test
+  public void testModifySeatReleasesPreviousSeat() {
+    UserEntity user = new UserEntity("Doe", "John", "john.doe@example.com");
+    TicketEntity ticket = new TicketEntity(user, 50.0, Section.A, 1, "France", "London");
+    ticket.setCoach("A1");
+    inventory.claim(new SeatAssignment(1, Section.A, "A1"), inventory.getTopology().getRouteMask());
+    when(ticketRepository.findById(ticket.getId())).thenReturn(ticket);
+    when(selectionStrategy.selectSeat(any(Section.class), any(), anyLong())).thenAnswer(invocation -> {
+      SeatInventory coach = invocation.getArgument(1);
+      return coach.claim(2) ? 2 : -1;
+    });
+
+    Ticket moved = ticketService.modifySeat(ticket.getId());
+
+    assertFalse(inventory.getCoachInventory("A1").isAllocated(1));
+    assertTrue(inventory.getCoachInventory("A1").isAllocated(2));
+    assertEquals(2, moved.getSeat());
+  }
+
+  @Test
+  public void testModifySeatGivesNewSeatBackWhenSaveFails() {
+    UserEntity user = new UserEntity("Doe", "John", "john.doe@example.com");
+    TicketEntity ticket = new TicketEntity(user, 50.0, Section.A, 1, "France", "London");
+    ticket.setCoach("A1");
+    inventory.claim(new SeatAssignment(1, Section.A, "A1"), inventory.getTopology().getRouteMask());
+    when(ticketRepository.findById(ticket.getId())).thenReturn(ticket);
+    when(ticketRepository.save(any(TicketEntity.class))).thenThrow(new IllegalStateException("disk full"));
+    when(selectionStrategy.selectSeat(any(Section.class), any(), anyLong())).thenAnswer(invocation -> {
+      SeatInventory coach = invocation.getArgument(1);
+      return coach.claim(2) ? 2 : -1;
+    });
+
+    assertThrows(RuntimeException.class, () -> ticketService.modifySeat(ticket.getId()));
+
+    assertTrue(inventory.getCoachInventory("A1").isAllocated(1));
+    assertFalse(inventory.getCoachInventory("A1").isAllocated(2));
+    assertEquals(1, ticket.getSeatNo());
+  }
+
+  @Test
+  public void testModifySeatReportsNoFreeSeat() {
+    UserEntity user = new UserEntity("Doe", "John", "john.doe@example.com");
+    TicketEntity ticket = new TicketEntity(user, 50.0, Section.A, 1, "France", "London");
+    when(ticketRepository.findById(ticket.getId())).thenReturn(ticket);
+    when(selectionStrategy.selectSeat(any(Section.class), any(), anyLong())).thenReturn(-1);
+
+    assertThrows(SeatUnavailableException.class, () -> ticketService.modifySeat(ticket.getId()));
+    verify(ticketRepository, never()).save(any(TicketEntity.class));
+  }
 
   @Test
   public void testGetReceiptThrowsTicketNotFoundException() {
@@ -180,10 +361,9 @@ public class TicketServiceTest {
             .build())
         .build();
 
-    when(userRepository.findByEmail(anyString())).thenReturn(null);
-    when(userRepository.save(any(UserEntity.class))).thenReturn(new UserEntity("Doe", "John", "john.doe@example.com"));
-    when(selectionStrategy.selectSeat(eq(Section.A), anySet())).thenReturn(-1);
-    when(selectionStrategy.selectSeat(eq(Section.B), anySet())).thenReturn(-1);
+    when(userRepository.findOrCreate(anyString(), any())).thenReturn(new UserEntity("Doe", "John", "john.doe@example.com"));
+    when(selectionStrategy.selectSeat(eq(Section.A), any(), anyLong())).thenReturn(-1);
+    when(selectionStrategy.selectSeat(eq(Section.B), any(), anyLong())).thenReturn(-1);
 
     SeatUnavailableException exception = assertThrows(SeatUnavailableException.class, () -> ticketService.purchaseTicket(request));
     assertEquals("No seats available in either section A or B", exception.getMessage());
@@ -194,8 +374,8 @@ public class TicketServiceTest {
     UserEntity user = new UserEntity("Doe", "John", "john.doe@example.com");
     TicketEntity ticket = new TicketEntity(user, 50.0, Section.A, 1, "France", "London");
     when(ticketRepository.findById(anyString())).thenReturn(ticket);
-    when(selectionStrategy.selectSeat(eq(Section.A), anySet())).thenReturn(-1);
-    when(selectionStrategy.selectSeat(eq(Section.B), anySet())).thenReturn(-1);
+    when(selectionStrategy.selectSeat(eq(Section.A), any(), anyLong())).thenReturn(-1);
+    when(selectionStrategy.selectSeat(eq(Section.B), any(), anyLong())).thenReturn(-1);
 
     assertThrows(SeatUnavailableException.class, () -> ticketService.modifySeat("ticketId"));
   }*/
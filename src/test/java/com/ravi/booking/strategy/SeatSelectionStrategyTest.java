@@ -0,0 +1,50 @@
+package com.ravi.booking.strategy;
+
+import com.ravi.booking.model.Section;
+import com.ravi.booking.repository.SeatInventory;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SeatSelectionStrategyTest {
+
+  @Test
+  public void testUniformRandomFillsEverySeatOnce() {
+    SeatInventory inventory = new SeatInventory(2000);
+    SeatSelectionStrategy strategy = new UniformRandomStrategy();
+    Set<Integer> seats = new HashSet<>();
+
+    for (int i = 0; i < 2000; i++) {
+      assertTrue(seats.add(strategy.selectSeat(Section.A, inventory)));
+    }
+
+    assertEquals(-1, strategy.selectSeat(Section.A, inventory));
+    assertEquals(0, inventory.getFreeCount());
+  }
+
+  @Test
+  public void testFirstFitReturnsLowestFreeSeat() {
+    SeatInventory inventory = new SeatInventory(50);
+    SeatSelectionStrategy strategy = new FirstFitStrategy();
+
+    assertEquals(1, strategy.selectSeat(Section.A, inventory));
+    assertEquals(2, strategy.selectSeat(Section.A, inventory));
+    inventory.release(1);
+    assertEquals(1, strategy.selectSeat(Section.A, inventory));
+  }
+
+  @Test
+  public void testWindowSeatsPreferredThenFallback() {
+    SeatInventory inventory = new SeatInventory(8);
+    SeatSelectionStrategy strategy = new SeatPositionStrategy(SeatPositionStrategy.Position.WINDOW);
+
+    assertEquals(1, strategy.selectSeat(Section.A, inventory));
+    assertEquals(4, strategy.selectSeat(Section.A, inventory));
+    assertEquals(5, strategy.selectSeat(Section.A, inventory));
+    assertEquals(8, strategy.selectSeat(Section.A, inventory));
+    assertEquals(2, strategy.selectSeat(Section.A, inventory));
+  }
+}